@@ -0,0 +1,132 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+import org.junit.Test;
+
+import DFA.CompactDFATable;
+import DFA.DFA;
+import DFA.DFAState;
+import DFA.HopcroftMinimizer;
+import Lexer.CompactTableWalker;
+import NFA.ByteClasses;
+import NFA.NFA;
+
+/**
+ * Tests that CompactTableWalker prints what TableWalker, which the Driver
+ * used before it, does.
+ */
+
+public class CompactTableWalkerTest {
+  private static final String SPEC = "$DIGIT [0-9]\n"
+      + "$NON-ZERO [^0] IN $DIGIT\n$CHAR [a-zA-Z]\n"
+      + "$UPPER [^a-z] IN $CHAR\n$LOWER [^A-Z] IN $CHAR\n\n"
+      + "$IDENTIFIER $LOWER ($LOWER|$DIGIT)*\n$INT ($DIGIT)+\n"
+      + "$FLOAT ($DIGIT)+ \\. ($DIGIT)+\n$EQUALS ==\n$ASSIGN =\n"
+      + "$PLUS \\+\n$MINUS -\n$MULTIPLY \\*\n$PRINT PRINT\n";
+
+  /** The minimized DFA of SPEC */
+  private DFA dfa;
+
+  /** The compact table of the same DFA */
+  private CompactDFATable table;
+
+  public CompactTableWalkerTest() {
+    NFA n = NFA.getNFAFromSpecFile(new Scanner(SPEC));
+    dfa = new HopcroftMinimizer(DFA.getDFAFromNFA(n)).getMinimizedDFA();
+    table = CompactDFATable.fromDFA(dfa, ByteClasses.fromNFA(n));
+  }
+
+  /**
+   * The lines TableWalker prints for a line, then what it reports on
+   * System.err.
+   */
+  private String[] walkTable(String line) throws Exception {
+    DFAState[][] rows = DFA.getDFATable(dfa);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    PrintStream oldErr = System.err;
+    System.setErr(new PrintStream(err, true, "ISO-8859-1"));
+    try {
+      PrintStream p = new PrintStream(out, true, "ISO-8859-1");
+      TableWalker.printTokens(dfa.getStartState(), rows, p, line);
+    } finally {
+      System.setErr(oldErr);
+    }
+    return new String[] { out.toString("ISO-8859-1"),
+        err.toString("ISO-8859-1") };
+  }
+
+  /**
+   * The lines CompactTableWalker prints for a line, then what it reports on
+   * System.err.
+   */
+  private String[] walkCompact(String line) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    PrintStream oldErr = System.err;
+    System.setErr(new PrintStream(err, true, "ISO-8859-1"));
+    try {
+      PrintStream p = new PrintStream(out, true, "ISO-8859-1");
+      CompactTableWalker.printTokens(table, p, line);
+    } finally {
+      System.setErr(oldErr);
+    }
+    return new String[] { out.toString("ISO-8859-1"),
+        err.toString("ISO-8859-1") };
+  }
+
+  /**
+   * Tests that both walkers print the same tokens for the lines of the
+   * sample input, and lines with extra spaces.
+   */
+  @Test
+  public void Test_SameTokensOnValidInput() throws Exception {
+    String[] lines = { "a = 10", "PRINT a", "b = a*10 + 20", "PRINT b",
+        "x1 == 3.25", "a  b", " a", "a =", "PRINTx", "= =" };
+    for (String line : lines) {
+      String[] expected = walkTable(line);
+      String[] actual = walkCompact(line);
+      assertEquals(line, expected[0], actual[0]);
+      assertEquals(line, "", actual[1]);
+    }
+  }
+
+  /**
+   * Tests the lines the walkers differ on. TableWalker prints an empty
+   * token for a character no token starts with and carries on; the compact
+   * walker prints nothing for it and reports it as an error instead. On a
+   * trailing invalid character TableWalker backs up to it forever, so only
+   * the compact walker is run there.
+   */
+  @Test
+  public void Test_InvalidCharacters() throws Exception {
+    String nl = System.getProperty("line.separator");
+    assertEquals(" " + nl + "IDENTIFIER a" + nl, walkTable("?a")[0]);
+    String[] compact = walkCompact("?a");
+    assertEquals("IDENTIFIER a" + nl, compact[0]);
+    assertEquals("ERROR: ?" + nl, compact[1]);
+
+    assertEquals(" " + nl, walkTable("?")[0]);
+    compact = walkCompact("?");
+    assertEquals("", compact[0]);
+    assertEquals("ERROR: ?" + nl, compact[1]);
+
+    compact = walkCompact("a ?");
+    assertEquals("IDENTIFIER a" + nl, compact[0]);
+    assertEquals("ERROR: ?" + nl, compact[1]);
+
+    compact = walkCompact("ab?c");
+    assertEquals("IDENTIFIER ab" + nl + "IDENTIFIER c" + nl, compact[0]);
+    assertEquals("ERROR: ?" + nl, compact[1]);
+
+    // TableWalker drops the INT it walked past; the compact walker backs up
+    // to it and reports only the dot.
+    assertEquals("", walkTable("3.")[0]);
+    compact = walkCompact("3.");
+    assertEquals("INT 3" + nl, compact[0]);
+    assertEquals("ERROR: ." + nl, compact[1]);
+  }
+}
@@ -0,0 +1,298 @@
+package DFA;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import NFA.ByteClasses;
+import NFA.CharRanges;
+import NFA.NFA;
+import NFA.NFAState;
+
+/**
+ * Tests for building, minimizing and walking DFAs.
+ */
+
+public class DFATest {
+  private static final String SAMPLE_SPEC = "$DIGIT [0-9]\n"
+      + "$NON-ZERO [^0] IN $DIGIT\n$CHAR [a-zA-Z]\n"
+      + "$UPPER [^a-z] IN $CHAR\n$LOWER [^A-Z] IN $CHAR\n\n"
+      + "$IDENTIFIER $LOWER ($LOWER|$DIGIT)*\n$INT ($DIGIT)+\n"
+      + "$FLOAT ($DIGIT)+ \\. ($DIGIT)+\n$EQUALS ==\n$ASSIGN =\n"
+      + "$PLUS \\+\n$MINUS -\n$MULTIPLY \\*\n$PRINT PRINT\n";
+
+  /** The MiniRE token spec of phase II */
+  private static final String PHASE2_SPEC = "$LETTER [a-zA-Z]\n"
+      + "$DIGIT [0-9]\n$ASCII [ -~]\n$NONQUOTE [^\"] IN $ASCII\n"
+      + "$NONSINGLEQUOTE [^'] IN $ASCII\n\n"
+      + "$ASCII-STR \\\"($NONQUOTE|\\\\\\\")*\\\"\n$BEGIN begin\n$END end\n"
+      + "$EQ =\n$REPLACE replace\n$WITH with\n$IN in\n$SEMICOLON ;\n"
+      + "$RECREP recursivereplace\n$GRTNOT >!\n$PRINT print\n"
+      + "$OPENPARENS \\(\n$CLOSEPARENS \\)\n$COMMA ,\n$HASH #\n"
+      + "$FIND find\n$DIFF diff\n$UNION union\n$INTERS inters\n"
+      + "$MAXFREQ maxfreqstring\n"
+      + "$REGEX \\'($NONSINGLEQUOTE|\\\\\\')*\\'\n"
+      + "$ID $LETTER ($LETTER|$DIGIT|_|)($LETTER|$DIGIT|_|)"
+      + "($LETTER|$DIGIT|_|)($LETTER|$DIGIT|_|)($LETTER|$DIGIT|_|)"
+      + "($LETTER|$DIGIT|_|)($LETTER|$DIGIT|_|)($LETTER|$DIGIT|_|)"
+      + "($LETTER|$DIGIT|_|)\n$NUMBER ($DIGIT)+\n";
+
+
+  /**
+   * Builds the subset construction DFA for a spec given as a string.
+   */
+  private static DFA build(String spec) {
+    return DFA.getDFAFromNFA(NFA.getNFAFromSpecFile(new Scanner(spec)));
+  }
+
+  /**
+   * Walks a DFA over a string.
+   * @return the state reached, or null if it got stuck.
+   */
+  private static DFAState walk(DFA d, String s) {
+    DFAState current = d.getStartState();
+    for (int i = 0; i < s.length() && current != null; i++) {
+      current = current.getTransition(s.charAt(i));
+    }
+    return current;
+  }
+
+  /**
+   * Tests the subset construction on a small spec.
+   */
+  @Test
+  public void Test_SubsetConstruction() {
+    DFA d = build("$DIGIT [0-9]\n\n$INT ($DIGIT)+\n$PLUS \\+\n");
+    assertTrue(walk(d, "123").isFinal());
+    assertTrue(walk(d, "+").isFinal());
+    assertNull(walk(d, "1+"));
+    assertNull(walk(d, "++"));
+  }
+
+  /**
+   * Tests that minimization merges equivalent states.
+   */
+  @Test
+  public void Test_Minimize() {
+    HopcroftMinimizer m = new HopcroftMinimizer(build("\n$X (a|b)*abb\n"));
+    assertEquals(4, m.getStatesAfter());
+    assertTrue(m.getStatesBefore() >= m.getStatesAfter());
+    DFA min = m.getMinimizedDFA();
+    assertEquals(0, min.getStartState().getIdentifier());
+    assertTrue(walk(min, "ababb").isFinal());
+    assertTrue(!walk(min, "abab").isFinal());
+  }
+
+  /**
+   * Tests that final states for different tokens are kept apart.
+   */
+  @Test
+  public void Test_MinimizeKeepsTokensApart() {
+    HopcroftMinimizer m = new HopcroftMinimizer(build("\n$X ab\n$Y cb\n"));
+    assertEquals(5, m.getStatesAfter());
+    DFA min = m.getMinimizedDFA();
+    assertNotNull(walk(min, "ab"));
+    assertEquals("$X", walk(min, "ab").getFinalToken().trim());
+    assertEquals("$Y", walk(min, "cb").getFinalToken().trim());
+  }
+
+  /**
+   * Tests byte class compression and the compressed text layout.
+   */
+  @Test
+  public void Test_CompressedTable() {
+    NFA n = NFA.getNFAFromSpecFile(new Scanner(
+        "$DIGIT [0-9]\n\n$INT ($DIGIT)+\n$PLUS \\+\n"));
+    ByteClasses classes = ByteClasses.fromNFA(n);
+    assertEquals(3, classes.getCount());
+    assertEquals(classes.classOf('0'), classes.classOf('9'));
+    CompactDFATable t = CompactDFATable.fromDFA(
+        new HopcroftMinimizer(DFA.getDFAFromNFA(n)).getMinimizedDFA(), classes);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DFA.printTable(t, new PrintStream(out));
+    CompactDFATable copy = DFA.getCompactTableFromScanner(new Scanner(out
+        .toString()));
+    assertEquals(t.getStateCount(), copy.getStateCount());
+    assertEquals(3, copy.getStride());
+    int s = copy.next(copy.getStartState(), '4');
+    assertEquals("INT", copy.getTokenName(copy.getAcceptTokens()[s]));
+    assertEquals(-1, copy.next(s, '+'));
+    assertEquals(-1, copy.next(s, 0x263A));
+  }
+
+  /**
+   * Tests that a table survives the binary layout.
+   */
+  @Test
+  public void Test_BinaryTable() throws IOException {
+    NFA n = NFA.getNFAFromSpecFile(new Scanner(
+        "$DIGIT [0-9]\n\n$INT ($DIGIT)+\n$PLUS \\+\n"));
+    CompactDFATable t = CompactDFATable.fromDFA(DFA.getDFAFromNFA(n),
+        ByteClasses.fromNFA(n));
+    MappedDFATable copy = new MappedDFATable(BinaryTable.encode(t));
+    assertEquals(t.getStartState(), copy.getStartState());
+    assertEquals(t.getTokenCount(), copy.getTokenCount());
+    for (int s = 0; s < t.getStateCount(); s++) {
+      assertEquals(t.getAcceptToken(s), copy.getAcceptToken(s));
+      for (int c = 0; c < 257; c++) {
+        assertEquals(t.next(s, c), copy.next(s, c));
+      }
+    }
+    assertEquals("PLUS", copy.getTokenName(copy.getAcceptToken(copy.next(
+        copy.getStartState(), '+'))));
+  }
+
+  /**
+   * Tests that a table referring to a state, class or token it does not
+   * have is refused when it is mapped.
+   */
+  @Test
+  public void Test_CorruptBinaryTable() {
+    NFA n = NFA.getNFAFromSpecFile(new Scanner(
+        "$DIGIT [0-9]\n\n$INT ($DIGIT)+\n$PLUS \\+\n"));
+    CompactDFATable t = CompactDFATable.fromDFA(DFA.getDFAFromNFA(n),
+        ByteClasses.fromNFA(n));
+    int accepts = BinaryTable.TRANSITIONS_OFFSET + 4
+        * t.getTransitions().length;
+    int[][] corruptions = { { 16, t.getStateCount() }, { 16, -1 },
+        { BinaryTable.CLASS_MAP_OFFSET + '5', t.getStride() },
+        { BinaryTable.TRANSITIONS_OFFSET, t.getStateCount() },
+        { BinaryTable.TRANSITIONS_OFFSET + 4, -2 },
+        { accepts, t.getTokenCount() } };
+    for (int[] corruption : corruptions) {
+      ByteBuffer b = BinaryTable.encode(t).order(ByteOrder.LITTLE_ENDIAN);
+      if (corruption[0] == BinaryTable.CLASS_MAP_OFFSET + '5') {
+        b.put(corruption[0], (byte) corruption[1]);
+      } else {
+        b.putInt(corruption[0], corruption[1]);
+      }
+      try {
+        new MappedDFATable(b);
+        fail("Mapped a table with " + corruption[1] + " at "
+            + corruption[0]);
+      } catch (IOException e) {
+        assertTrue(e.getMessage().startsWith("Corrupt DFA table"));
+      }
+    }
+  }
+
+  /**
+   * Tests that the bitset subset construction makes the DFA the baseline
+   * construction over sets of NFAStates does: once minimized, both are the
+   * same automaton with the same tokens, on the sample spec and on the
+   * phase II spec.
+   */
+  @Test
+  public void Test_SubsetConstructionMatchesBaseline() {
+    for (String spec : new String[] { SAMPLE_SPEC, PHASE2_SPEC }) {
+      NFA n = NFA.getNFAFromSpecFile(new Scanner(spec));
+      HopcroftMinimizer bitset = new HopcroftMinimizer(DFA.getDFAFromNFA(n));
+      HopcroftMinimizer baseline = new HopcroftMinimizer(baselineDFA(n));
+      assertEquals(baseline.getStatesBefore(), bitset.getStatesBefore());
+      assertEquals(baseline.getStatesAfter(), bitset.getStatesAfter());
+      assertSameAutomaton(baseline.getMinimizedDFA(),
+          bitset.getMinimizedDFA());
+    }
+  }
+
+  /**
+   * The subset construction as it was before DenseNFA: a breadth first
+   * search over sets of NFAStates, closing each target on its own.
+   */
+  private static DFA baselineDFA(NFA n) {
+    Map<Set<NFAState>, DFAState> cache = new HashMap<Set<NFAState>, DFAState>();
+    List<Set<NFAState>> bfs = new ArrayList<Set<NFAState>>();
+    Set<NFAState> start = NFA.getEpsilonClosure(n.getStartState());
+    cache.put(start, DFAState.NFAStatesToDFA(start, 0));
+    bfs.add(start);
+    for (int i = 0; i < bfs.size(); i++) {
+      Set<NFAState> current = bfs.get(i);
+      Map<Character, Set<NFAState>> moves = new TreeMap<Character, Set<NFAState>>();
+      for (NFAState s : current) {
+        for (Entry<Character, NFAState> t : s.getTransition().entrySet()) {
+          move(moves, t.getKey(), t.getValue());
+        }
+        for (Entry<Character, List<NFAState>> t : s.getMoreTransitions()
+            .entrySet()) {
+          for (NFAState target : t.getValue()) {
+            move(moves, t.getKey(), target);
+          }
+        }
+        for (Entry<NFAState, CharRanges> t : s.getRangeTransitions()
+            .entrySet()) {
+          for (char c : t.getValue()) {
+            move(moves, c, t.getKey());
+          }
+        }
+      }
+      for (Entry<Character, Set<NFAState>> move : moves.entrySet()) {
+        DFAState next = cache.get(move.getValue());
+        if (next == null) {
+          next = DFAState.NFAStatesToDFA(move.getValue(), bfs.size());
+          cache.put(move.getValue(), next);
+          bfs.add(move.getValue());
+        }
+        cache.get(current).addTransition(move.getKey(), next);
+      }
+    }
+    return new DFA(cache.get(start));
+  }
+
+  private static void move(Map<Character, Set<NFAState>> moves, char c,
+      NFAState target) {
+    Set<NFAState> to = moves.get(c);
+    if (to == null) {
+      to = new HashSet<NFAState>();
+      moves.put(c, to);
+    }
+    to.addAll(NFA.getEpsilonClosure(target));
+  }
+
+  /**
+   * Asserts that two DFAs are the same up to state numbering, walking both
+   * from their start states at once.
+   */
+  private static void assertSameAutomaton(DFA a, DFA b) {
+    Map<DFAState, DFAState> paired = new HashMap<DFAState, DFAState>();
+    List<DFAState> bfs = new ArrayList<DFAState>();
+    paired.put(a.getStartState(), b.getStartState());
+    bfs.add(a.getStartState());
+    for (int i = 0; i < bfs.size(); i++) {
+      DFAState x = bfs.get(i), y = paired.get(x);
+      assertEquals(x.isFinal(), y.isFinal());
+      assertEquals(x.getTokenName(), y.getTokenName());
+      assertEquals(x.transitionsEntrySet().size(), y.transitionsEntrySet()
+          .size());
+      for (Entry<Character, DFAState> t : x.transitionsEntrySet()) {
+        DFAState u = y.getTransition(t.getKey());
+        assertNotNull(u);
+        DFAState known = paired.get(t.getValue());
+        if (known == null) {
+          paired.put(t.getValue(), u);
+          bfs.add(t.getValue());
+        } else {
+          assertTrue(known == u);
+        }
+      }
+    }
+  }
+}
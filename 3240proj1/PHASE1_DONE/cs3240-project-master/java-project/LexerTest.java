@@ -0,0 +1,530 @@
+package Lexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import DFA.CompactDFATable;
+import DFA.LazyDFATable;
+import DFA.TransitionTable;
+
+/**
+ * Tests for the tokenizers.
+ */
+
+public class LexerTest {
+  private static final String SPEC = "$DIGIT [0-9]\n"
+      + "$NON-ZERO [^0] IN $DIGIT\n$CHAR [a-zA-Z]\n"
+      + "$UPPER [^a-z] IN $CHAR\n$LOWER [^A-Z] IN $CHAR\n\n"
+      + "$IDENTIFIER $LOWER ($LOWER|$DIGIT)*\n$INT ($DIGIT)+\n"
+      + "$FLOAT ($DIGIT)+ \\. ($DIGIT)+\n$EQUALS ==\n$ASSIGN =\n"
+      + "$PLUS \\+\n$MINUS -\n$MULTIPLY \\*\n$PRINT PRINT\n";
+
+  private static final String INPUT = "a = 10\nPRINT a\nb = a*10 + 20\n"
+      + "PRINT b\n\nx1 == 3.25\n";
+
+  private static final String EXPECTED = "IDENTIFIER a\nASSIGN =\nINT 10\n"
+      + "PRINT PRINT\nIDENTIFIER a\nIDENTIFIER b\nASSIGN =\nIDENTIFIER a\n"
+      + "MULTIPLY *\nINT 10\nPLUS +\nINT 20\nPRINT PRINT\nIDENTIFIER b\n"
+      + "IDENTIFIER x1\nEQUALS ==\nFLOAT 3.25\n";
+
+  /**
+   * Builds the compact table for a spec.
+   */
+  static CompactDFATable table(String spec) {
+    return new LexerBuilder().build(new Scanner(spec));
+  }
+
+  /**
+   * The line walker output for a whole text. Lines hold one char per byte,
+   * so they are printed and read back as ISO-8859-1, as the Driver does,
+   * whatever the JVM's default charset.
+   */
+  static String walkLines(TransitionTable t, String text) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      PrintStream p = new PrintStream(out, false, "ISO-8859-1");
+      for (String line : text.split("\n")) {
+        CompactTableWalker.printTokens(t, p, line);
+      }
+      p.flush();
+      return out.toString("ISO-8859-1");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Tests the line walker.
+   */
+  @Test
+  public void Test_LineWalker() {
+    assertEquals(EXPECTED, walkLines(table(SPEC), INPUT));
+  }
+
+  /**
+   * Tests that specs defining the same class names differently can be built
+   * on several threads at once.
+   */
+  @Test
+  public void Test_ConcurrentBuilds() throws Exception {
+    final String otherSpec = "$DIGIT [a-c]\n\n$WORD ($DIGIT)+\n";
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 16; i++) {
+        final boolean other = i % 2 == 1;
+        results.add(pool.submit(new Callable<String>() {
+          public String call() {
+            return other ? walkLines(table(otherSpec), "abc cab")
+                : walkLines(table(SPEC), INPUT);
+          }
+        }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(i % 2 == 1 ? "WORD abc\nWORD cab\n" : EXPECTED,
+            results.get(i).get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Tests that the streaming tokenizer gives the same tokens whatever the
+   * chunk size, including chunks smaller than a token.
+   */
+  @Test
+  public void Test_StreamingChunkBoundaries() throws IOException {
+    CompactDFATable t = table(SPEC);
+    for (int chunkSize = 1; chunkSize < 20; chunkSize++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TextTokenSink sink = new TextTokenSink(t, out);
+      new StreamingTokenizer(t, chunkSize).tokenize(
+          Channels.newChannel(new ByteArrayInputStream(INPUT.getBytes())),
+          sink);
+      sink.flush();
+      assertEquals("chunk size " + chunkSize, EXPECTED, out.toString());
+    }
+  }
+
+  /**
+   * Tests the text, binary and JSON output formats, written through a
+   * channel.
+   */
+  @Test
+  public void Test_OutputFormats() throws IOException {
+    CompactDFATable t = table(SPEC);
+    byte[] input = "a = 10\n\"b\n".getBytes();
+    String[] outputs = new String[BufferedTokenSink.FORMATS.length];
+    byte[] binary = null;
+    for (int i = 0; i < outputs.length; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      BufferedTokenSink sink = BufferedTokenSink.forFormat(
+          BufferedTokenSink.FORMATS[i], t, Channels.newChannel(out));
+      new StreamingTokenizer(t, 3).tokenize(
+          Channels.newChannel(new ByteArrayInputStream(input)), sink);
+      sink.flush();
+      outputs[i] = out.toString("UTF-8");
+      if (BufferedTokenSink.FORMATS[i].equals("binary")) {
+        binary = out.toByteArray();
+      }
+    }
+    assertEquals("IDENTIFIER a\nASSIGN =\nINT 10\nIDENTIFIER b\n", outputs[0]);
+    assertEquals("{\"type\":\"IDENTIFIER\",\"offset\":0,\"text\":\"a\"}\n"
+        + "{\"type\":\"ASSIGN\",\"offset\":2,\"text\":\"=\"}\n"
+        + "{\"type\":\"INT\",\"offset\":4,\"text\":\"10\"}\n"
+        + "{\"type\":null,\"offset\":7,\"text\":\"\\\"\"}\n"
+        + "{\"type\":\"IDENTIFIER\",\"offset\":8,\"text\":\"b\"}\n",
+        outputs[2]);
+
+    DataInputStream records = new DataInputStream(new ByteArrayInputStream(
+        binary));
+    List<String> names = new ArrayList<String>();
+    StringBuilder decoded = new StringBuilder();
+    while (records.available() > 0) {
+      byte tag = records.readByte();
+      int type = records.readInt();
+      if (tag == 'N') {
+        byte[] name = new byte[records.readUnsignedShort()];
+        records.readFully(name);
+        while (names.size() <= type) {
+          names.add(null);
+        }
+        names.set(type, new String(name, "UTF-8"));
+      } else {
+        assertEquals('T', tag);
+        decoded.append(type == TokenSink.ERROR ? "ERROR" : names.get(type))
+            .append(' ').append(records.readLong()).append(' ')
+            .append(records.readInt()).append('\n');
+      }
+    }
+    assertEquals("IDENTIFIER 0 1\nASSIGN 2 1\nINT 4 2\nERROR 7 1\n"
+        + "IDENTIFIER 8 1\n", decoded.toString());
+  }
+
+  /**
+   * Tests that non ASCII classes match the UTF-8 bytes of the input, whether
+   * they are streamed or read as ISO-8859-1 lines.
+   */
+  @Test
+  public void Test_Utf8Input() throws IOException {
+    CompactDFATable t = table("$LETTER [a-z\u00e0-\u00ff]\n"
+        + "$HAN [\u4e00-\u9fa5]\n\n$WORD ($LETTER)+\n$NAME ($HAN)+\n"
+        + "$EURO \u20ac\n");
+    byte[] input = "na\u00efve \u6771\u4eac\u00a7 \u20ac\n".getBytes("UTF-8");
+    byte[] expected = "WORD na\u00efve\nNAME \u6771\u4eac\nEURO \u20ac\n"
+        .getBytes("UTF-8");
+    for (int chunkSize = 1; chunkSize < 8; chunkSize++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TextTokenSink sink = new TextTokenSink(t, out);
+      new StreamingTokenizer(t, chunkSize).tokenize(
+          Channels.newChannel(new ByteArrayInputStream(input)), sink);
+      sink.flush();
+      assertTrue(out.toString("UTF-8"), Arrays.equals(expected,
+          out.toByteArray()));
+    }
+    String line = new String(input, "ISO-8859-1");
+    assertEquals(new String(expected, "ISO-8859-1"), walkLines(t, line));
+    TokenCursor cursor = new TokenCursor(t, line);
+    cursor.next();
+    cursor.next();
+    assertTrue(cursor.next());
+    assertEquals(TokenSink.ERROR, cursor.getType());
+    assertEquals(2, cursor.getEnd() - cursor.getStart());
+  }
+
+  /**
+   * Tests the cursor and the iterator on top of it.
+   */
+  @Test
+  public void Test_Cursor() {
+    CompactDFATable t = table(SPEC);
+    TokenCursor cursor = new TokenCursor(t, "x1 == 3.25 ?");
+    assertTrue(cursor.next());
+    assertEquals("IDENTIFIER", cursor.getTypeName());
+    assertEquals(0, cursor.getStart());
+    assertEquals(2, cursor.getEnd());
+    assertTrue(cursor.next());
+    assertEquals("EQUALS", cursor.getTypeName());
+    assertTrue(cursor.next());
+    assertEquals("3.25", cursor.getText().toString());
+    assertTrue(cursor.next());
+    assertEquals(TokenSink.ERROR, cursor.getType());
+    assertFalse(cursor.next());
+
+    StringBuilder all = new StringBuilder();
+    TokenIterator tokens = new TokenIterator(t, INPUT);
+    while (tokens.hasNext()) {
+      all.append(tokens.next()).append('\n');
+    }
+    assertEquals(EXPECTED, all.toString());
+  }
+
+  /**
+   * Tests that a visitor sees the same tokens from the streaming tokenizer
+   * as from the line walker.
+   */
+  @Test
+  public void Test_VisitorOverStream() throws IOException {
+    final CompactDFATable t = table(SPEC);
+    final StringBuilder seen = new StringBuilder();
+    TokenVisitor visitor = new TokenVisitor() {
+      public void onToken(int type, CharSequence src, int start, int end) {
+        seen.append(t.getTokenName(type)).append(' ')
+            .append(src, start, end).append('\n');
+      }
+    };
+    new StreamingTokenizer(t, 4).tokenize(
+        Channels.newChannel(new ByteArrayInputStream(INPUT.getBytes())),
+        new VisitorTokenSink(visitor));
+    assertEquals(EXPECTED, seen.toString());
+  }
+
+  /**
+   * Tests that the lazy table tokenizes like the compact one, also when its
+   * budget is so small that it keeps forgetting its states.
+   */
+  @Test
+  public void Test_LazyTable() throws IOException {
+    for (long budget : new long[] { 64 << 20, 1 }) {
+      LazyDFATable t = new LexerBuilder().buildLazy(new Scanner(SPEC), budget);
+      assertEquals(EXPECTED, walkLines(t, INPUT));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TextTokenSink sink = new TextTokenSink(t, out);
+      new StreamingTokenizer(t, 7).tokenize(
+          Channels.newChannel(new ByteArrayInputStream(INPUT.getBytes())),
+          sink);
+      sink.flush();
+      assertEquals(EXPECTED, out.toString());
+      assertEquals(budget == 1, t.getFlushCount() > 0);
+    }
+  }
+
+  /**
+   * Tests that a spec whose DFA is over the state limit is simulated as an
+   * NFA, with the same tokens.
+   */
+  @Test
+  public void Test_NFASimulation() throws IOException {
+    LexerBuilder builder = new LexerBuilder();
+    assertTrue(builder.buildOrSimulate(
+        new Scanner(SPEC)) instanceof CompactDFATable);
+    assertEquals(16, builder.getStatesBefore());
+    assertEquals(15, builder.getStatesAfter());
+    builder = new LexerBuilder();
+    builder.setStateLimit(3);
+    TransitionTable t = builder.buildOrSimulate(new Scanner(SPEC));
+    assertTrue(t instanceof NFASimulator);
+    assertEquals(-1, builder.getStatesAfter());
+    assertEquals(EXPECTED, walkLines(t, INPUT));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextTokenSink sink = new TextTokenSink(t, out);
+    new StreamingTokenizer(t, 5).tokenize(
+        Channels.newChannel(new ByteArrayInputStream(INPUT.getBytes())), sink);
+    sink.flush();
+    assertEquals(EXPECTED, out.toString());
+  }
+
+  /**
+   * Tests that backing up after overshooting a token does not walk the
+   * overshot characters again: on a run of a's that all look like the start
+   * of a B, each a is an A, but a walker rewalking the run after every token
+   * reads it quadratically often.
+   */
+  @Test
+  public void Test_LinearMaximalMunch() throws IOException {
+    final CompactDFATable t = table("$DIGIT [0-9]\n\n$A a\n$B (a)+b\n");
+    final int[] steps = new int[1];
+    TransitionTable counting = new TransitionTable() {
+      public int getStartState() {
+        return t.getStartState();
+      }
+
+      public int next(int state, int c) {
+        steps[0]++;
+        return t.next(state, c);
+      }
+
+      public int getAcceptToken(int state) {
+        return t.getAcceptToken(state);
+      }
+
+      public int getTokenCount() {
+        return t.getTokenCount();
+      }
+
+      public String getTokenName(int token) {
+        return t.getTokenName(token);
+      }
+
+      public boolean hasStableStates() {
+        return true;
+      }
+    };
+    int n = 20000;
+    StringBuilder text = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      text.append('a');
+      expected.append("A a\n");
+    }
+    assertEquals(expected.toString(), walkLines(counting, text.toString()));
+    assertTrue(steps[0] < 4 * n);
+
+    steps[0] = 0;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextTokenSink sink = new TextTokenSink(counting, out);
+    new StreamingTokenizer(counting).tokenize(
+        Channels.newChannel(new ByteArrayInputStream(text.toString()
+            .getBytes())), sink);
+    sink.flush();
+    assertEquals(expected.toString(), out.toString());
+    assertTrue(steps[0] < 4 * n);
+  }
+
+  /**
+   * Tests that a string two rules match is the token of the rule first in
+   * the spec, however the table is built.
+   */
+  @Test
+  public void Test_SpecOrderPriority() {
+    String keywordFirst = "$CHAR [a-z]\n\n$PRINT print\n"
+        + "$IDENTIFIER ($CHAR)+\n";
+    String identifierFirst = "$CHAR [a-z]\n\n$IDENTIFIER ($CHAR)+\n"
+        + "$PRINT print\n";
+    for (int build = 0; build < 5; build++) {
+      assertEquals("PRINT print\nIDENTIFIER printer\nIDENTIFIER prin\n",
+          walkLines(priorityTable(keywordFirst, build), "print printer prin"));
+      assertEquals("IDENTIFIER print\n", walkLines(priorityTable(
+          identifierFirst, build), "print"));
+    }
+  }
+
+  /**
+   * The table for a spec, built in one of five ways.
+   */
+  private static TransitionTable priorityTable(String spec, int build) {
+    LexerBuilder builder = new LexerBuilder();
+    builder.setLegacyParser(build == 1);
+    builder.setPositionAutomaton(build == 2);
+    if (build == 3) {
+      return builder.buildLazy(new Scanner(spec), 1 << 20);
+    }
+    if (build == 4) {
+      builder.setStateLimit(0);
+      return builder.buildOrSimulate(new Scanner(spec));
+    }
+    return builder.build(new Scanner(spec));
+  }
+
+  /**
+   * Tests that the parallel tokenizer writes exactly what the streaming one
+   * does on an input spanning several chunks, in every format, on any number
+   * of threads and whether the budget of bytes in flight lets one chunk
+   * through at a time, a few or all of them. The input has a token type
+   * first seen in its last chunk.
+   */
+  @Test
+  public void Test_ParallelMatchesStreaming() throws IOException {
+    CompactDFATable t = table(SPEC);
+    File input = File.createTempFile("lexer", ".in");
+    input.deleteOnExit();
+    FileOutputStream write = new FileOutputStream(input);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; text.length() < (3 << 20); i++) {
+      text.append("a").append(i).append(" = ").append(i % 97)
+          .append(".5 + b*c == PRINT\n");
+    }
+    text.append("x - 1\n");
+    write.write(text.toString().getBytes());
+    write.close();
+
+    for (String format : BufferedTokenSink.FORMATS) {
+      ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+      BufferedTokenSink sink = BufferedTokenSink.forFormat(format, t,
+          sequential);
+      FileInputStream read = new FileInputStream(input);
+      new StreamingTokenizer(t).tokenize(read.getChannel(), sink);
+      sink.flush();
+      read.close();
+
+      for (int threads : new int[] { 1, 4 }) {
+        for (long budget : new long[] { 1, 2 << 20, 1L << 40 }) {
+          ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+          ParallelTokenizer tokenizer = new ParallelTokenizer(t, threads,
+              format);
+          tokenizer.setMaxInFlight(budget);
+          tokenizer.tokenize(input, parallel);
+          assertTrue(format + " on " + threads + " threads, budget " + budget,
+              Arrays.equals(sequential.toByteArray(), parallel.toByteArray()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that a compiled table tokenizes as the table does, streaming over
+   * chunk boundaries and in parallel, including on input its linear walk is
+   * needed for.
+   */
+  @Test
+  public void Test_CompiledTokenizer() throws IOException {
+    String[] specs = { SPEC, "$DIGIT [0-9]\n\n$A a\n$B (a)+b\n",
+        "$LETTER [a-z\u00e0-\u00ff]\n\n$WORD ($LETTER)+\n$EURO \u20ac\n" };
+    StringBuilder text = new StringBuilder(INPUT);
+    for (int i = 0; i < 3000; i++) {
+      text.append("a").append(i).append(" = ").append(i % 97)
+          .append(".5 + b*c == PRINT 3. na\u00efve \u20ac\n");
+      if (i % 1000 == 0) {
+        text.append("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaab aaaaaaaaaaaaaaaa\n");
+      }
+    }
+    byte[] input = text.toString().getBytes("UTF-8");
+    File file = File.createTempFile("lexer", ".in");
+    file.deleteOnExit();
+    FileOutputStream write = new FileOutputStream(file);
+    write.write(input);
+    write.close();
+    for (String spec : specs) {
+      CompactDFATable t = table(spec);
+      TokenizerCompiler compiled = new TokenizerCompiler(t);
+      ByteArrayOutputStream walked = new ByteArrayOutputStream();
+      BufferedTokenSink sink = new JsonTokenSink(t, walked);
+      new StreamingTokenizer(t, 100).tokenize(Channels.newChannel(
+          new ByteArrayInputStream(input)), sink);
+      sink.flush();
+      ByteArrayOutputStream generated = new ByteArrayOutputStream();
+      sink = new JsonTokenSink(t, generated);
+      compiled.newTokenizer(100).tokenize(Channels.newChannel(
+          new ByteArrayInputStream(input)), sink);
+      sink.flush();
+      assertEquals(walked.toString("UTF-8"), generated.toString("UTF-8"));
+
+      ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+      new ParallelTokenizer(compiled, 2, "json").tokenize(file, parallel);
+      assertEquals(walked.toString("UTF-8"), parallel.toString("UTF-8"));
+    }
+  }
+
+  /**
+   * Tests that a chain of states each reached on two byte ranges compiles,
+   * with each state written once, to a tokenizer that tokenizes as the table
+   * does, and that a chain too long for the JIT is refused without writing
+   * out all of its walk.
+   */
+  @Test(timeout = 10000)
+  public void Test_CompiledSplitRanges() throws IOException {
+    StringBuilder chain = new StringBuilder();
+    for (int i = 0; i < 22; i++) {
+      chain.append(" $AC");
+    }
+    CompactDFATable t = table("$AC [ac]\n\n$T" + chain + "\n");
+    TokenizerCompiler compiled = new TokenizerCompiler(t);
+    byte[] input = "acacacacacacacacacacac\ncaaaaaaaaaaaaaaaaaaaac ac\n"
+        .getBytes("UTF-8");
+    ByteArrayOutputStream walked = new ByteArrayOutputStream();
+    BufferedTokenSink sink = new JsonTokenSink(t, walked);
+    new StreamingTokenizer(t, 7).tokenize(Channels.newChannel(
+        new ByteArrayInputStream(input)), sink);
+    sink.flush();
+    ByteArrayOutputStream generated = new ByteArrayOutputStream();
+    sink = new JsonTokenSink(t, generated);
+    compiled.newTokenizer(7).tokenize(Channels.newChannel(
+        new ByteArrayInputStream(input)), sink);
+    sink.flush();
+    assertEquals(walked.toString("UTF-8"), generated.toString("UTF-8"));
+
+    for (int i = 0; i < 400; i++) {
+      chain.append(" $AC");
+    }
+    try {
+      new TokenizerCompiler(table("$AC [ac]\n\n$T" + chain + "\n"));
+      fail("expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Too large for the JIT.
+    }
+  }
+}
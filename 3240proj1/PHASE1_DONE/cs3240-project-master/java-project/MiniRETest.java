@@ -0,0 +1,314 @@
+package MiniRE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for the MiniRE statements.
+ */
+
+public class MiniRETest {
+  /**
+   * Writes a temporary file.
+   */
+  static File file(String text) throws IOException {
+    File file = File.createTempFile("minire", ".txt");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(text.getBytes("UTF-8"));
+    out.close();
+    return file;
+  }
+
+  /**
+   * The matches of a regex in a text, as line:offset:text.
+   */
+  static List<String> find(String regex, String text) throws IOException {
+    List<String> found = new ArrayList<String>();
+    for (Match m : new FindEngine(regex).find(file(text))) {
+      found.add(m.getLine() + ":" + m.getOffset() + ":" + m.getText());
+    }
+    return found;
+  }
+
+  /**
+   * Tests find on the kind of regex the MiniRE scripts use.
+   */
+  @Test
+  public void Test_Find() throws IOException {
+    assertEquals("[1:0:The government , 2:16:settlement and payment]",
+        find("([A-Z a-z])*ment([A-Z a-z])*",
+            "The government \nsettlement and payment\nnothing\n").toString());
+    assertEquals("[1:1:aaa, 1:6:aa, 2:9:a]", find("(a)+", "baaab aa\na")
+        .toString());
+    assertEquals("[1:2:abcd, 1:7:ab]", find("ab(cd)*", "xxabcdxab")
+        .toString());
+    assertEquals("[]", find("PRINT", "PRIN\nT PRINt\n").toString());
+  }
+
+  /**
+   * Tests that matches are leftmost and longest, never empty, and made of
+   * whole UTF-8 characters.
+   */
+  @Test
+  public void Test_FindLeftmostLongest() throws IOException {
+    assertEquals("[1:0:xyz, 1:4:y]", find("xyz|y", "xyz yz").toString());
+    assertEquals("[1:1:aa, 1:4:a]", find("(a)*", "baa-a").toString());
+    assertEquals("[1:3:caf\u00e9, 2:13:\u00e9t\u00e9]", find(
+        "([a-z\u00e0-\u00ff])+", "12 caf\u00e9\n\u6771 \u00e9t\u00e9")
+        .toString());
+  }
+
+  /**
+   * Tests that finding stays linear on a line where every byte starts a
+   * match that could go on to the end of the line: each a is a match, but
+   * walking to the end of the run for a b after every one of them is
+   * quadratic.
+   */
+  @Test(timeout = 10000)
+  public void Test_FindLinear() throws IOException {
+    int n = 200000;
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      text.append('a');
+    }
+    text.append("\nxaaab\n");
+    List<String> found = find("a|(a)+b", text.toString());
+    assertEquals(n + 1, found.size());
+    assertEquals("1:" + (n - 1) + ":a", found.get(n - 1));
+    assertEquals("2:" + (n + 2) + ":aaab", found.get(n));
+  }
+
+  /**
+   * Tests that finding a regex that also matches the empty string is linear
+   * on a line with no match, which used to have a start at every byte.
+   */
+  @Test(timeout = 10000)
+  public void Test_FindNullableLinear() throws IOException {
+    int n = 200000;
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      text.append('b');
+    }
+    text.append("\nbcbbcx\n");
+    List<String> found = find("((b)+c)*", text.toString());
+    assertEquals(1, found.size());
+    assertEquals("2:" + (n + 1) + ":bcbbc", found.get(0));
+  }
+
+  /**
+   * Tests that skipping to the lines of the required literal finds the same
+   * matches on the same lines as searching every line.
+   */
+  @Test
+  public void Test_Prefilter() throws IOException {
+    Random random = new Random(3);
+    String[] words = { "pay", "payment", "ment", "x1", "42", "3.14", "a",
+        "settlement", "" };
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      int count = random.nextInt(i % 100 == 0 ? 400 : 8);
+      for (int j = 0; j < count; j++) {
+        text.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      text.append('\n');
+    }
+    File file = file(text.toString());
+    for (String regex : new String[] { "([A-Z a-z])*ment([A-Z a-z])*",
+        "pay(ment)*", "(a)+", "([0-9])+ \\. ([0-9])+", "x1" }) {
+      FindEngine engine = new FindEngine(regex);
+      List<Match> skipping = engine.find(file);
+      engine.setPrefilter(false);
+      assertEquals(regex, engine.find(file).toString(), skipping.toString());
+    }
+  }
+
+  /**
+   * Tests the literal scanner against String.indexOf, in both byte orders.
+   */
+  @Test
+  public void Test_LiteralScanner() {
+    String text = "abababaab\nment men\nt mentment\n\nxxxxxxxxxxxxxxxxment";
+    ByteBuffer buffer = ByteBuffer.wrap(text.getBytes());
+    for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN,
+        ByteOrder.LITTLE_ENDIAN }) {
+      buffer.order(order);
+      for (String literal : new String[] { "ment", "a", "aab", "\n", "mentm",
+          "xxxxxxxxxm", "q" }) {
+        LiteralScanner scanner = new LiteralScanner(literal.getBytes());
+        scanner.startLineCount(0);
+        for (int from = 0; from <= text.length(); from++) {
+          int want = text.indexOf(literal, from);
+          int found = scanner.indexOf(buffer, from, text.length());
+          assertEquals(literal + " from " + from, want, found);
+          if (found >= 0) {
+            assertEquals(LiteralScanner.count(buffer, (byte) '\n', 0, found),
+                scanner.lineBreaksBefore(buffer, found));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads a file as UTF-8.
+   */
+  static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+  }
+
+  /**
+   * Tests replace, into another file and in place, with matches both close
+   * together and far enough apart to be copied by transferTo.
+   */
+  @Test
+  public void Test_Replace() throws IOException {
+    File source = file("a cat and a dog\ncats\n\ndog");
+    File destination = file("");
+    ReplaceEngine engine = new ReplaceEngine("cat|dog", "pet");
+    assertEquals(4, engine.replace(source, destination));
+    assertEquals("a pet and a pet\npets\n\npet", read(destination));
+    assertEquals("a cat and a dog\ncats\n\ndog", read(source));
+    assertEquals(0, new ReplaceEngine("bird", "x").replace(source, source));
+    assertEquals("a cat and a dog\ncats\n\ndog", read(source));
+    assertEquals(5, new ReplaceEngine("(a)+", "").replace(source, source));
+    assertEquals(" ct nd  dog\ncts\n\ndog", read(source));
+
+    StringBuilder text = new StringBuilder();
+    StringBuilder want = new StringBuilder();
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 20000; j++) {
+        text.append("word\n");
+        want.append("word\n");
+      }
+      text.append("é cat\n");
+      want.append("é ü\n");
+    }
+    source = file(text.toString());
+    assertEquals(3, new ReplaceEngine("cat", "ü").replace(source, source));
+    assertEquals(want.toString(), read(source));
+  }
+
+  /**
+   * Tests recursivereplace, which bubble sorts here, and its refusal of a
+   * replacement that has a match.
+   */
+  @Test
+  public void Test_RecursiveReplace() throws IOException {
+    File source = file("bbba\nbab\nab");
+    File destination = file("");
+    ReplaceEngine engine = new ReplaceEngine("ba", "ab");
+    assertEquals(3, engine.recursiveReplace(source, destination));
+    assertEquals("abbb\nabb\nab", read(destination));
+    assertEquals(0, engine.recursiveReplace(destination, destination));
+    assertEquals("abbb\nabb\nab", read(destination));
+    try {
+      engine.recursiveReplace(source, destination, 2);
+      fail("expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      // Three passes are needed.
+    }
+    try {
+      new ReplaceEngine("(a)+", "ba").recursiveReplace(source, destination);
+      fail("expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // The replacement has a match.
+    }
+    assertEquals("abbb\nabb\nab", read(destination));
+  }
+
+  /**
+   * The strings of a list of matches with their places, as a sorted map.
+   */
+  static TreeMap<String, TreeSet<String>> group(List<Match> matches) {
+    TreeMap<String, TreeSet<String>> groups =
+        new TreeMap<String, TreeSet<String>>();
+    for (Match m : matches) {
+      if (!groups.containsKey(m.getText())) {
+        groups.put(m.getText(), new TreeSet<String>());
+      }
+      groups.get(m.getText()).add(m.toString());
+    }
+    return groups;
+  }
+
+  /**
+   * Tests the match set operators against sorted maps of the same matches,
+   * over files searched in and out of name order and more than once.
+   */
+  @Test
+  public void Test_MatchSet() throws IOException {
+    Random random = new Random(7);
+    File[] files = new File[3];
+    for (int f = 0; f < files.length; f++) {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 400; i++) {
+        text.append("abcé".charAt(random.nextInt(4)));
+        if (random.nextInt(8) == 0) {
+          text.append('\n');
+        }
+      }
+      files[f] = file(text.toString());
+    }
+    FindEngine ab = new FindEngine("([ab])+");
+    FindEngine bc = new FindEngine("([bcé])+");
+    List<File> these = Arrays.asList(files[2], files[0], files[2]);
+    List<File> those = Arrays.asList(files[1], files[2]);
+    MatchSet x = MatchSet.find(ab, these), y = MatchSet.find(bc, those);
+    TreeMap<String, TreeSet<String>> xs = group(ab.find(these));
+    TreeMap<String, TreeSet<String>> ys = group(bc.find(those));
+
+    TreeMap<String, TreeSet<String>> union =
+        new TreeMap<String, TreeSet<String>>(xs);
+    TreeMap<String, TreeSet<String>> inters =
+        new TreeMap<String, TreeSet<String>>();
+    TreeMap<String, TreeSet<String>> diff =
+        new TreeMap<String, TreeSet<String>>(xs);
+    for (String text : ys.keySet()) {
+      TreeSet<String> places = new TreeSet<String>(ys.get(text));
+      if (xs.containsKey(text)) {
+        places.addAll(xs.get(text));
+        inters.put(text, places);
+      }
+      union.put(text, places);
+      diff.remove(text);
+    }
+    assertEquals(xs, group(x.getMatches()));
+    assertEquals(union, group(x.union(y).getMatches()));
+    assertEquals(inters, group(x.inters(y).getMatches()));
+    assertEquals(diff, group(x.diff(y).getMatches()));
+    assertEquals(union, group(y.union(x).getMatches()));
+
+    MatchSet both = x.inters(y);
+    assertEquals(inters.size(), both.size());
+    int count = 0;
+    String most = null;
+    for (String text : inters.keySet()) {
+      count += inters.get(text).size();
+      if (most == null || inters.get(text).size() > inters.get(most).size()) {
+        most = text;
+      }
+    }
+    assertEquals(count, both.getMatchCount());
+    assertEquals(most, both.maxFreqString());
+    assertEquals(new ArrayList<String>(inters.keySet()), both.getTexts());
+    assertEquals(-1, both.indexOf("d"));
+    assertEquals(0, x.diff(x).size());
+    assertEquals(null, x.diff(x).maxFreqString());
+  }
+}
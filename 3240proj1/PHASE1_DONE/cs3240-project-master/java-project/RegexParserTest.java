@@ -2,13 +2,24 @@ package Parser;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Scanner;
 
 import org.junit.Test;
 
+import DFA.CompactDFATable;
+import DFA.DFA;
+import DFA.HopcroftMinimizer;
+import Lexer.LexerBuilder;
+import NFA.ByteClasses;
+import NFA.NFA;
+
 /**
  * Our JUnit test suite is contained here.
  * @author Robert Harrison
@@ -381,4 +392,55 @@ public class RegexParserTest {
       assertEquals(str.charAt(3), r.getCharacterParsed());
     }
   }
+
+  /**
+   * Tests that RegexCursorParser builds NFAs with the same language as
+   * RegexParser, quirks included.
+   */
+  @Test
+  public void Test_CursorParserMatchesRegexParser() {
+    String classes = "$DIGIT [0-9]\n$NON-ZERO [^0] IN $DIGIT\n"
+        + "$CHAR [a-zA-Z]\n$LOWER [^A-Z] IN $CHAR\n$ASCII [ -~]\n"
+        + "$NONQUOTE [^\"] IN $ASCII\n$SPACED [a - c ]\n\n";
+    LexerBuilder legacy = new LexerBuilder();
+    legacy.setLegacyParser(true);
+    legacy.getNFAFromSpecFile(new Scanner(classes));
+    LexerBuilder cursor = new LexerBuilder();
+    cursor.getNFAFromSpecFile(new Scanner(classes));
+    for (String c : new String[] { "$DIGIT", "$NON-ZERO", "$LOWER",
+        "$NONQUOTE", "$SPACED" }) {
+      assertEquals(legacy.getDefinedClass(c), cursor.getDefinedClass(c));
+    }
+
+    String[] regexes = { " $LOWER ($LOWER|$DIGIT)*", " ($DIGIT)+ \\. ($DIGIT)+",
+        " ==", " PRINT", " (a|b)*abb", " a+b", " (ab)+ c", " a|b|c",
+        " $DIGIT+", " $CHAR ($CHAR|$DIGIT|_|)($CHAR|$DIGIT|_|)",
+        " \\\"($NONQUOTE|\\\\\\\")*\\\"", " [^a] IN [a-z]x", " [^0] IN $DIGIT",
+        " [a-c\\-x]", " .", " \\$x \\( \\)", " ((a|b)c)*d", " a | ",
+        " $NON-ZERO$DIGIT*", " [a-c ]b", " x y z" };
+    for (String regex : regexes) {
+      RegexParserOutput expected = RegexParser.reg_ex(regex, legacy);
+      NFA actual = new RegexCursorParser(regex, cursor).parseRegex();
+      if (!expected.isWorkedOrNot() || expected.wasEpsilonTransition()) {
+        assertNull(regex, actual);
+        continue;
+      }
+      assertNotNull(regex, actual);
+      CompactDFATable want = minimal(expected.getNFA());
+      CompactDFATable got = minimal(actual);
+      assertTrue(regex, Arrays.equals(want.getTransitions(),
+          got.getTransitions()));
+      assertTrue(regex, Arrays.equals(want.getAcceptTokens(),
+          got.getAcceptTokens()));
+    }
+  }
+
+  /**
+   * The minimal DFA table of an NFA, which is the same for NFAs of the same
+   * language.
+   */
+  private static CompactDFATable minimal(NFA n) {
+    return CompactDFATable.fromDFA(new HopcroftMinimizer(DFA.getDFAFromNFA(n))
+        .getMinimizedDFA(), ByteClasses.identity());
+  }
 }
@@ -0,0 +1,208 @@
+package Regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Scanner;
+import java.util.Set;
+
+import org.junit.Test;
+
+import DFA.CompactDFATable;
+import DFA.DFA;
+import DFA.HopcroftMinimizer;
+import Lexer.LexerBuilder;
+import NFA.ByteClasses;
+import NFA.CharRanges;
+import NFA.DenseNFA;
+import Parser.RegexCursorParser;
+
+/**
+ * Tests for the regex AST and its simplification.
+ */
+
+public class RegexTest {
+  private static final String SPEC = "$DIGIT [0-9]\n$LETTER [a-zA-Z]\n\n"
+      + "$BEGIN begin\n$END end\n$REPLACE replace\n"
+      + "$RECURSIVEREPLACE recursivereplace\n$WITH with\n"
+      + "$ID $LETTER ($LETTER|$DIGIT)*\n$INT ($DIGIT)+\n"
+      + "$STARS ((x)*)*\n$AB (a|b|c)\n";
+
+  /**
+   * The simplified AST of a regex.
+   */
+  private static RegexNode simplified(String regex) {
+    return Simplifier.simplify(new RegexCursorParser(regex, new LexerBuilder())
+        .parse());
+  }
+
+  private static CharSet chars(String s) {
+    CharRanges set = CharRanges.EMPTY;
+    for (char c : s.toCharArray()) {
+      set = set.union(CharRanges.of(c));
+    }
+    return new CharSet(set);
+  }
+
+  /**
+   * Tests the local rewrites.
+   */
+  @Test
+  public void Test_Rewrites() {
+    assertEquals(new Star(new Char('x')), simplified("((x)*)*"));
+    assertEquals(new Star(new Char('x')), Simplifier.simplify(new Star(
+        new Plus(new Optional(new Char('x'))))));
+    assertEquals(chars("abc"), simplified("a|b|c|a"));
+    assertEquals(new Char('a'), simplified("a|a"));
+    assertEquals(new Concat(new Char('a'), new Char('b')),
+        simplified("(a)(b)"));
+  }
+
+  /**
+   * Tests the range set operations against plain sets of characters.
+   */
+  @Test
+  public void Test_CharRanges() {
+    CharRanges letters = CharRanges.range('a', 'z').union(
+        CharRanges.range('Z', 'A'));
+    assertEquals(2, letters.rangeCount());
+    assertEquals(52, letters.size());
+    CharRanges vowels = CharRanges.EMPTY;
+    Set<Character> expected = new HashSet<Character>();
+    for (char c = 'A'; c <= 'z'; c++) {
+      if (Character.isLetter(c)) {
+        expected.add(c);
+      }
+    }
+    for (char c : "aeiou".toCharArray()) {
+      vowels = vowels.union(CharRanges.of(c));
+      expected.remove(c);
+    }
+    CharRanges consonants = letters.minus(vowels);
+    assertEquals(expected, consonants);
+    assertEquals(consonants, expected);
+    assertEquals(expected.hashCode(), consonants.hashCode());
+    assertTrue(consonants.contains('b'));
+    assertFalse(consonants.contains('e'));
+    assertFalse(consonants.intersects(vowels));
+    assertTrue(letters.intersects(vowels));
+    assertEquals(CharRanges.range('a', 'c'), CharRanges.of('a').union(
+        CharRanges.of('c')).union(CharRanges.of('b')));
+    assertEquals(CharRanges.EMPTY, vowels.minus(letters));
+  }
+
+  /**
+   * Tests that alternatives sharing a prefix are factored.
+   */
+  @Test
+  public void Test_PrefixFactoring() {
+    RegexNode n = simplified("replace|recursivereplace|rest");
+    assertTrue(n.toString(), n instanceof Concat);
+    assertEquals(new Char('r'), ((Concat) n).getChildren().get(0));
+
+    RegexNode keywords = Simplifier.simplify(new Union(Arrays
+        .<RegexNode> asList(new Concat(simplified("end"), new Accept("$END")),
+            new Concat(simplified("else"), new Accept("$ELSE")))));
+    assertEquals(new Char('e'), ((Concat) keywords).getChildren().get(0));
+  }
+
+  /**
+   * Tests that a spec gives the same minimal DFA with the AST as with the
+   * legacy parser, from a smaller NFA.
+   */
+  @Test
+  public void Test_SpecMatchesLegacy() {
+    LexerBuilder legacy = new LexerBuilder();
+    legacy.setLegacyParser(true);
+    CompactDFATable want = minimal(legacy.getNFAFromSpecFile(new Scanner(SPEC)));
+    int legacyStates = legacy.nextStateNumber();
+
+    LexerBuilder ast = new LexerBuilder();
+    CompactDFATable got = minimal(ast.getNFAFromSpecFile(new Scanner(SPEC)));
+    assertTrue(Arrays.equals(want.getTransitions(), got.getTransitions()));
+    assertTrue(Arrays.equals(want.getAcceptTokens(), got.getAcceptTokens()));
+    assertTrue(ast.nextStateNumber() + " vs " + legacyStates,
+        ast.nextStateNumber() < legacyStates);
+  }
+
+  /**
+   * Tests that the position automaton has no epsilon transitions and gives
+   * the same minimal DFA as the Thompson construction.
+   */
+  @Test
+  public void Test_GlushkovMatchesThompson() {
+    CompactDFATable want = minimal(new LexerBuilder()
+        .getNFAFromSpecFile(new Scanner(SPEC)));
+    LexerBuilder glushkov = new LexerBuilder();
+    glushkov.setPositionAutomaton(true);
+    NFA.NFA n = glushkov.getNFAFromSpecFile(new Scanner(SPEC));
+    DenseNFA dense = new DenseNFA(n);
+    for (int s = 0; s < dense.size(); s++) {
+      assertEquals(1, dense.getClosure(s).length);
+    }
+    CompactDFATable got = minimal(n);
+    assertTrue(Arrays.equals(want.getTransitions(), got.getTransitions()));
+    assertTrue(Arrays.equals(want.getAcceptTokens(), got.getAcceptTokens()));
+  }
+
+  /**
+   * Tests that a class of non ASCII ranges accepts exactly the UTF-8
+   * encodings of its characters.
+   */
+  @Test
+  public void Test_Utf8Ranges() throws Exception {
+    CompactDFATable t = new LexerBuilder().build(new Scanner(
+        "$C [a\u00e0-\u00ff\u0400-\u04ff\u07ff-\u0801\u4e00-\u9fa5\u20ac"
+            + "\ud000-\uffef]\n\n$X $C\n"));
+    CharRanges in = CharRanges.of('a').union(CharRanges.range('\u00e0',
+        '\u00ff')).union(CharRanges.range('\u0400', '\u04ff')).union(
+        CharRanges.range('\u07ff', '\u0801')).union(CharRanges.range(
+        '\u4e00', '\u9fa5')).union(CharRanges.of('\u20ac')).union(
+        CharRanges.range('\ud000', '\ud7ff')).union(CharRanges.range(
+        '\ue000', '\uffef'));
+    for (int c = 1; c < 0x10000; c++) {
+      if (Character.isSurrogate((char) c)) {
+        continue;
+      }
+      byte[] bytes = String.valueOf((char) c).getBytes("UTF-8");
+      int state = t.getStartState();
+      for (int i = 0; i < bytes.length && state >= 0; i++) {
+        state = t.next(state, bytes[i] & 0xFF);
+        if (i < bytes.length - 1 && state >= 0) {
+          assertEquals(-1, t.getAcceptToken(state));
+        }
+      }
+      boolean accepted = state >= 0 && t.getAcceptToken(state) >= 0;
+      assertEquals(Integer.toHexString(c), in.contains((char) c), accepted);
+    }
+  }
+
+  /**
+   * Tests finding the literal every match of a regex contains.
+   */
+  @Test
+  public void Test_RequiredLiteral() {
+    assertEquals("ment", literal("([A-Z a-z])*ment([A-Z a-z])*"));
+    assertEquals("PRINT", literal("PRINT"));
+    assertEquals("abcd", literal("ab(x)*abcd(cd)*"));
+    assertEquals("re", literal("replace|recursivereplace|rest"));
+    assertEquals("ings", literal("(sing|bring|ring)s"));
+    assertEquals("ab", literal("(ab)+"));
+    assertEquals("", literal("(ab)*"));
+    assertEquals("", literal("([0-9])+"));
+    assertEquals("\u00c3\u00a9t", literal("\u00e9t"));
+  }
+
+  private static String literal(String regex) {
+    return RequiredLiteral.of(Utf8Encoder.encode(new RegexCursorParser(
+        regex, new LexerBuilder()).parse()));
+  }
+
+  private static CompactDFATable minimal(NFA.NFA n) {
+    return CompactDFATable.fromDFA(new HopcroftMinimizer(DFA.getDFAFromNFA(n))
+        .getMinimizedDFA(), ByteClasses.identity());
+  }
+}
@@ -0,0 +1,118 @@
+package Bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DFA.CompactDFATable;
+import DFA.DFA;
+import DFA.DFAState;
+import DFA.HopcroftMinimizer;
+import Lexer.LexerBuilder;
+import NFA.ByteClasses;
+import NFA.DenseNFA;
+import NFA.NFA;
+
+/**
+ * Time of each stage between a generated spec and its table: building the
+ * NFA, the subset construction, minimization, building the DFAState table,
+ * and writing a table out as text and reading it back in both layouts. The
+ * NFA is built either way LexerBuilder offers, and its size is printed when
+ * a trial starts.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConstructionBenchmark {
+  /** The number of token rules in the spec */
+  @Param({ "10", "100", "1000" })
+  public int rules;
+
+  /** How the NFA is built: "thompson" or "glushkov" */
+  @Param({ "thompson", "glushkov" })
+  public String construction;
+
+  private String spec;
+  private NFA nfa;
+  private DFA dfa;
+  private DFAState[][] table;
+  private CompactDFATable compact;
+
+  /**
+   * Runs the whole pipeline once so each stage has its input ready.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    spec = Generators.spec(rules);
+    LexerBuilder builder = builder();
+    nfa = builder.getNFAFromSpecFile(new Scanner(spec));
+    System.out.println(construction + " NFA states: "
+        + new DenseNFA(nfa).size());
+    dfa = DFA.getDFAFromNFA(nfa);
+    table = DFA.getDFATable(dfa);
+    compact = CompactDFATable.fromDFA(
+        new HopcroftMinimizer(dfa).getMinimizedDFA(), ByteClasses.fromNFA(nfa));
+  }
+
+  private LexerBuilder builder() {
+    LexerBuilder builder = new LexerBuilder();
+    builder.setPositionAutomaton(construction.equals("glushkov"));
+    return builder;
+  }
+
+  @Benchmark
+  public NFA getNFAFromSpecFile() {
+    return builder().getNFAFromSpecFile(new Scanner(spec));
+  }
+
+  @Benchmark
+  public DFA getDFAFromNFA() {
+    return DFA.getDFAFromNFA(nfa);
+  }
+
+  @Benchmark
+  public DFA minimize() {
+    return new HopcroftMinimizer(dfa).getMinimizedDFA();
+  }
+
+  @Benchmark
+  public DFAState[][] getDFATable() {
+    return DFA.getDFATable(dfa);
+  }
+
+  @Benchmark
+  public DFAState[][] tableRoundTrip() {
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    PrintStream p = new PrintStream(text);
+    DFA.printTable(table, p);
+    p.close();
+    return DFA.getTableFromScanner(new Scanner(text.toString()));
+  }
+
+  @Benchmark
+  public CompactDFATable compactTableRoundTrip() {
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    PrintStream p = new PrintStream(text);
+    DFA.printTable(compact, p);
+    p.close();
+    return DFA.getCompactTableFromScanner(new Scanner(text.toString()));
+  }
+}
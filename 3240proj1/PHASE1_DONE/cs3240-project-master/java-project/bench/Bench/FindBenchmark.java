@@ -0,0 +1,80 @@
+package Bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import MiniRE.FindEngine;
+import MiniRE.MatchSink;
+
+/**
+ * Throughput of the MiniRE find over a generated input, for a regex whose
+ * matches are rare and one whose matches are everywhere, with and without
+ * skipping to the lines of the literal their matches contain. The
+ * megabytes counter is the rate in MB/s.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class FindBenchmark {
+  /** The size of the input */
+  @Param({ "64" })
+  public int inputMB;
+
+  /** The regex to find */
+  @Param({ "([A-Z a-z])*ment([A-Z a-z])*", "([0-9])+ \\. ([0-9])+" })
+  public String regex;
+
+  /** Whether to search only the lines of the required literal */
+  @Param({ "true", "false" })
+  public boolean prefilter;
+
+  private FindEngine engine;
+  private File input;
+  private long matches;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    engine = new FindEngine(regex);
+    engine.setPrefilter(prefilter);
+    input = File.createTempFile("find", ".in");
+    Generators.writeInput(input, (long) inputMB << 20, 100, 42);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    input.delete();
+  }
+
+  @Benchmark
+  public long find(Megabytes counter) throws IOException {
+    matches = 0;
+    engine.find(input, new MatchSink() {
+      public void onMatch(String file, long line, long offset,
+          ByteBuffer buffer, int start, int length) {
+        matches++;
+      }
+    });
+    counter.megabytes += inputMB;
+    return matches;
+  }
+}
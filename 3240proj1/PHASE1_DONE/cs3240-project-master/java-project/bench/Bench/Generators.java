@@ -0,0 +1,165 @@
+package Bench;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Generates specification files and matching inputs of any size for the
+ * benchmarks. The specs start from the classes and rules of the sample spec
+ * and pad the rest with keyword rules; the inputs only hold text those specs
+ * tokenize, so every walker can go through them.
+ */
+
+public class Generators {
+  /** The character classes of every generated spec */
+  public static final String CLASSES = "$DIGIT [0-9]\n"
+      + "$NON-ZERO [^0] IN $DIGIT\n" + "$CHAR [a-zA-Z]\n"
+      + "$UPPER [^a-z] IN $CHAR\n" + "$LOWER [^A-Z] IN $CHAR\n";
+
+  /** The token rules every generated spec starts with */
+  private static final String[] BASE_RULES = {
+      "$IDENTIFIER $LOWER ($LOWER|$DIGIT)*", "$INT ($DIGIT)+",
+      "$FLOAT ($DIGIT)+ \\. ($DIGIT)+", "$EQUALS ==", "$ASSIGN =",
+      "$PLUS \\+", "$MINUS -", "$MULTIPLY \\*" };
+
+  /** Operators the inputs are sprinkled with */
+  private static final String[] OPERATORS = { "==", "=", "+", "-", "*" };
+
+  /**
+   * A spec with the given number of token rules.
+   * @param rules
+   *        The number of token rules, at least the 8 of the sample spec.
+   * @return the spec text.
+   */
+  public static String spec(int rules) {
+    StringBuilder b = new StringBuilder(CLASSES).append('\n');
+    for (String[] rule : rules(rules)) {
+      b.append('$').append(rule[0]).append(' ').append(rule[1]).append('\n');
+    }
+    return b.toString();
+  }
+
+  /**
+   * The token rules of spec(rules), each as its name and its regex.
+   * @param rules
+   * @return
+   */
+  public static String[][] rules(int rules) {
+    String[][] r = new String[Math.max(rules, BASE_RULES.length)][];
+    for (int i = 0; i < r.length; i++) {
+      if (i < BASE_RULES.length) {
+        int space = BASE_RULES[i].indexOf(' ');
+        r[i] = new String[] { BASE_RULES[i].substring(1, space),
+            BASE_RULES[i].substring(space + 1) };
+      } else {
+        int k = i - BASE_RULES.length;
+        r[i] = new String[] { "KW" + k, keyword(k) };
+      }
+    }
+    return r;
+  }
+
+  /**
+   * The k-th keyword: "K" followed by three upper case letters, so keywords
+   * never clash with identifiers.
+   */
+  private static String keyword(int k) {
+    char[] w = { 'K', (char) ('A' + k / 676 % 26), (char) ('A' + k / 26 % 26),
+        (char) ('A' + k % 26) };
+    return new String(w);
+  }
+
+  /**
+   * Writes an input of about the given size that spec(rules) tokenizes
+   * without errors.
+   * @param f
+   *        The file to write.
+   * @param bytes
+   *        The size to reach; the last line may go a little past it.
+   * @param rules
+   *        The number of token rules of the spec the input is for.
+   * @param seed
+   *        Seed of the generator, so runs see the same input.
+   * @throws IOException
+   */
+  public static void writeInput(File f, long bytes, int rules, long seed)
+      throws IOException {
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(f),
+        1 << 16);
+    try {
+      Random random = new Random(seed);
+      int keywords = rules - BASE_RULES.length;
+      StringBuilder line = new StringBuilder();
+      long written = 0;
+      while (written < bytes) {
+        line.setLength(0);
+        int tokens = 4 + random.nextInt(12);
+        for (int i = 0; i < tokens; i++) {
+          if (i > 0) {
+            line.append(' ');
+          }
+          appendToken(line, random, keywords);
+        }
+        line.append('\n');
+        for (int i = 0; i < line.length(); i++) {
+          out.write(line.charAt(i));
+        }
+        written += line.length();
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Appends a random token: an identifier, a number, an operator or, when
+   * the spec has any, a keyword.
+   */
+  private static void appendToken(StringBuilder b, Random random,
+      int keywords) {
+    int kind = random.nextInt(keywords > 0 ? 5 : 4);
+    switch (kind) {
+    case 0:
+      b.append((char) ('a' + random.nextInt(26)));
+      for (int n = random.nextInt(8); n > 0; n--) {
+        int c = random.nextInt(36);
+        b.append(c < 26 ? (char) ('a' + c) : (char) ('0' + c - 26));
+      }
+      break;
+    case 1:
+      b.append(random.nextInt(100000));
+      break;
+    case 2:
+      b.append(random.nextInt(1000)).append('.').append(random.nextInt(1000));
+      break;
+    case 3:
+      b.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+      break;
+    default:
+      b.append(keyword(random.nextInt(keywords)));
+    }
+  }
+
+  /**
+   * Writes a spec and an input to files, to run the Driver on them.
+   * @param args
+   *        The number of rules, the input size in MB, the spec file and the
+   *        input file.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 4) {
+      System.err.println("Usage: Generators RULES INPUT_MB SPEC_FILE INPUT_FILE");
+      System.exit(1);
+    }
+    int rules = Integer.parseInt(args[0]);
+    OutputStream spec = new FileOutputStream(args[2]);
+    spec.write(spec(rules).getBytes("UTF-8"));
+    spec.close();
+    writeInput(new File(args[3]), Long.parseLong(args[1]) << 20, rules, 42);
+  }
+}
@@ -0,0 +1,92 @@
+package Bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DFA.TransitionTable;
+import Lexer.LexerBuilder;
+import Lexer.StreamingTokenizer;
+import Lexer.TextTokenSink;
+
+/**
+ * Time from a spec to its tokens over a small input, building the minimized
+ * table up front, letting a lazy table make only the states the input
+ * reaches, or simulating the NFA with no table at all. The lazy table is
+ * also run with a budget too small for the spec, so that it keeps flushing.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LazyTableBenchmark {
+  /** The number of token rules in the spec */
+  @Param({ "100", "1000" })
+  public int rules;
+
+  /** The size of the input */
+  @Param({ "1" })
+  public int inputMB;
+
+  /** "eager", "nfa", or the lazy table's budget in kilobytes */
+  @Param({ "eager", "nfa", "65536", "16" })
+  public String table;
+
+  private String spec;
+  private File input;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    spec = Generators.spec(rules);
+    input = File.createTempFile("lazy", ".in");
+    Generators.writeInput(input, (long) inputMB << 20, rules, 42);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    input.delete();
+  }
+
+  @Benchmark
+  public TransitionTable specToTokens() throws IOException {
+    LexerBuilder builder = new LexerBuilder();
+    TransitionTable t;
+    if (table.equals("eager")) {
+      t = builder.build(new Scanner(spec));
+    } else if (table.equals("nfa")) {
+      builder.setStateLimit(0);
+      t = builder.buildOrSimulate(new Scanner(spec));
+    } else {
+      t = builder.buildLazy(new Scanner(spec), Long.parseLong(table) << 10);
+    }
+    FileInputStream in = new FileInputStream(input);
+    try {
+      TextTokenSink sink = new TextTokenSink(t, OutputStream.nullOutputStream());
+      new StreamingTokenizer(t).tokenize(in.getChannel(), sink);
+      sink.flush();
+    } finally {
+      in.close();
+    }
+    return t;
+  }
+}
@@ -0,0 +1,27 @@
+package Bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the megabytes a tokenizing benchmark goes through. JMH reports the
+ * counter per second next to the op rate, which gives the throughput in MB/s.
+ */
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Megabytes {
+  /** The megabytes tokenized in this iteration */
+  public double megabytes;
+
+  /**
+   * Starts every iteration from zero.
+   */
+  @Setup(Level.Iteration)
+  public void reset() {
+    megabytes = 0;
+  }
+}
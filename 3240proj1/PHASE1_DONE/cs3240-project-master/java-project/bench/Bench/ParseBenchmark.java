@@ -0,0 +1,73 @@
+package Bench;
+
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import Lexer.LexerBuilder;
+import Parser.RegexCursorParser;
+import Parser.RegexParser;
+
+/**
+ * Time to parse every token rule of a generated spec, with RegexParser.reg_ex
+ * and with RegexCursorParser.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+  /** The number of token rules in the spec */
+  @Param({ "10", "100", "1000" })
+  public int rules;
+
+  /** The regexes of the token rules, as the spec reader hands them over */
+  private String[] regexes;
+
+  /** The build holding the character classes of the spec */
+  private LexerBuilder builder;
+
+  /**
+   * Defines the character classes of the spec and collects its regexes.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    builder = new LexerBuilder();
+    builder.getNFAFromSpecFile(new Scanner(Generators.spec(rules)));
+    String[][] r = Generators.rules(rules);
+    regexes = new String[r.length];
+    for (int i = 0; i < r.length; i++) {
+      regexes[i] = " " + r[i][1];
+    }
+  }
+
+  @Benchmark
+  public void reg_ex(Blackhole bh) {
+    for (String regex : regexes) {
+      bh.consume(RegexParser.reg_ex(regex, builder));
+    }
+  }
+
+  @Benchmark
+  public void cursorParser(Blackhole bh) {
+    for (String regex : regexes) {
+      bh.consume(new RegexCursorParser(regex, builder).parseRegex());
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package Bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DFA.DFA;
+import DFA.DFAState;
+import NFA.NFA;
+
+/**
+ * Tokenizing throughput of the original TableWalker over the DFAState
+ * table. It lives in the default package, so it is called reflectively; the
+ * inputs are smaller than in TokenizeBenchmark since this walker is much
+ * slower. The megabytes counter is the rate in MB/s.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TableWalkerBenchmark {
+  /** The size of the input */
+  @Param({ "1", "16" })
+  public int inputMB;
+
+  /** The number of token rules in the spec */
+  @Param({ "100" })
+  public int rules;
+
+  private Method printTokens;
+  private DFAState startState;
+  private DFAState[][] table;
+  private File input;
+  private PrintStream nowhere;
+
+  /**
+   * Builds the table the way the original Driver did and writes the input.
+   * @throws Exception
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    printTokens = Class.forName("TableWalker").getMethod("printTokens",
+        DFAState.class, DFAState[][].class, PrintStream.class, String.class);
+    DFA dfa = DFA.getDFAFromNFA(NFA.getNFAFromSpecFile(new Scanner(
+        Generators.spec(rules))));
+    startState = dfa.getStartState();
+    table = DFA.getDFATable(dfa);
+    input = File.createTempFile("tablewalker", ".in");
+    Generators.writeInput(input, (long) inputMB << 20, rules, 42);
+    nowhere = new PrintStream(OutputStream.nullOutputStream());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    input.delete();
+  }
+
+  @Benchmark
+  public void printTokens(Megabytes counter) throws Exception {
+    BufferedReader in = new BufferedReader(new FileReader(input), 1 << 16);
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        printTokens.invoke(null, startState, table, nowhere, line);
+      }
+    } finally {
+      in.close();
+    }
+    counter.megabytes += inputMB;
+  }
+}
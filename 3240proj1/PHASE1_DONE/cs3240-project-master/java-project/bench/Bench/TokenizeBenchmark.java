@@ -0,0 +1,137 @@
+package Bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DFA.CompactDFATable;
+import DFA.DFA;
+import DFA.HopcroftMinimizer;
+import Lexer.BufferedTokenSink;
+import Lexer.CompactTableWalker;
+import Lexer.ParallelTokenizer;
+import Lexer.StreamingTokenizer;
+import Lexer.TokenizerCompiler;
+import NFA.ByteClasses;
+import NFA.NFA;
+
+/**
+ * Tokenizing throughput of the table walkers over generated inputs, with the
+ * output thrown away. The megabytes counter is the rate in MB/s. compiled
+ * streams with the table compiled by TokenizerCompiler, against streaming
+ * walking it.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TokenizeBenchmark {
+  /** The size of the input */
+  @Param({ "1", "64", "1024" })
+  public int inputMB;
+
+  /** The number of token rules in the spec */
+  @Param({ "100" })
+  public int rules;
+
+  /** The output format of streaming and parallel; lines only prints text */
+  @Param({ "text", "binary", "json" })
+  public String format;
+
+  private CompactDFATable table;
+  private TokenizerCompiler compiler;
+  private File input;
+  private PrintStream nowhere;
+
+  /**
+   * Builds the table the way the Driver does and writes the input.
+   * @throws IOException
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    NFA nfa = NFA.getNFAFromSpecFile(new Scanner(Generators.spec(rules)));
+    table = CompactDFATable.fromDFA(new HopcroftMinimizer(
+        DFA.getDFAFromNFA(nfa)).getMinimizedDFA(), ByteClasses.fromNFA(nfa));
+    compiler = new TokenizerCompiler(table);
+    input = File.createTempFile("tokenize", ".in");
+    Generators.writeInput(input, (long) inputMB << 20, rules, 42);
+    nowhere = new PrintStream(OutputStream.nullOutputStream());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    input.delete();
+  }
+
+  @Benchmark
+  public void lines(Megabytes counter) throws IOException {
+    BufferedReader in = new BufferedReader(new FileReader(input), 1 << 16);
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        CompactTableWalker.printTokens(table, nowhere, line);
+      }
+    } finally {
+      in.close();
+    }
+    counter.megabytes += inputMB;
+  }
+
+  @Benchmark
+  public void streaming(Megabytes counter) throws IOException {
+    FileInputStream in = new FileInputStream(input);
+    try {
+      BufferedTokenSink sink = BufferedTokenSink.forFormat(format, table,
+          nowhere);
+      new StreamingTokenizer(table).tokenize(in.getChannel(), sink);
+      sink.flush();
+    } finally {
+      in.close();
+    }
+    counter.megabytes += inputMB;
+  }
+
+  @Benchmark
+  public void compiled(Megabytes counter) throws IOException {
+    FileInputStream in = new FileInputStream(input);
+    try {
+      BufferedTokenSink sink = BufferedTokenSink.forFormat(format, table,
+          nowhere);
+      compiler.newTokenizer().tokenize(in.getChannel(), sink);
+      sink.flush();
+    } finally {
+      in.close();
+    }
+    counter.megabytes += inputMB;
+  }
+
+  @Benchmark
+  public void parallel(Megabytes counter) throws IOException {
+    new ParallelTokenizer(table, Runtime.getRuntime().availableProcessors(),
+        format).tokenize(input, nowhere);
+    counter.megabytes += inputMB;
+  }
+}
@@ -0,0 +1,142 @@
+package DFA;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes DFA tables in a versioned binary layout that can be
+ * memory mapped and walked in place. All ints are little endian:
+ *
+ * <pre>
+ * offset  size              contents
+ * 0       4                 magic "DFAT"
+ * 4       4                 version
+ * 8       4                 state count
+ * 12      4                 class count
+ * 16      4                 start state
+ * 20      4                 token count
+ * 24      256               byte to class map
+ * 280     4*states*classes  transitions, -1 for none
+ * ...     4*states          accepted token per state, -1 for none
+ * ...                       token names, each an int length and UTF-8 bytes
+ * </pre>
+ */
+
+public class BinaryTable {
+  /** "DFAT" read as a little endian int */
+  public static final int MAGIC = 0x54414644;
+
+  /** The layout version written by this class */
+  public static final int VERSION = 1;
+
+  /** Where the class map starts */
+  static final int CLASS_MAP_OFFSET = 24;
+
+  /** Where the transitions start */
+  static final int TRANSITIONS_OFFSET = CLASS_MAP_OFFSET + 256;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Encodes a table in the binary layout.
+   * @param t
+   *        The table to encode.
+   * @return a buffer positioned at 0 holding the whole table.
+   */
+  public static ByteBuffer encode(CompactDFATable t) {
+    byte[][] names = new byte[t.getTokenCount()][];
+    int namesSize = 0;
+    for (int i = 0; i < names.length; i++) {
+      names[i] = t.getTokenName(i).getBytes(UTF8);
+      namesSize += 4 + names[i].length;
+    }
+    int[] transitions = t.getTransitions();
+    int[] acceptTokens = t.getAcceptTokens();
+    ByteBuffer b = ByteBuffer.allocate(TRANSITIONS_OFFSET + 4
+        * transitions.length + 4 * acceptTokens.length + namesSize);
+    b.order(ByteOrder.LITTLE_ENDIAN);
+    b.putInt(MAGIC).putInt(VERSION).putInt(t.getStateCount())
+        .putInt(t.getStride()).putInt(t.getStartState())
+        .putInt(t.getTokenCount());
+    b.put(t.getClassMap());
+    b.asIntBuffer().put(transitions).put(acceptTokens);
+    b.position(b.position() + 4 * (transitions.length + acceptTokens.length));
+    for (byte[] name : names) {
+      b.putInt(name.length).put(name);
+    }
+    b.flip();
+    return b;
+  }
+
+  /**
+   * Writes a table to a file in the binary layout.
+   * @param t
+   *        The table to write.
+   * @param f
+   *        The file to write it to.
+   * @throws IOException
+   */
+  public static void write(CompactDFATable t, File f) throws IOException {
+    FileChannel out = FileChannel.open(f.toPath(), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      ByteBuffer b = encode(t);
+      while (b.hasRemaining()) {
+        out.write(b);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Memory maps a table file. Nothing but the header and the token names is
+   * decoded; transitions are read straight out of the mapping, after one
+   * pass checking that they, the class map and the start state are in
+   * range.
+   * @param f
+   *        The file to map.
+   * @return the mapped table.
+   * @throws IOException
+   *         if the file can not be read or is not a table.
+   */
+  public static MappedDFATable map(File f) throws IOException {
+    FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+    try {
+      return new MappedDFATable(in.map(FileChannel.MapMode.READ_ONLY, 0,
+          in.size()));
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Decodes the token names at the end of a table buffer.
+   */
+  static String[] readTokenNames(ByteBuffer b, int offset, int count)
+      throws IOException {
+    String[] names = new String[count];
+    for (int i = 0; i < count; i++) {
+      if (offset + 4 > b.limit()) {
+        throw new IOException("Truncated DFA table");
+      }
+      int length = b.getInt(offset);
+      offset += 4;
+      if (length < 0 || offset + length > b.limit()) {
+        throw new IOException("Truncated DFA table");
+      }
+      byte[] name = new byte[length];
+      for (int j = 0; j < length; j++) {
+        name[j] = b.get(offset + j);
+      }
+      names[i] = new String(name, UTF8);
+      offset += length;
+    }
+    return names;
+  }
+}
@@ -0,0 +1,275 @@
+package DFA;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import NFA.ByteClasses;
+
+/**
+ * A DFA table made of primitive arrays. Characters are first mapped to their
+ * byte class through classMap; the transition for a state and a class lives
+ * at transitions[state * stride + class], -1 meaning there is no transition.
+ * Characters above 255 have no transition. Accepting states have their token
+ * id in acceptTokens, every other state has -1.
+ */
+
+public class CompactDFATable implements TransitionTable {
+  /** The number of states */
+  private int stateCount;
+
+  /** The width of each row, i.e. the number of byte classes */
+  private int stride;
+
+  /** The byte class of each of the 256 byte values */
+  private byte[] classMap;
+
+  /** The state walks start from */
+  private int startState;
+
+  /** Flat transition matrix */
+  private int[] transitions;
+
+  /** Token id per state, -1 if the state does not accept */
+  private int[] acceptTokens;
+
+  /** The printable name of each token id */
+  private String[] tokenNames;
+
+  /**
+   * Constructor method.
+   * @param stateCount
+   * @param classes
+   * @param startState
+   * @param transitions
+   * @param acceptTokens
+   * @param tokenNames
+   */
+  public CompactDFATable(int stateCount, ByteClasses classes, int startState,
+      int[] transitions, int[] acceptTokens, String[] tokenNames) {
+    this.stateCount = stateCount;
+    this.stride = classes.getCount();
+    this.classMap = classes.getClassMap();
+    this.startState = startState;
+    this.transitions = transitions;
+    this.acceptTokens = acceptTokens;
+    this.tokenNames = tokenNames;
+  }
+
+  /**
+   * Converts a DFAState table, as built by DFA.getDFATable or read back by
+   * DFA.getTableFromScanner, to its compact form with one column per byte.
+   * @param table
+   *        The table to convert.
+   * @param startState
+   *        The identifier of the start state.
+   * @return the compact table.
+   */
+  public static CompactDFATable fromTable(DFAState[][] table, int startState) {
+    return fromTable(table, startState, ByteClasses.identity());
+  }
+
+  /**
+   * Converts a DFAState table to its compact form. All the characters of a
+   * class must have the same transitions in the table.
+   * @param table
+   *        The table to convert.
+   * @param startState
+   *        The identifier of the start state.
+   * @param classes
+   *        The byte classes to compress the columns with.
+   * @return the compact table.
+   */
+  public static CompactDFATable fromTable(DFAState[][] table, int startState,
+      ByteClasses classes) {
+    int rows = table.length;
+    int stride = classes.getCount();
+    int[] transitions = new int[rows * stride];
+    int[] acceptTokens = new int[rows];
+    Arrays.fill(transitions, -1);
+    Arrays.fill(acceptTokens, -1);
+    Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+    List<String> tokenNames = new ArrayList<String>();
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < table[i].length && j < 256; j++) {
+        DFAState target = table[i][j];
+        if (target == null) {
+          continue;
+        }
+        transitions[i * stride + classes.classOf(j)] = target.getIdentifier();
+        if (target.isFinal()) {
+          acceptTokens[target.getIdentifier()] = internToken(target, tokenIds,
+              tokenNames);
+        }
+      }
+    }
+    return new CompactDFATable(rows, classes, startState, transitions,
+        acceptTokens, tokenNames.toArray(new String[tokenNames.size()]));
+  }
+
+  /**
+   * Builds the compact table of a DFA directly, without going through a
+   * DFAState table. The rows are indexed by the DFAState identifiers.
+   * @param d
+   *        The DFA to convert.
+   * @param classes
+   *        The byte classes of the NFA the DFA was built from.
+   * @return the compact table.
+   */
+  public static CompactDFATable fromDFA(DFA d, ByteClasses classes) {
+    List<DFAState> reachable = new ArrayList<DFAState>();
+    Set<DFAState> visited = new HashSet<DFAState>();
+    reachable.add(d.getStartState());
+    visited.add(d.getStartState());
+    int rows = 0;
+    for (int i = 0; i < reachable.size(); i++) {
+      DFAState current = reachable.get(i);
+      rows = Math.max(rows, current.getIdentifier() + 1);
+      for (Entry<Character, DFAState> transition : current
+          .transitionsEntrySet()) {
+        if (visited.add(transition.getValue())) {
+          reachable.add(transition.getValue());
+        }
+      }
+    }
+    int stride = classes.getCount();
+    int[] transitions = new int[rows * stride];
+    int[] acceptTokens = new int[rows];
+    Arrays.fill(transitions, -1);
+    Arrays.fill(acceptTokens, -1);
+    Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+    List<String> tokenNames = new ArrayList<String>();
+    for (DFAState current : reachable) {
+      int row = current.getIdentifier() * stride;
+      for (Entry<Character, DFAState> transition : current
+          .transitionsEntrySet()) {
+        char c = transition.getKey();
+        if (c < 256) {
+          transitions[row + classes.classOf(c)] = transition.getValue()
+              .getIdentifier();
+        }
+      }
+      if (current.isFinal()) {
+        acceptTokens[current.getIdentifier()] = internToken(current,
+            tokenIds, tokenNames);
+      }
+    }
+    return new CompactDFATable(rows, classes, d.getStartState()
+        .getIdentifier(), transitions, acceptTokens,
+        tokenNames.toArray(new String[tokenNames.size()]));
+  }
+
+  /**
+   * The token id for the final token of a state, handing out a new one the
+   * first time a token is seen.
+   */
+  private static int internToken(DFAState s, Map<String, Integer> tokenIds,
+      List<String> tokenNames) {
+    String name = s.getTokenName();
+    Integer id = tokenIds.get(name);
+    if (id == null) {
+      id = tokenNames.size();
+      tokenIds.put(name, id);
+      tokenNames.add(name);
+    }
+    return id;
+  }
+
+  /**
+   * The number of states.
+   * @return
+   */
+  public int getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * The width of each row of the transition matrix, which is the number of
+   * byte classes.
+   * @return
+   */
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * The byte class of each of the 256 byte values, to be read with & 0xFF.
+   * Shared, do not modify.
+   * @return
+   */
+  public byte[] getClassMap() {
+    return classMap;
+  }
+
+  /**
+   * The next state after reading character c in the given state.
+   * @param state
+   * @param c
+   * @return -1 if there is no such transition.
+   */
+  public int next(int state, int c) {
+    if (c >= 256) {
+      return -1;
+    }
+    return transitions[state * stride + (classMap[c] & 0xFF)];
+  }
+
+  /**
+   * The state walks start from.
+   * @return
+   */
+  public int getStartState() {
+    return startState;
+  }
+
+  /**
+   * The flat transition matrix. Shared, do not modify.
+   * @return
+   */
+  public int[] getTransitions() {
+    return transitions;
+  }
+
+  /**
+   * The token id accepted by each state, -1 if none. Shared, do not modify.
+   * @return
+   */
+  public int[] getAcceptTokens() {
+    return acceptTokens;
+  }
+
+  /**
+   * The token accepted in a state.
+   * @param state
+   * @return the token id, -1 if the state does not accept.
+   */
+  public int getAcceptToken(int state) {
+    return acceptTokens[state];
+  }
+
+  /**
+   * The number of distinct token ids.
+   * @return
+   */
+  public int getTokenCount() {
+    return tokenNames.length;
+  }
+
+  /**
+   * The printable name of a token id.
+   * @param token
+   * @return
+   */
+  public String getTokenName(int token) {
+    return tokenNames[token];
+  }
+
+  public boolean hasStableStates() {
+    return true;
+  }
+}
@@ -1,20 +1,21 @@
 package DFA;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Set;
 
+import NFA.ByteClasses;
+import NFA.DenseNFA;
 import NFA.NFA;
-import NFA.NFAState;
 
 /**
  * This class represents a DFA.
@@ -55,45 +56,7 @@ public class DFA {
    * @return
    */
   public static DFA getDFAFromNFA(NFA n) {
-    Queue<Set<NFAState>> bfs = new LinkedList<Set<NFAState>>();
-    bfs.add(NFA.getEpsilonClosure(n.getStartState()));
-    Map<Set<NFAState>, DFAState> setOfNFAStatesToDFAStateCache = new HashMap<Set<NFAState>, DFAState>();
-    Set<Set<NFAState>> visitedSetOfDFAStates = new HashSet<Set<NFAState>>();
-    DFA returnableDFA = new DFA(DFAState.NFAStatesToDFA(bfs.element(),
-        setOfNFAStatesToDFAStateCache));
-
-    while (!bfs.isEmpty()) {
-      Set<NFAState> currentSetOfNFAStates = bfs.poll();
-      if (visitedSetOfDFAStates.contains(currentSetOfNFAStates)) {
-        continue;
-      }
-      Set<Character> allTransitionsWeCanTake = new HashSet<Character>();
-      DFAState currentDFAState = DFAState.NFAStatesToDFA(currentSetOfNFAStates,
-          setOfNFAStatesToDFAStateCache);
-      for (NFAState aState : currentSetOfNFAStates) {
-        if (aState == null) {
-          continue;
-        }
-        allTransitionsWeCanTake
-            .addAll(aState.getTransition().keySet());
-      }
-      for (Character aTransitionThatWeCanTake : allTransitionsWeCanTake) {
-        if (aTransitionThatWeCanTake == null) {
-          continue;
-        }
-        Set<NFAState> nextSetOfStates = new HashSet<NFAState>();
-        for (NFAState aState : currentSetOfNFAStates) {
-          nextSetOfStates.addAll(NFA.getEpsilonClosure(aState.getTransition()
-              .get(aTransitionThatWeCanTake)));
-        }
-        DFAState nextDFAState = DFAState.NFAStatesToDFA(nextSetOfStates,
-            setOfNFAStatesToDFAStateCache);
-        currentDFAState.addTransition(aTransitionThatWeCanTake, nextDFAState);
-        bfs.add(nextSetOfStates);
-      }
-      visitedSetOfDFAStates.add(currentSetOfNFAStates);
-    }
-    return returnableDFA;
+    return new SubsetConstruction(new DenseNFA(n)).getDFA();
   }
 
   /**
@@ -103,27 +66,29 @@ public class DFA {
    * @return The DFA table
    */
   public static DFAState[][] getDFATable(DFA d) {
-    DFAState[][] dfaTable = new DFAState[DFAState.count][256];
-    for (int i = 0; i < dfaTable.length; i++) {
-      Arrays.fill(dfaTable[i], null);
-    }
-    Queue<DFAState> bfs = new LinkedList<DFAState>();
-    bfs.add(d.getStartState());
+    List<DFAState> reachable = new ArrayList<DFAState>();
     Set<DFAState> visited = new HashSet<DFAState>();
-    while (!bfs.isEmpty()) {
-      DFAState current = bfs.poll();
-      if (visited.contains(current)) {
-        continue;
+    reachable.add(d.getStartState());
+    visited.add(d.getStartState());
+    int rows = 0;
+    for (int i = 0; i < reachable.size(); i++) {
+      DFAState current = reachable.get(i);
+      rows = Math.max(rows, current.getIdentifier() + 1);
+      for (Entry<Character, DFAState> transition : current
+          .transitionsEntrySet()) {
+        if (visited.add(transition.getValue())) {
+          reachable.add(transition.getValue());
+        }
       }
+    }
+    DFAState[][] dfaTable = new DFAState[rows][256];
+    for (DFAState current : reachable) {
       Set<Entry<Character, DFAState>> currentTransitions = current
           .transitionsEntrySet();
       for (Entry<Character, DFAState> transition : currentTransitions) {
         dfaTable[current.getIdentifier()][(int) transition.getKey()
             .charValue()] = transition.getValue();
-        bfs.add(transition.getValue());
-
       }
-      visited.add(current);
     }
     return dfaTable;
   }
@@ -151,8 +116,116 @@ public class DFA {
     }
   }
 
-  public static DFAState[][] getTableFromScanner(Scanner s) {
+  /**
+   * Prints a compact table in the compressed text layout: a "compressed"
+   * header, the state count, class count and start state, the byte to class
+   * map (classes other than 0 only), one "state class target" line per
+   * transition, then the accepting states with their tokens.
+   * @param t
+   *        The table to print.
+   * @param p
+   *        Where to print it.
+   */
+  public static void printTable(CompactDFATable t, PrintStream p) {
+    p.println("compressed");
+    p.println(t.getStateCount());
+    p.println(t.getStride());
+    p.println(t.getStartState());
+    byte[] classMap = t.getClassMap();
+    for (int c = 0; c < 256; c++) {
+      if (classMap[c] != 0) {
+        p.println(c + " " + (classMap[c] & 0xFF));
+      }
+    }
+    p.println("-1 -1");
+    int[] transitions = t.getTransitions();
+    int finals = 0;
+    for (int i = 0; i < t.getStateCount(); i++) {
+      for (int j = 0; j < t.getStride(); j++) {
+        if (transitions[i * t.getStride() + j] >= 0) {
+          p.println(i + " " + j + " " + transitions[i * t.getStride() + j]);
+        }
+      }
+      if (t.getAcceptTokens()[i] >= 0) {
+        finals++;
+      }
+    }
+    p.println("-1 -1 -1");
+    p.println(finals);
+    for (int i = 0; i < t.getStateCount(); i++) {
+      if (t.getAcceptTokens()[i] >= 0) {
+        p.println(i + " $" + t.getTokenName(t.getAcceptTokens()[i]));
+      }
+    }
+  }
+
+  /**
+   * Reads a table printed by either printTable method. A table in the
+   * original layout gets one class per byte and start state 0.
+   * @param s
+   * @return
+   */
+  public static CompactDFATable getCompactTableFromScanner(Scanner s) {
+    if (s.hasNextInt()) {
+      return CompactDFATable.fromTable(getTableFromScanner(s), 0);
+    }
+    if (!s.next().equals("compressed")) {
+      throw new IllegalArgumentException("Unknown table layout");
+    }
+    int states = s.nextInt();
+    int classes = s.nextInt();
+    int start = s.nextInt();
+    byte[] classMap = new byte[256];
+    while (true) {
+      int c = s.nextInt();
+      int cls = s.nextInt();
+      if (c == -1 && cls == -1) {
+        break;
+      }
+      classMap[c] = (byte) cls;
+    }
+    int[] transitions = new int[states * classes];
+    Arrays.fill(transitions, -1);
+    while (true) {
+      int state = s.nextInt();
+      int cls = s.nextInt();
+      int to = s.nextInt();
+      if (state == -1 && cls == -1 && to == -1) {
+        break;
+      }
+      transitions[state * classes + cls] = to;
+    }
+    int[] acceptTokens = new int[states];
+    Arrays.fill(acceptTokens, -1);
+    List<String> tokenNames = new ArrayList<String>();
+    Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+    int count = s.nextInt();
+    while (count-- > 0) {
+      int state = s.nextInt();
+      String name = s.nextLine().trim().substring(1);
+      Integer id = tokenIds.get(name);
+      if (id == null) {
+        id = tokenNames.size();
+        tokenIds.put(name, id);
+        tokenNames.add(name);
+      }
+      acceptTokens[state] = id;
+    }
+    return new CompactDFATable(states, new ByteClasses(classMap, classes),
+        start, transitions, acceptTokens,
+        tokenNames.toArray(new String[tokenNames.size()]));
+  }
 
+  /**
+   * Reads a table printed by either printTable method back into a DFAState
+   * table with one column per byte.
+   * @param s
+   * @return
+   */
+  public static DFAState[][] getTableFromScanner(Scanner s) {
+    if (!s.hasNextInt()) {
+      return expandTable(getCompactTableFromScanner(s));
+    }
     DFAState[][] rv = new DFAState[s.nextInt()][s.nextInt()];
     HashMap<Integer, DFAState> cache = new HashMap<Integer, DFAState>();
     while (s.hasNextInt()) {
@@ -179,4 +252,29 @@ public class DFA {
     }
     return rv;
   }
+
+  /**
+   * Expands a compact table into a DFAState table with one column per byte.
+   */
+  private static DFAState[][] expandTable(CompactDFATable t) {
+    DFAState[] states = new DFAState[t.getStateCount()];
+    for (int i = 0; i < states.length; i++) {
+      states[i] = new DFAState(i);
+      int token = t.getAcceptTokens()[i];
+      if (token >= 0) {
+        states[i].setFinal(true);
+        states[i].setFinalToken("$" + t.getTokenName(token));
+      }
+    }
+    DFAState[][] rv = new DFAState[states.length][256];
+    for (int i = 0; i < states.length; i++) {
+      for (int c = 0; c < 256; c++) {
+        int to = t.next(i, c);
+        if (to >= 0) {
+          rv[i][c] = states[to];
+        }
+      }
+    }
+    return rv;
+  }
 }
@@ -1,8 +1,6 @@
 package DFA;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -24,19 +22,12 @@ public class DFAState {
    * character
    */
   private Map<Character, DFAState> transitions;
-  /**
-   * Static count to keep track of how many states have been created so far
-   */
-  public static int count = 0;
   /** whether this is an accept state or not */
   private boolean isFinal;
   /** The identifier associated with this state if its a final state */
   private String finalToken;
-  /**
-   * The list that contains all the DFAStates created so far. Easier to debug in
-   * eclipse interface
-   */
-  public static List<DFAState> dbug = new ArrayList<DFAState>();
+  /** The name of the token accepted, finalToken without '$' and spaces */
+  private String tokenName;
 
   /**
    * constructor method. private. Refer to factory method.
@@ -46,19 +37,27 @@ public class DFAState {
 
   public DFAState(int id) {
     identifier = id;
+    transitions = new HashMap<Character, DFAState>();
+    isFinal = false;
+    setFinalToken("");
   }
 
   public void setFinalToken(String finalToken) {
     this.finalToken = finalToken;
+    String trimmed = finalToken.trim();
+    tokenName = (trimmed.startsWith("$") ? trimmed.substring(1) : trimmed)
+        .intern();
   }
 
-  private DFAState(Set<NFAState> allStates) {
+  private DFAState(Set<NFAState> allStates, int id) {
 
-    identifier = count++;
+    identifier = id;
     theNFAStatesRepresented = allStates;
     transitions = new HashMap<Character, DFAState>();
     isFinal = false;
-    finalToken = "";
+    // Of several tokens, the one first in the spec wins, so the
+    // state accepts exactly one.
+    NFAState winner = null;
     for (NFAState n : allStates) {
       if (n == null) {
         continue;
@@ -68,9 +67,13 @@ public class DFAState {
         if (n.getTokenTypeIfFinalState().equals("null")) {
           System.err.println(n);
         }
-        finalToken += n.getTokenTypeIfFinalState() + " ";
+        if (n.beats(winner)) {
+          winner = n;
+        }
       }
     }
+    setFinalToken(winner == null ? "" : winner.getTokenTypeIfFinalState()
+        + " ");
   }
 
   /**
@@ -112,7 +115,7 @@ public class DFAState {
    * @param states
    *        The NFAStates
    * @param cache
-   *        caching DFAState creation
+   *        caching DFAState creation; new states are numbered by its size
    * @return The DFAState created
    */
   public static DFAState
@@ -120,12 +123,36 @@ public class DFAState {
     if (cache.containsKey(states)) {
       return cache.get(states);
     }
-    DFAState returnValue = new DFAState(states);
-    dbug.add(returnValue);
+    DFAState returnValue = new DFAState(states, cache.size());
     cache.put(states, returnValue);
     return returnValue;
   }
 
+  /**
+   * Creates the DFAState for a set of NFAStates the caller already knows to be
+   * new. Used by SubsetConstruction, which keeps its own cache.
+   * @param states
+   *        The NFAStates
+   * @param id
+   *        The identifier of the new state
+   * @return The DFAState created
+   */
+  static DFAState NFAStatesToDFA(Set<NFAState> states, int id) {
+    return new DFAState(states, id);
+  }
+
+  /**
+   * The set of NFA states this DFAState stands for.
+   * @return null if this state was not built from an NFA
+   */
+  public Set<NFAState> getNFAStatesRepresented() {
+    return theNFAStatesRepresented;
+  }
+
+  void setNFAStatesRepresented(Set<NFAState> states) {
+    theNFAStatesRepresented = states;
+  }
+
   /**
    * Returns the unique identifier for this DFAState
    * @return
@@ -158,6 +185,15 @@ public class DFAState {
     return finalToken;
   }
 
+  /**
+   * The name of the token accepted, as it is printed: the final token
+   * without its '$'. Computed when the final token is set, and interned.
+   * @return "" if this is not an accepting state.
+   */
+  public String getTokenName() {
+    return tokenName;
+  }
+
   public void setFinal(boolean t) {
     isFinal = t;
   }
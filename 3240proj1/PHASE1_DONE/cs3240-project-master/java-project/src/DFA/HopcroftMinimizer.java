@@ -0,0 +1,330 @@
+package DFA;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import NFA.NFAState;
+
+/**
+ * Minimizes a DFA with Hopcroft's partition refinement. Final states only
+ * end up together when they accept the same token, so the minimized DFA
+ * tokenizes exactly like the original one.
+ */
+
+public class HopcroftMinimizer {
+  /** The number of reachable states in the DFA we were given */
+  private int statesBefore;
+
+  /** The number of states in the minimized DFA */
+  private int statesAfter;
+
+  /** The minimized DFA */
+  private DFA minimized;
+
+  /**
+   * Constructor method. Runs the minimization.
+   * @param d
+   *        The DFA to minimize. It is left untouched.
+   */
+  public HopcroftMinimizer(DFA d) {
+    // Number the reachable states; index n is an implicit dead state.
+    List<DFAState> states = new ArrayList<DFAState>();
+    Map<DFAState, Integer> index = new HashMap<DFAState, Integer>();
+    index.put(d.getStartState(), 0);
+    states.add(d.getStartState());
+    TreeSet<Character> alphabetSet = new TreeSet<Character>();
+    for (int i = 0; i < states.size(); i++) {
+      for (Entry<Character, DFAState> t : states.get(i).transitionsEntrySet()) {
+        alphabetSet.add(t.getKey());
+        if (!index.containsKey(t.getValue())) {
+          index.put(t.getValue(), states.size());
+          states.add(t.getValue());
+        }
+      }
+    }
+    int n = states.size();
+    int total = n + 1;
+    char[] alphabet = new char[alphabetSet.size()];
+    Map<Character, Integer> symbolOf = new HashMap<Character, Integer>();
+    int k = 0;
+    for (Character c : alphabetSet) {
+      symbolOf.put(c, k);
+      alphabet[k++] = c;
+    }
+
+    int[] delta = new int[total * k];
+    Arrays.fill(delta, n);
+    for (int i = 0; i < n; i++) {
+      for (Entry<Character, DFAState> t : states.get(i).transitionsEntrySet()) {
+        delta[i * k + symbolOf.get(t.getKey())] = index.get(t.getValue());
+      }
+    }
+
+    // Inverse transitions in CSR form: predecessors of state t on symbol a
+    // are inverse[inverseStart[a * total + t] .. inverseStart[a * total + t + 1]).
+    int[] inverseStart = new int[k * total + 1];
+    for (int s = 0; s < total; s++) {
+      for (int a = 0; a < k; a++) {
+        inverseStart[a * total + delta[s * k + a] + 1]++;
+      }
+    }
+    for (int i = 0; i < k * total; i++) {
+      inverseStart[i + 1] += inverseStart[i];
+    }
+    int[] inverse = new int[total * k];
+    int[] fill = Arrays.copyOf(inverseStart, k * total);
+    for (int s = 0; s < total; s++) {
+      for (int a = 0; a < k; a++) {
+        inverse[fill[a * total + delta[s * k + a]]++] = s;
+      }
+    }
+
+    // Initial partition: one block per distinct set of accepted tokens, with
+    // the non-final states (and the dead state) in a block of their own.
+    Map<String, Integer> initialBlocks = new HashMap<String, Integer>();
+    int[] blockOf = new int[total];
+    for (int s = 0; s < total; s++) {
+      String key = s < n ? tokenKey(states.get(s)) : "";
+      Integer block = initialBlocks.get(key);
+      if (block == null) {
+        block = initialBlocks.size();
+        initialBlocks.put(key, block);
+      }
+      blockOf[s] = block;
+    }
+    Partition p = new Partition(total, blockOf, initialBlocks.size());
+
+    int[] worklist = new int[total];
+    boolean[] inWorklist = new boolean[total];
+    int worklistSize = 0;
+    int largest = 0;
+    for (int b = 1; b < p.blockCount; b++) {
+      if (p.size(b) > p.size(largest)) {
+        largest = b;
+      }
+    }
+    for (int b = 0; b < p.blockCount; b++) {
+      if (b != largest) {
+        worklist[worklistSize++] = b;
+        inWorklist[b] = true;
+      }
+    }
+
+    int[] splitter = new int[total];
+    int[] touched = new int[total];
+    while (worklistSize > 0) {
+      int b = worklist[--worklistSize];
+      inWorklist[b] = false;
+      int splitterSize = p.size(b);
+      System.arraycopy(p.elements, p.start[b], splitter, 0, splitterSize);
+      for (int a = 0; a < k; a++) {
+        int touchedCount = 0;
+        for (int i = 0; i < splitterSize; i++) {
+          int t = splitter[i];
+          for (int j = inverseStart[a * total + t]; j < inverseStart[a
+              * total + t + 1]; j++) {
+            int block = p.mark(inverse[j]);
+            if (block >= 0) {
+              touched[touchedCount++] = block;
+            }
+          }
+        }
+        for (int i = 0; i < touchedCount; i++) {
+          int block = touched[i];
+          int created = p.split(block);
+          if (created < 0) {
+            continue;
+          }
+          if (inWorklist[block]) {
+            worklist[worklistSize++] = created;
+            inWorklist[created] = true;
+          } else {
+            int smaller = p.size(block) <= p.size(created) ? block : created;
+            worklist[worklistSize++] = smaller;
+            inWorklist[smaller] = true;
+          }
+        }
+      }
+    }
+
+    // Build the quotient DFA, numbering blocks in BFS order from the start.
+    int deadBlock = p.blockOf[n];
+    int[] newId = new int[p.blockCount];
+    Arrays.fill(newId, -1);
+    List<DFAState> created = new ArrayList<DFAState>();
+    List<Integer> representative = new ArrayList<Integer>();
+    newId[p.blockOf[0]] = 0;
+    created.add(quotientState(0, p, p.blockOf[0], states));
+    representative.add(p.elements[p.start[p.blockOf[0]]]);
+    for (int i = 0; i < created.size(); i++) {
+      int rep = representative.get(i);
+      for (int a = 0; a < k; a++) {
+        int targetBlock = p.blockOf[delta[rep * k + a]];
+        if (targetBlock == deadBlock) {
+          continue;
+        }
+        if (newId[targetBlock] == -1) {
+          newId[targetBlock] = created.size();
+          created.add(quotientState(created.size(), p, targetBlock, states));
+          representative.add(p.elements[p.start[targetBlock]]);
+        }
+        created.get(i).addTransition(alphabet[a], created.get(newId[targetBlock]));
+      }
+    }
+    statesBefore = n;
+    statesAfter = created.size();
+    minimized = new DFA(created.get(0));
+  }
+
+  /**
+   * Makes the DFAState standing for a block of equivalent states.
+   */
+  private static DFAState quotientState(int id, Partition p, int block,
+      List<DFAState> states) {
+    DFAState returnValue = new DFAState(id);
+    Set<NFAState> represented = new HashSet<NFAState>();
+    for (int i = p.start[block]; i < p.end[block]; i++) {
+      if (p.elements[i] < states.size()) {
+        DFAState original = states.get(p.elements[i]);
+        if (original.getNFAStatesRepresented() != null) {
+          represented.addAll(original.getNFAStatesRepresented());
+        }
+        if (original.isFinal()) {
+          returnValue.setFinal(true);
+          returnValue.setFinalToken(original.getFinalToken());
+        }
+      }
+    }
+    returnValue.setNFAStatesRepresented(represented);
+    return returnValue;
+  }
+
+  /**
+   * The tokens accepted by a state, in a canonical order. Built states
+   * accept one token, the winner; tables read from old text files may list
+   * several.
+   */
+  private static String tokenKey(DFAState s) {
+    if (!s.isFinal()) {
+      return "";
+    }
+    String[] tokens = s.getFinalToken().trim().split("\\s+");
+    Arrays.sort(tokens);
+    return Arrays.toString(tokens);
+  }
+
+  /**
+   * The number of reachable states before minimization.
+   * @return
+   */
+  public int getStatesBefore() {
+    return statesBefore;
+  }
+
+  /**
+   * The number of states after minimization.
+   * @return
+   */
+  public int getStatesAfter() {
+    return statesAfter;
+  }
+
+  /**
+   * The minimized DFA. Its states are numbered from 0, the start state being
+   * 0.
+   * @return
+   */
+  public DFA getMinimizedDFA() {
+    return minimized;
+  }
+
+  /**
+   * A partition of [0, size) into blocks. Each block is a contiguous range of
+   * the elements array; marked elements are swapped to the front of their
+   * block so a split only has to move a boundary.
+   */
+  private static final class Partition {
+    int[] elements;
+    int[] location;
+    int[] blockOf;
+    int[] start;
+    int[] end;
+    int[] marked;
+    int blockCount;
+
+    Partition(int size, int[] initialBlockOf, int initialBlocks) {
+      elements = new int[size];
+      location = new int[size];
+      blockOf = initialBlockOf;
+      start = new int[size];
+      end = new int[size];
+      marked = new int[size];
+      blockCount = initialBlocks;
+      int[] counts = new int[initialBlocks];
+      for (int s = 0; s < size; s++) {
+        counts[blockOf[s]]++;
+      }
+      int offset = 0;
+      for (int b = 0; b < initialBlocks; b++) {
+        start[b] = end[b] = offset;
+        offset += counts[b];
+      }
+      for (int s = 0; s < size; s++) {
+        int b = blockOf[s];
+        elements[end[b]] = s;
+        location[s] = end[b]++;
+      }
+    }
+
+    int size(int b) {
+      return end[b] - start[b];
+    }
+
+    /**
+     * Marks an element. Returns its block if this is the first mark in that
+     * block, -1 otherwise.
+     */
+    int mark(int s) {
+      int b = blockOf[s];
+      int firstUnmarked = start[b] + marked[b];
+      int at = location[s];
+      if (at < firstUnmarked) {
+        return -1;
+      }
+      int other = elements[firstUnmarked];
+      elements[firstUnmarked] = s;
+      location[s] = firstUnmarked;
+      elements[at] = other;
+      location[other] = at;
+      marked[b]++;
+      return marked[b] == 1 ? b : -1;
+    }
+
+    /**
+     * Splits the marked elements of a block off into a new block. Returns
+     * the new block or -1 if every element was marked.
+     */
+    int split(int b) {
+      int count = marked[b];
+      marked[b] = 0;
+      if (count == size(b)) {
+        return -1;
+      }
+      int created = blockCount++;
+      start[created] = start[b];
+      end[created] = start[b] + count;
+      start[b] = end[created];
+      for (int i = start[created]; i < end[created]; i++) {
+        blockOf[elements[i]] = created;
+      }
+      return created;
+    }
+  }
+}
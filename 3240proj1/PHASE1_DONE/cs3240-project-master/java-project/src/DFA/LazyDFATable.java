@@ -0,0 +1,279 @@
+package DFA;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import NFA.ByteClasses;
+import NFA.DenseNFA;
+import NFA.NFAState;
+
+/**
+ * A DFA table built while it is walked. A state is a set of NFA states and
+ * is only made, along with its transition on a byte class, the first time a
+ * walk needs it; the transitions found so far are kept in the same flat
+ * layout as CompactDFATable. When the states no longer fit in the memory
+ * budget, every state is forgotten and the table starts over from the start
+ * state, so pathological specs cost time instead of memory. The state a walk
+ * is in survives a flush; any other state number handed out before it does
+ * not. Not thread safe: use one table per thread.
+ */
+
+public class LazyDFATable implements TransitionTable {
+  /** A transition not worked out yet */
+  private static final int UNKNOWN = -2;
+
+  /** The NFA being determinized */
+  private DenseNFA nfa;
+
+  /** The byte class of each of the 256 byte values */
+  private byte[] classMap;
+
+  /** A byte of each class, to look the transitions of the class up with */
+  private char[] representatives;
+
+  /** The width of each row, i.e. the number of byte classes */
+  private int stride;
+
+  /** The number of states kept before the table is flushed */
+  private int maxStates;
+
+  /** The number of states made since the last flush */
+  private int stateCount;
+
+  /** The NFA states of each state */
+  private List<StateSet> sets = new ArrayList<StateSet>();
+
+  /** Bitset of NFA states to the number of its state */
+  private Map<StateSet, Integer> ids = new HashMap<StateSet, Integer>();
+
+  /** Flat transition matrix, UNKNOWN where not worked out yet */
+  private int[] transitions;
+
+  /** Token id per state, -1 if the state does not accept */
+  private int[] acceptTokens;
+
+  /** Token name to token id; ids stay valid across flushes */
+  private Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+
+  /** The printable name of each token id */
+  private List<String> tokenNames = new ArrayList<String>();
+
+  /** The number of times the table was flushed */
+  private int flushes;
+
+  /** Bitset the target of a transition is gathered in */
+  private long[] scratch;
+
+  /**
+   * Constructor method. Only the start state is made.
+   * @param nfa
+   *        The NFA to determinize.
+   * @param classes
+   *        The byte classes of the NFA.
+   * @param memoryBudget
+   *        Roughly how many bytes the states may take before a flush.
+   */
+  public LazyDFATable(DenseNFA nfa, ByteClasses classes, long memoryBudget) {
+    this.nfa = nfa;
+    this.classMap = classes.getClassMap();
+    this.stride = classes.getCount();
+    representatives = new char[stride];
+    boolean[] seen = new boolean[stride];
+    for (int b = 0; b < 256; b++) {
+      int c = classMap[b] & 0xFF;
+      if (!seen[c]) {
+        seen[c] = true;
+        representatives[c] = (char) b;
+      }
+    }
+    // A row, the NFA state bitset and the hash map entry standing for it
+    long stateCost = 4L * stride + 8L * nfa.words() + 96;
+    maxStates = (int) Math.max(3, Math.min(Integer.MAX_VALUE / stride,
+        memoryBudget / stateCost));
+    int capacity = Math.min(maxStates, 64);
+    transitions = new int[capacity * stride];
+    acceptTokens = new int[capacity];
+    scratch = new long[nfa.words()];
+    nfa.addClosure(nfa.getStartState(), scratch);
+    intern(scratch);
+    Arrays.fill(scratch, 0L);
+  }
+
+  public int getStartState() {
+    return 0;
+  }
+
+  public int next(int state, int c) {
+    if (c > 255) {
+      return -1;
+    }
+    int index = state * stride + (classMap[c] & 0xFF);
+    int target = transitions[index];
+    if (target != UNKNOWN) {
+      return target;
+    }
+    return computeTransition(state, classMap[c] & 0xFF);
+  }
+
+  public int getAcceptToken(int state) {
+    return acceptTokens[state];
+  }
+
+  public int getTokenCount() {
+    return tokenNames.size();
+  }
+
+  public String getTokenName(int token) {
+    return tokenNames.get(token);
+  }
+
+  public boolean hasStableStates() {
+    return false;
+  }
+
+  /**
+   * The number of states made since the last flush.
+   * @return
+   */
+  public int getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * The number of times the states outgrew the budget and were forgotten.
+   * @return
+   */
+  public int getFlushCount() {
+    return flushes;
+  }
+
+  /**
+   * Works out and records the transition of a state on a byte class.
+   */
+  private int computeTransition(int state, int byteClass) {
+    char symbol = representatives[byteClass];
+    int flushesBefore = flushes;
+    long[] bits = sets.get(state).bits;
+    long[] target = scratch;
+    boolean empty = true;
+    for (int word = 0; word < bits.length; word++) {
+      long remaining = bits[word];
+      while (remaining != 0) {
+        int s = (word << 6) + Long.numberOfTrailingZeros(remaining);
+        remaining &= remaining - 1;
+        char[] symbols = nfa.getSymbols(s);
+        int[] targets = nfa.getTargets(s);
+        int i = firstIndexOf(symbols, symbol);
+        for (; i < symbols.length && symbols[i] == symbol; i++) {
+          nfa.addClosure(targets[i], target);
+          empty = false;
+        }
+      }
+    }
+    int next = -1;
+    if (!empty) {
+      Integer known = ids.get(new StateSet(target));
+      if (known != null) {
+        next = known;
+      } else {
+        if (stateCount == maxStates) {
+          flush();
+        }
+        next = intern(target);
+      }
+    }
+    Arrays.fill(target, 0L);
+    if (flushes == flushesBefore) {
+      // After a flush the source state is gone, so there is no row to
+      // record the transition in.
+      transitions[state * stride + byteClass] = next;
+    }
+    return next;
+  }
+
+  /**
+   * Forgets every state but the start state.
+   */
+  private void flush() {
+    flushes++;
+    StateSet start = sets.get(0);
+    sets.clear();
+    ids.clear();
+    stateCount = 0;
+    Arrays.fill(transitions, UNKNOWN);
+    Arrays.fill(acceptTokens, -1);
+    addState(start);
+  }
+
+  /**
+   * Makes the state for a new set of NFA states. The bits are copied.
+   */
+  private int intern(long[] bits) {
+    return addState(new StateSet(bits.clone()));
+  }
+
+  private int addState(StateSet set) {
+    int id = stateCount++;
+    if (id == acceptTokens.length) {
+      int capacity = (int) Math.min(maxStates, 2L * id);
+      transitions = Arrays.copyOf(transitions, capacity * stride);
+      acceptTokens = Arrays.copyOf(acceptTokens, capacity);
+    }
+    Arrays.fill(transitions, id * stride, (id + 1) * stride, UNKNOWN);
+    acceptTokens[id] = acceptToken(set.bits);
+    sets.add(set);
+    ids.put(set, id);
+    return id;
+  }
+
+  /**
+   * The token id of a set of NFA states: that of the final state first in
+   * the spec, as in DFAState.
+   */
+  private int acceptToken(long[] bits) {
+    NFAState winner = null;
+    for (int word = 0; word < bits.length; word++) {
+      long remaining = bits[word];
+      while (remaining != 0) {
+        NFAState s = nfa.getState((word << 6)
+            + Long.numberOfTrailingZeros(remaining));
+        remaining &= remaining - 1;
+        if (s.isFinal() && s.beats(winner)) {
+          winner = s;
+        }
+      }
+    }
+    if (winner == null) {
+      return -1;
+    }
+    String trimmed = winner.getTokenTypeIfFinalState().trim();
+    String name = trimmed.startsWith("$") ? trimmed.substring(1) : trimmed;
+    Integer id = tokenIds.get(name);
+    if (id == null) {
+      id = tokenNames.size();
+      tokenIds.put(name, id);
+      tokenNames.add(name);
+    }
+    return id;
+  }
+
+  /**
+   * The index of the first occurrence of c in a sorted array, or where it
+   * would go.
+   */
+  private static int firstIndexOf(char[] symbols, char c) {
+    int low = 0, high = symbols.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (symbols[middle] < c) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
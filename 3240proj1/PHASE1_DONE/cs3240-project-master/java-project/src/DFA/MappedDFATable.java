@@ -0,0 +1,139 @@
+package DFA;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A DFA table in the BinaryTable layout, walked in place out of a (usually
+ * memory mapped) buffer. The buffer is only read, so one instance can be
+ * shared by any number of threads.
+ */
+
+public class MappedDFATable implements TransitionTable {
+  /** The table bytes */
+  private ByteBuffer buffer;
+
+  /** The number of states */
+  private int stateCount;
+
+  /** The number of byte classes */
+  private int stride;
+
+  /** The state walks start from */
+  private int startState;
+
+  /** Where the accepted tokens start */
+  private int acceptOffset;
+
+  /** The printable name of each token id */
+  private String[] tokenNames;
+
+  /**
+   * Constructor method.
+   * @param b
+   *        The buffer holding the table from its position on.
+   * @throws IOException
+   *         if the buffer does not hold a table this version understands.
+   */
+  public MappedDFATable(ByteBuffer b) throws IOException {
+    buffer = b.slice().order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.limit() < BinaryTable.TRANSITIONS_OFFSET
+        || buffer.getInt(0) != BinaryTable.MAGIC) {
+      throw new IOException("Not a DFA table");
+    }
+    if (buffer.getInt(4) != BinaryTable.VERSION) {
+      throw new IOException("Unsupported DFA table version "
+          + buffer.getInt(4));
+    }
+    stateCount = buffer.getInt(8);
+    stride = buffer.getInt(12);
+    startState = buffer.getInt(16);
+    int tokenCount = buffer.getInt(20);
+    long cells = (long) stateCount * stride;
+    long namesOffset = BinaryTable.TRANSITIONS_OFFSET + 4 * cells + 4L
+        * stateCount;
+    if (stateCount < 0 || stride <= 0 || stride > 256 || tokenCount < 0
+        || namesOffset > buffer.limit()) {
+      throw new IOException("Corrupt DFA table header");
+    }
+    acceptOffset = (int) (BinaryTable.TRANSITIONS_OFFSET + 4 * cells);
+    tokenNames = BinaryTable.readTokenNames(buffer, (int) namesOffset,
+        tokenCount);
+    check(tokenCount);
+  }
+
+  /**
+   * Checks that every state, class and token the table refers to exists, so
+   * that a corrupt table fails here rather than in the middle of a walk.
+   */
+  private void check(int tokenCount) throws IOException {
+    if (startState < 0 || startState >= stateCount) {
+      throw new IOException("Corrupt DFA table: start state " + startState);
+    }
+    for (int c = 0; c < 256; c++) {
+      int cls = buffer.get(BinaryTable.CLASS_MAP_OFFSET + c) & 0xFF;
+      if (cls >= stride) {
+        throw new IOException("Corrupt DFA table: byte " + c + " in class "
+            + cls);
+      }
+    }
+    for (int i = BinaryTable.TRANSITIONS_OFFSET; i < acceptOffset; i += 4) {
+      int target = buffer.getInt(i);
+      if (target < -1 || target >= stateCount) {
+        throw new IOException("Corrupt DFA table: transition to " + target);
+      }
+    }
+    for (int state = 0; state < stateCount; state++) {
+      int token = getAcceptToken(state);
+      if (token < -1 || token >= tokenCount) {
+        throw new IOException("Corrupt DFA table: token " + token);
+      }
+    }
+  }
+
+  public int getStartState() {
+    return startState;
+  }
+
+  public int next(int state, int c) {
+    if (c >= 256) {
+      return -1;
+    }
+    int cls = buffer.get(BinaryTable.CLASS_MAP_OFFSET + c) & 0xFF;
+    return buffer.getInt(BinaryTable.TRANSITIONS_OFFSET
+        + ((state * stride + cls) << 2));
+  }
+
+  public int getAcceptToken(int state) {
+    return buffer.getInt(acceptOffset + (state << 2));
+  }
+
+  public int getTokenCount() {
+    return tokenNames.length;
+  }
+
+  public String getTokenName(int token) {
+    return tokenNames[token];
+  }
+
+  public boolean hasStableStates() {
+    return true;
+  }
+
+  /**
+   * The number of states.
+   * @return
+   */
+  public int getStateCount() {
+    return stateCount;
+  }
+
+  /**
+   * The number of byte classes.
+   * @return
+   */
+  public int getStride() {
+    return stride;
+  }
+}
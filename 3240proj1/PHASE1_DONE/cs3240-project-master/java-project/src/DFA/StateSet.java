@@ -0,0 +1,30 @@
+package DFA;
+
+import java.util.Arrays;
+
+/**
+ * A set of NFA states as a bitset over their DenseNFA indices, usable as a
+ * hash key. The bits must not change once the set is a key.
+ */
+
+final class StateSet {
+  /** The members, one bit per DenseNFA index */
+  final long[] bits;
+
+  /** The hash of the bits, computed once */
+  private final int hash;
+
+  StateSet(long[] bits) {
+    this.bits = bits;
+    this.hash = Arrays.hashCode(bits);
+  }
+
+  public int hashCode() {
+    return hash;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof StateSet && ((StateSet) o).hash == hash
+        && Arrays.equals(((StateSet) o).bits, bits);
+  }
+}
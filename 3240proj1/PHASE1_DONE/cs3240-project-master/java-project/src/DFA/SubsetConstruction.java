@@ -0,0 +1,141 @@
+package DFA;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import NFA.DenseNFA;
+import NFA.NFAState;
+
+/**
+ * Subset construction over a DenseNFA. Sets of NFA states are kept as long[]
+ * bitsets, epsilon closures come precomputed from the DenseNFA, and each DFA
+ * state is expanded exactly once off a worklist.
+ */
+
+public class SubsetConstruction {
+  /** The NFA being determinized */
+  private DenseNFA nfa;
+
+  /** Bitset of NFA states to the DFAState standing for it */
+  private Map<StateSet, DFAState> cache = new HashMap<StateSet, DFAState>();
+
+  /** The NFA state sets in the order their DFAStates were created */
+  private List<StateSet> worklist = new ArrayList<StateSet>();
+
+  /** The most DFA states to make before giving up */
+  private int stateLimit;
+
+  /**
+   * Constructor method.
+   * @param nfa
+   *        the NFA to determinize.
+   */
+  public SubsetConstruction(DenseNFA nfa) {
+    this(nfa, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructor method.
+   * @param nfa
+   *        the NFA to determinize.
+   * @param stateLimit
+   *        The most DFA states to make before giving up.
+   */
+  public SubsetConstruction(DenseNFA nfa, int stateLimit) {
+    this.nfa = nfa;
+    this.stateLimit = stateLimit;
+  }
+
+  /**
+   * Runs the subset construction.
+   * @return the DFA equivalent to the NFA, null if it has more states than
+   *         the limit.
+   */
+  public DFA getDFA() {
+    int words = nfa.words();
+    long[] startBits = new long[words];
+    nfa.addClosure(nfa.getStartState(), startBits);
+    DFA returnableDFA = new DFA(intern(startBits));
+
+    long[] scratch = new long[words];
+    long[] pairs = new long[16];
+    for (int w = 0; w < worklist.size(); w++) {
+      StateSet current = worklist.get(w);
+      DFAState currentDFAState = cache.get(current);
+
+      // Gather every (character, target) pair leaving this set, sorted by
+      // character so each run becomes one DFA transition.
+      int pairCount = 0;
+      long[] bits = current.bits;
+      for (int word = 0; word < bits.length; word++) {
+        long remaining = bits[word];
+        while (remaining != 0) {
+          int s = (word << 6) + Long.numberOfTrailingZeros(remaining);
+          remaining &= remaining - 1;
+          char[] symbols = nfa.getSymbols(s);
+          int[] targets = nfa.getTargets(s);
+          if (pairCount + symbols.length > pairs.length) {
+            pairs = Arrays.copyOf(pairs,
+                Math.max(pairs.length * 2, pairCount + symbols.length));
+          }
+          for (int i = 0; i < symbols.length; i++) {
+            pairs[pairCount++] = ((long) symbols[i] << 32) | targets[i];
+          }
+        }
+      }
+      Arrays.sort(pairs, 0, pairCount);
+
+      int i = 0;
+      while (i < pairCount) {
+        char symbol = (char) (pairs[i] >>> 32);
+        int lastTarget = -1;
+        while (i < pairCount && (char) (pairs[i] >>> 32) == symbol) {
+          int target = (int) pairs[i++];
+          if (target != lastTarget) {
+            nfa.addClosure(target, scratch);
+            lastTarget = target;
+          }
+        }
+        currentDFAState.addTransition(symbol, intern(scratch));
+        Arrays.fill(scratch, 0L);
+      }
+      if (worklist.size() > stateLimit) {
+        return null;
+      }
+    }
+    return returnableDFA;
+  }
+
+  /**
+   * Finds or creates the DFAState for a set of NFA states. The bits are
+   * copied if a new state has to be made.
+   * @param bits
+   * @return
+   */
+  private DFAState intern(long[] bits) {
+    StateSet key = new StateSet(bits);
+    DFAState existing = cache.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    key = new StateSet(bits.clone());
+    Set<NFAState> members = new LinkedHashSet<NFAState>();
+    for (int word = 0; word < bits.length; word++) {
+      long remaining = bits[word];
+      while (remaining != 0) {
+        members.add(nfa.getState((word << 6)
+            + Long.numberOfTrailingZeros(remaining)));
+        remaining &= remaining - 1;
+      }
+    }
+    DFAState created = DFAState.NFAStatesToDFA(members, worklist.size());
+    cache.put(key, created);
+    worklist.add(key);
+    return created;
+  }
+}
@@ -0,0 +1,50 @@
+package DFA;
+
+/**
+ * The operations a tokenizer needs from a DFA table, whatever its storage.
+ * States are ints, -1 standing for the dead state.
+ */
+
+public interface TransitionTable {
+
+  /**
+   * The state walks start from.
+   * @return
+   */
+  int getStartState();
+
+  /**
+   * The next state after reading character c in the given state.
+   * @param state
+   * @param c
+   * @return -1 if there is no such transition.
+   */
+  int next(int state, int c);
+
+  /**
+   * The token accepted in a state.
+   * @param state
+   * @return the token id, -1 if the state does not accept.
+   */
+  int getAcceptToken(int state);
+
+  /**
+   * The number of distinct token ids.
+   * @return
+   */
+  int getTokenCount();
+
+  /**
+   * The printable name of a token id.
+   * @param token
+   * @return
+   */
+  String getTokenName(int token);
+
+  /**
+   * Whether a state number stands for the same state as long as the table
+   * lives, so that a walk may remember states it went through.
+   * @return
+   */
+  boolean hasStableStates();
+}
@@ -1,15 +1,31 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
+import DFA.BinaryTable;
+import DFA.CompactDFATable;
 import DFA.DFA;
-import DFA.DFAState;
-import NFA.NFA;
-import NFA.NFAState;
+import DFA.TransitionTable;
+import Lexer.BufferedTokenSink;
+import Lexer.CompactTableWalker;
+import Lexer.LexerBuilder;
+import Lexer.NFASimulator;
+import Lexer.ParallelTokenizer;
+import Lexer.StreamingTokenizer;
+import Lexer.TokenizerCompiler;
+import MiniRE.FindEngine;
+import MiniRE.PrintingMatchSink;
+import MiniRE.ReplaceEngine;
 
 /**
  * This is the driver for our scanner generator. This is where program execution
@@ -20,53 +36,251 @@ public class Driver {
 
   /**
    * @param args
-   *        Can specify --specs-file, --input-file, --output-file
+   *        Can specify --specs-file, --input-file, --output-file, and
+   *        <ul>
+   *        <li>--text-table: also export the table in text form</li>
+   *        <li>--table-file FILE: write the table to FILE in binary form and
+   *        walk it mapped from there</li>
+   *        <li>--streaming: tokenize in large byte chunks, not by line</li>
+   *        <li>--threads N: tokenize chunks of the input on N cores</li>
+   *        <li>--format text|binary|json: the output format of --streaming
+   *        and --threads; binary and json imply --streaming</li>
+   *        <li>--compiled: compile the table into Java code for --streaming
+   *        and --threads; implies --streaming</li>
+   *        <li>--glushkov: build the NFA as an epsilon free position
+   *        automaton</li>
+   *        <li>--lazy MB: make the table's states while tokenizing, in at
+   *        most about MB megabytes</li>
+   *        <li>--state-limit N: simulate the NFA if its DFA has more than N
+   *        states</li>
+   *        <li>--find REGEX: print every match of REGEX in the input files,
+   *        of which there may be several, instead of tokenizing</li>
+   *        <li>--replace REGEX --with STRING: copy the input file to the
+   *        output file with the matches of REGEX replaced by STRING</li>
+   *        <li>--recursive-replace REGEX --with STRING: the same, until no
+   *        match is left</li>
+   *        </ul>
    */
   public static void main(String[] args) {
     String specificationFilename = "", inputFilename = "", outputFileName = "";
+    String format = "text", findRegex = null, replaceRegex = null;
+    String replacement = null, tableFileName = null;
+    boolean recursiveReplace = false;
+    List<File> inputFiles = new ArrayList<File>();
+    boolean exportTextTable = false, streaming = false, glushkov = false;
+    boolean compiled = false;
+    int threads = 0, lazyMegabytes = 0, stateLimit = Integer.MAX_VALUE;
     for (int i = 0; i < args.length; i++) {
       String currentArgument = args[i];
       if (currentArgument.equals("--specs-file")) {
         specificationFilename = args[++i];
       } else if (currentArgument.equals("--input-file")) {
         inputFilename = args[++i];
+        inputFiles.add(new File(inputFilename));
       } else if (currentArgument.equals("--output-file")) {
         outputFileName = args[++i];
+      } else if (currentArgument.equals("--text-table")) {
+        exportTextTable = true;
+      } else if (currentArgument.equals("--table-file")) {
+        tableFileName = args[++i];
+      } else if (currentArgument.equals("--streaming")) {
+        streaming = true;
+      } else if (currentArgument.equals("--compiled")) {
+        compiled = true;
+      } else if (currentArgument.equals("--glushkov")) {
+        glushkov = true;
+      } else if (currentArgument.equals("--threads")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (currentArgument.equals("--lazy")) {
+        lazyMegabytes = Integer.parseInt(args[++i]);
+      } else if (currentArgument.equals("--state-limit")) {
+        stateLimit = Integer.parseInt(args[++i]);
+      } else if (currentArgument.equals("--format")) {
+        format = args[++i];
+      } else if (currentArgument.equals("--find")) {
+        findRegex = args[++i];
+      } else if (currentArgument.equals("--replace")
+          || currentArgument.equals("--recursive-replace")) {
+        recursiveReplace = currentArgument.equals("--recursive-replace");
+        replaceRegex = args[++i];
+      } else if (currentArgument.equals("--with")) {
+        replacement = args[++i];
       } else {
         System.err.println("Unknown argument: " + args[i]);
         System.exit(1);
       }
     }
-//    System.out.println(specificationFilename);
+    if (lazyMegabytes > 0 && threads > 0) {
+      // Threads would have to share the states the table makes.
+      System.err.println("--lazy cannot be combined with --threads");
+      System.exit(1);
+    }
+    if (lazyMegabytes > 0 && compiled) {
+      // Only a table whose states are all made can be compiled.
+      System.err.println("--lazy cannot be combined with --compiled");
+      System.exit(1);
+    }
+    if (compiled && threads == 0) {
+      // The line walker has no compiled form.
+      streaming = true;
+    }
+    if ((replaceRegex == null) != (replacement == null)) {
+      System.err.println("--replace and --recursive-replace need --with");
+      System.exit(1);
+    }
+    if (!Arrays.asList(BufferedTokenSink.FORMATS).contains(format)) {
+      System.err.println("Unknown format: " + format);
+      System.exit(1);
+    }
+    if (!format.equals("text") && threads == 0) {
+      // Only the tokenizers that know token offsets write other formats.
+      streaming = true;
+    }
     try {
-//      ArrayList<NFAState> all = NFAState
-//          .allStates;
-      NFA stuffToMatch = NFA.getNFAFromSpecFile(new Scanner(new File(
-          specificationFilename)));
-      DFA leDFA = DFA.getDFAFromNFA(stuffToMatch);
-//      List<DFAState> DFAStates = DFAState.dbug;
-      DFAState[][] table = DFA.getDFATable(leDFA);
-      PrintStream ps = new PrintStream(new File("table"));
-      DFA.printTable(table, ps);
-      ps.close();
-      DFAState[][] copy = DFA
-          .getTableFromScanner(new Scanner(new File("table")));
-      Scanner inputFileScanner = new Scanner(new File(inputFilename));
-      PrintStream outputFileWriter = new PrintStream(new File(outputFileName));
-      while (inputFileScanner.hasNextLine()) {
-        String currentLine = inputFileScanner.nextLine();
-        if (currentLine == null || currentLine == "" || currentLine.equals("")) {
+      if (findRegex != null) {
+        find(findRegex, inputFiles, outputFileName);
+        return;
+      }
+      if (replaceRegex != null) {
+        ReplaceEngine engine = new ReplaceEngine(replaceRegex, replacement);
+        if (recursiveReplace) {
+          engine.recursiveReplace(new File(inputFilename), new File(
+              outputFileName));
+        } else {
+          engine.replace(new File(inputFilename), new File(outputFileName));
+        }
+        return;
+      }
+      LexerBuilder builder = new LexerBuilder();
+      builder.setPositionAutomaton(glushkov);
+      Scanner spec = new Scanner(new File(specificationFilename), "UTF-8");
+      TransitionTable copy;
+      if (lazyMegabytes > 0) {
+        copy = builder.buildLazy(spec, (long) lazyMegabytes << 20);
+      } else {
+        copy = buildTable(builder, spec, exportTextTable, stateLimit,
+            tableFileName == null ? null : new File(tableFileName));
+      }
+      if (copy instanceof NFASimulator && threads > 0) {
+        System.out.println("Simulating the NFA on one thread");
+        threads = 0;
+        streaming = true;
+      }
+      TokenizerCompiler compiler = null;
+      if (compiled) {
+        compiler = compile(copy);
+      }
+      if (threads > 0) {
+        FileOutputStream out = new FileOutputStream(outputFileName);
+        ParallelTokenizer tokenizer = compiler == null ? new ParallelTokenizer(
+            copy, threads, format) : new ParallelTokenizer(compiler, threads,
+            format);
+        tokenizer.tokenize(new File(inputFilename), out);
+        out.close();
+        return;
+      }
+      if (streaming) {
+        FileInputStream in = new FileInputStream(inputFilename);
+        FileOutputStream out = new FileOutputStream(outputFileName);
+        BufferedTokenSink sink = BufferedTokenSink.forFormat(format, copy,
+            out.getChannel());
+        StreamingTokenizer tokenizer = compiler == null
+            ? new StreamingTokenizer(copy) : compiler.newTokenizer();
+        tokenizer.tokenize(in.getChannel(), sink);
+        sink.flush();
+        in.close();
+        out.close();
+        return;
+      }
+      // The table reads UTF-8 bytes, and ISO-8859-1 maps each byte to the
+      // char of the same value and back, so lines go through undecoded.
+      BufferedReader inputFileReader = new BufferedReader(
+          new InputStreamReader(new FileInputStream(inputFilename),
+              "ISO-8859-1"));
+      PrintStream outputFileWriter = new PrintStream(new BufferedOutputStream(
+          new FileOutputStream(outputFileName), 1 << 16), false, "ISO-8859-1");
+      String currentLine;
+      while ((currentLine = inputFileReader.readLine()) != null) {
+        if (currentLine == "" || currentLine.equals("")) {
           System.out.println("Skipping: " + currentLine);
           continue;
         }
-        TableWalker.printTokens(leDFA.getStartState(), copy, outputFileWriter,
-            currentLine);
+        CompactTableWalker.printTokens(copy, outputFileWriter, currentLine);
       }
+      inputFileReader.close();
       outputFileWriter.close();
 
     } catch (FileNotFoundException e) {
       e.printStackTrace();
       System.err.println("Couldn't find specifications file.");
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.err.println("Couldn't write or map the table.");
+    }
+  }
+
+  /**
+   * Compiles a table, or says why not and returns null so that it is walked
+   * instead.
+   */
+  private static TokenizerCompiler compile(TransitionTable table) {
+    if (!table.hasStableStates()) {
+      System.out.println("Simulating the NFA instead of compiling a table");
+      return null;
+    }
+    try {
+      return new TokenizerCompiler(table);
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage() + "; walking the table instead");
+    } catch (UnsupportedOperationException e) {
+      System.out.println(e.getMessage() + "; walking the table instead");
+    }
+    return null;
+  }
+
+  /**
+   * Prints every match of a regex in the input files to the output file.
+   */
+  private static void find(String regex, List<File> inputFiles,
+      String outputFileName) throws IOException {
+    FindEngine engine = new FindEngine(regex);
+    BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(
+        outputFileName), 1 << 16);
+    PrintingMatchSink sink = new PrintingMatchSink(out);
+    for (File file : inputFiles) {
+      engine.find(file, sink);
+    }
+    out.close();
+  }
+
+  /**
+   * Builds the minimized table of a spec and writes it to table in text
+   * form if asked. Given a table file, the table is written there and mapped
+   * back in; otherwise it is walked where it was built. If the DFA has more
+   * than stateLimit states, no table is written and the NFA is simulated.
+   */
+  private static TransitionTable buildTable(LexerBuilder builder,
+      Scanner spec, boolean exportTextTable, int stateLimit, File tableFile)
+      throws IOException {
+    builder.setStateLimit(stateLimit);
+    TransitionTable built = builder.buildOrSimulate(spec);
+    if (!(built instanceof CompactDFATable)) {
+      System.out.println("DFA states: over " + stateLimit
+          + ", simulating the NFA");
+      return built;
+    }
+    System.out.println("DFA states: " + builder.getStatesBefore()
+        + " before minimization, " + builder.getStatesAfter() + " after");
+    CompactDFATable table = (CompactDFATable) built;
+    if (exportTextTable) {
+      PrintStream ps = new PrintStream(new File("table"));
+      DFA.printTable(table, ps);
+      ps.close();
+    }
+    if (tableFile == null) {
+      return table;
     }
+    BinaryTable.write(table, tableFile);
+    return BinaryTable.map(tableFile);
   }
 }
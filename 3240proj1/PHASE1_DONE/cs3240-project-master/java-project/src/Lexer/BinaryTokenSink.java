@@ -0,0 +1,135 @@
+package Lexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import DFA.TransitionTable;
+
+/**
+ * Writes tokens as fixed size big endian records that point into the input
+ * rather than copy it, readable with a DataInputStream. A token is the byte
+ * 'T', its int type id (TokenSink.ERROR for a character no token starts
+ * with), its long offset in the input and its int length. The names of
+ * the types come first, each defined by the byte 'N', the int type id, an
+ * unsigned short length and that many bytes of UTF-8; the output starts
+ * with one for every type the table has, and the types a LazyDFATable adds
+ * as it goes are defined before their first token. So the output only
+ * depends on the tokens, not on how the input was cut up.
+ */
+
+public class BinaryTokenSink extends BufferedTokenSink {
+  /** The size of a token record */
+  public static final int TOKEN_RECORD = 17;
+
+  /** Which type ids had their name written */
+  private boolean[] defined = new boolean[0];
+
+  /** Whether the names of the table's types are still to be written */
+  private boolean header = true;
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to write.
+   * @param out
+   *        Where the records go.
+   */
+  public BinaryTokenSink(TransitionTable table, OutputStream out) {
+    super(table, out);
+  }
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to write.
+   * @param channel
+   *        Where the records go.
+   */
+  public BinaryTokenSink(TransitionTable table, WritableByteChannel channel) {
+    super(table, channel);
+  }
+
+  /**
+   * Constructor method for the output of a chunk, which goes after the
+   * output of the chunks before it: the names of the table's types are
+   * taken as written already.
+   * @param table
+   *        The table whose token names to write.
+   * @param out
+   *        Where the records go.
+   * @param header
+   *        Whether to start with the names of the table's types.
+   */
+  BinaryTokenSink(TransitionTable table, OutputStream out, boolean header) {
+    super(table, out);
+    if (!header) {
+      defined = new boolean[table.getTokenCount()];
+      Arrays.fill(defined, true);
+      this.header = false;
+    }
+  }
+
+  public void onToken(int type, long offset, ByteBuffer buffer, int start,
+      int length) throws IOException {
+    if (header) {
+      writeHeader();
+    }
+    if (type != ERROR && (type >= defined.length || !defined[type])) {
+      define(type);
+    }
+    reserve(TOKEN_RECORD);
+    pending[count++] = 'T';
+    putInt(type);
+    putInt((int) (offset >>> 32));
+    putInt((int) offset);
+    putInt(length);
+  }
+
+  public void flush() throws IOException {
+    if (header) {
+      writeHeader();
+    }
+    super.flush();
+  }
+
+  /**
+   * Writes the name records of every type the table has so far.
+   */
+  private void writeHeader() throws IOException {
+    header = false;
+    for (int type = 0, count = table.getTokenCount(); type < count; type++) {
+      define(type);
+    }
+  }
+
+  /**
+   * Writes the name record of a type id.
+   */
+  private void define(int type) throws IOException {
+    if (type >= defined.length) {
+      boolean[] grown = new boolean[table.getTokenCount()];
+      System.arraycopy(defined, 0, grown, 0, defined.length);
+      defined = grown;
+    }
+    defined[type] = true;
+    byte[] name = name(type);
+    reserve(7 + name.length);
+    pending[count++] = 'N';
+    putInt(type);
+    pending[count++] = (byte) (name.length >>> 8);
+    pending[count++] = (byte) name.length;
+    System.arraycopy(name, 0, pending, count, name.length);
+    count += name.length;
+  }
+
+  private void putInt(int value) {
+    byte[] pending = this.pending;
+    pending[count++] = (byte) (value >>> 24);
+    pending[count++] = (byte) (value >>> 16);
+    pending[count++] = (byte) (value >>> 8);
+    pending[count++] = (byte) value;
+  }
+}
@@ -0,0 +1,201 @@
+package Lexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import DFA.TransitionTable;
+
+/**
+ * Base of the sinks that encode tokens into one large reused byte array and
+ * write it out in big batches, either to a channel such as a FileChannel or
+ * to a stream. Subclasses encode a token per onToken call after making room
+ * for it with reserve(); the batch is written when it fills up and on
+ * flush(), which must be called once the input is done.
+ */
+
+public abstract class BufferedTokenSink implements TokenSink {
+  /** The size of a batch */
+  public static final int BATCH_SIZE = 1 << 20;
+
+  /** The formats forFormat() knows */
+  public static final String[] FORMATS = { "text", "binary", "json" };
+
+  /** The table whose token names are written */
+  protected TransitionTable table;
+
+  /** The batch being encoded */
+  protected byte[] pending = new byte[BATCH_SIZE];
+
+  /** The number of bytes encoded in the batch */
+  protected int count;
+
+  /** Where batches go, if they go to a channel */
+  private WritableByteChannel channel;
+
+  /** Where batches go, if they go to a stream */
+  private OutputStream out;
+
+  /** The UTF-8 name of each token id seen so far */
+  private byte[][] names = new byte[0][];
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to write.
+   * @param channel
+   *        Where the batches go.
+   */
+  protected BufferedTokenSink(TransitionTable table,
+      WritableByteChannel channel) {
+    this.table = table;
+    this.channel = channel;
+  }
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to write.
+   * @param out
+   *        Where the batches go.
+   */
+  protected BufferedTokenSink(TransitionTable table, OutputStream out) {
+    this.table = table;
+    this.out = out;
+  }
+
+  /**
+   * Makes a sink writing to a channel.
+   * @param format
+   *        One of FORMATS: "text" for TextTokenSink, "binary" for
+   *        BinaryTokenSink or "json" for JsonTokenSink.
+   * @param table
+   *        The table whose token names to write.
+   * @param channel
+   *        Where the batches go.
+   * @return the sink.
+   * @throws IllegalArgumentException
+   *         for an unknown format.
+   */
+  public static BufferedTokenSink forFormat(String format,
+      TransitionTable table, WritableByteChannel channel) {
+    if (format.equals("text")) {
+      return new TextTokenSink(table, channel);
+    }
+    if (format.equals("binary")) {
+      return new BinaryTokenSink(table, channel);
+    }
+    if (format.equals("json")) {
+      return new JsonTokenSink(table, channel);
+    }
+    throw new IllegalArgumentException("Unknown output format " + format);
+  }
+
+  /**
+   * Makes a sink writing to a stream.
+   * @param format
+   *        One of FORMATS.
+   * @param table
+   *        The table whose token names to write.
+   * @param out
+   *        Where the batches go.
+   * @return the sink.
+   * @throws IllegalArgumentException
+   *         for an unknown format.
+   */
+  public static BufferedTokenSink forFormat(String format,
+      TransitionTable table, OutputStream out) {
+    if (format.equals("text")) {
+      return new TextTokenSink(table, out);
+    }
+    if (format.equals("binary")) {
+      return new BinaryTokenSink(table, out);
+    }
+    if (format.equals("json")) {
+      return new JsonTokenSink(table, out);
+    }
+    throw new IllegalArgumentException("Unknown output format " + format);
+  }
+
+  /**
+   * Makes a sink for one chunk of a ParallelTokenizer's input, whose output
+   * goes after that of the chunks before it. The output as a whole starts
+   * with what a sink of forFormat writes when flushed with no tokens, so the
+   * binary sink of a chunk leaves out the names of the table's types.
+   * @param format
+   *        One of FORMATS.
+   * @param table
+   *        The table whose token names to write.
+   * @param out
+   *        Where the batches go.
+   * @return the sink.
+   * @throws IllegalArgumentException
+   *         for an unknown format.
+   */
+  static BufferedTokenSink forChunk(String format, TransitionTable table,
+      OutputStream out) {
+    if (format.equals("binary")) {
+      return new BinaryTokenSink(table, out, false);
+    }
+    return forFormat(format, table, out);
+  }
+
+  /**
+   * Makes room for the given number of bytes at the end of the batch,
+   * writing the batch out first if they do not fit.
+   * @param bytes
+   * @throws IOException
+   */
+  protected void reserve(int bytes) throws IOException {
+    if (count + bytes > pending.length) {
+      write();
+      if (bytes > pending.length) {
+        pending = new byte[bytes];
+      }
+    }
+  }
+
+  /**
+   * The UTF-8 name of a token id. A LazyDFATable adds ids as it goes, so
+   * names are encoded as they are first needed.
+   * @param type
+   * @return
+   */
+  protected byte[] name(int type) {
+    if (type >= names.length) {
+      Charset utf8 = Charset.forName("UTF-8");
+      int known = names.length;
+      names = Arrays.copyOf(names, table.getTokenCount());
+      for (int i = known; i < names.length; i++) {
+        names[i] = table.getTokenName(i).getBytes(utf8);
+      }
+    }
+    return names[type];
+  }
+
+  /**
+   * Writes out the batch.
+   * @throws IOException
+   */
+  public void flush() throws IOException {
+    write();
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  private void write() throws IOException {
+    if (channel != null) {
+      ByteBuffer batch = ByteBuffer.wrap(pending, 0, count);
+      while (batch.hasRemaining()) {
+        channel.write(batch);
+      }
+    } else {
+      out.write(pending, 0, count);
+    }
+    count = 0;
+  }
+}
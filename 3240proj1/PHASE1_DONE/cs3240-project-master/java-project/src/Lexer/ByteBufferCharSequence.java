@@ -0,0 +1,61 @@
+package Lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable CharSequence view of a range of a ByteBuffer, one char per
+ * byte. Lets byte oriented tokenizers hand tokens to a TokenVisitor without
+ * decoding them.
+ */
+
+public class ByteBufferCharSequence implements CharSequence {
+  /** The bytes being viewed */
+  private ByteBuffer buffer;
+
+  /** The index of the first viewed byte */
+  private int offset;
+
+  /** The number of viewed bytes */
+  private int length;
+
+  /**
+   * Points this view at a range of a buffer.
+   * @param buffer
+   * @param offset
+   * @param length
+   * @return this
+   */
+  public ByteBufferCharSequence set(ByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+    return this;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    return (char) (buffer.get(offset + index) & 0xFF);
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException(start + ", " + end);
+    }
+    return new ByteBufferCharSequence().set(buffer, offset + start, end
+        - start);
+  }
+
+  public String toString() {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+    }
+    return new String(chars);
+  }
+}
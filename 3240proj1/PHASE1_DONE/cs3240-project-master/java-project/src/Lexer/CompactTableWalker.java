@@ -0,0 +1,47 @@
+package Lexer;
+
+import java.io.PrintStream;
+
+import DFA.TransitionTable;
+
+/**
+ * Tokenizes text by walking a TransitionTable, such as a CompactDFATable or
+ * a MappedDFATable. Tokens go to a TokenVisitor; printing them is just one
+ * such visitor.
+ */
+
+public class CompactTableWalker {
+
+  /**
+   * Walks the table over a CharSequence and hands every token to a visitor.
+   * @param table
+   *        The table to walk
+   * @param src
+   *        The text to tokenize.
+   * @param visitor
+   *        Where the tokens go.
+   */
+  public static void walk(TransitionTable table, CharSequence src,
+      TokenVisitor visitor) {
+    TokenCursor cursor = new TokenCursor(table, src);
+    while (cursor.next()) {
+      visitor.onToken(cursor.getType(), src, cursor.getStart(),
+          cursor.getEnd());
+    }
+  }
+
+  /**
+   * Walks the table over "lineToTokenize" and prints each token as its name
+   * followed by its text.
+   * @param table
+   *        The table to walk
+   * @param p
+   *        PrintStream to write to.
+   * @param lineToTokenize
+   *        The line to tokenize.
+   */
+  public static void printTokens(TransitionTable table, PrintStream p,
+      String lineToTokenize) {
+    walk(table, lineToTokenize, new PrintingTokenVisitor(table, p));
+  }
+}
@@ -0,0 +1,148 @@
+package Lexer;
+
+import java.util.Arrays;
+
+/**
+ * The (state, position) pairs a longest match walk has already been through
+ * without finding a token beyond them. Whether a walk in a state at a
+ * position can still accept depends only on the two, not on where the token
+ * started, so a later walk reaching the same pair can stop right there. With
+ * every pair past the last accepting one remembered, no pair is walked
+ * twice, which keeps maximal munch linear in the input (Reps, "Maximal-munch
+ * tokenization in linear time", TOPLAS 1998), where rewalking the tail after
+ * each token is quadratic on inputs such as a long run of digits and dots
+ * with no fraction.
+ * <p>
+ * Pairs live in an open addressing hash table. Clearing is constant time, so
+ * walkers can clear at every line break, past which no walk goes.
+ */
+
+public class FailureMemo {
+  /** Position in the high half, state in the low half */
+  private long[] keys = new long[64];
+
+  /** The generation each slot was filled in; other slots are empty */
+  private int[] generations = new int[64];
+
+  /** The current generation */
+  private int generation = 1;
+
+  /** The number of pairs in the current generation */
+  private int count;
+
+  /** The largest position added since the last clear, -1 if none */
+  private int limit = -1;
+
+  /**
+   * Forgets every pair.
+   */
+  public void clear() {
+    if (count == 0) {
+      return;
+    }
+    count = 0;
+    limit = -1;
+    if (++generation == 0) {
+      Arrays.fill(generations, 0);
+      generation = 1;
+    }
+  }
+
+  /**
+   * The largest position added since the last clear; contains() is false
+   * past it.
+   * @return the position, -1 if none.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Whether a walk was in the state at the position and found nothing past
+   * it.
+   * @param state
+   * @param position
+   *        The number of characters read when the walk was in state.
+   * @return
+   */
+  public boolean contains(int state, int position) {
+    if (position > limit) {
+      return false;
+    }
+    long key = key(state, position);
+    int mask = keys.length - 1;
+    for (int i = slot(key, mask); generations[i] == generation; i = (i + 1)
+        & mask) {
+      if (keys[i] == key) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Remembers that a walk in the state at the position found nothing past it.
+   * @param state
+   * @param position
+   */
+  public void add(int state, int position) {
+    if (2 * (count + 1) > keys.length) {
+      grow();
+    }
+    if (insert(key(state, position))) {
+      count++;
+      limit = Math.max(limit, position);
+    }
+  }
+
+  /**
+   * Remembers the states a walk went through. The walk started at from and
+   * was in path[k] after reading k + 1 characters; only the pairs at
+   * positions after lastAccept are added.
+   * @param path
+   * @param steps
+   *        The number of entries of path to look at.
+   * @param from
+   * @param lastAccept
+   *        The position of the last accepting state, -1 if none.
+   */
+  public void addPath(int[] path, int steps, int from, int lastAccept) {
+    for (int k = Math.max(0, lastAccept - from); k < steps; k++) {
+      add(path[k], from + k + 1);
+    }
+  }
+
+  private boolean insert(long key) {
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    for (; generations[i] == generation; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return false;
+      }
+    }
+    keys[i] = key;
+    generations[i] = generation;
+    return true;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldGenerations = generations;
+    keys = new long[oldKeys.length * 2];
+    generations = new int[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldGenerations[i] == generation) {
+        insert(oldKeys[i]);
+      }
+    }
+  }
+
+  private static long key(int state, int position) {
+    return ((long) position << 32) | (state & 0xFFFFFFFFL);
+  }
+
+  private static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32) & mask;
+  }
+}
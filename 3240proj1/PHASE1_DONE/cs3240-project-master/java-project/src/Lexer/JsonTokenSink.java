@@ -0,0 +1,154 @@
+package Lexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import DFA.TransitionTable;
+
+/**
+ * Writes each token as a JSON object on a line of its own (newline delimited
+ * JSON), e.g. {"type":"INT","offset":4,"text":"10"}. A character no token
+ * starts with has a null type. Token text is copied as UTF-8 with JSON
+ * escapes; bytes that are not valid UTF-8 become U+FFFD.
+ */
+
+public class JsonTokenSink extends BufferedTokenSink {
+  private static final byte[] TYPE = ascii("{\"type\":");
+  private static final byte[] NULL = ascii("null");
+  private static final byte[] OFFSET = ascii(",\"offset\":");
+  private static final byte[] TEXT = ascii(",\"text\":\"");
+  private static final byte[] END = ascii("\"}\n");
+  private static final byte[] HEX = ascii("0123456789abcdef");
+
+  /** The JSON string of each token name, quotes included */
+  private byte[][] quotedNames = new byte[0][];
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to write.
+   * @param out
+   *        Where the lines go.
+   */
+  public JsonTokenSink(TransitionTable table, OutputStream out) {
+    super(table, out);
+  }
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to write.
+   * @param channel
+   *        Where the lines go.
+   */
+  public JsonTokenSink(TransitionTable table, WritableByteChannel channel) {
+    super(table, channel);
+  }
+
+  public void onToken(int type, long offset, ByteBuffer buffer, int start,
+      int length) throws IOException {
+    byte[] typeJson = type == ERROR ? NULL : quotedName(type);
+    // Each byte of text takes at most six bytes escaped, a long 20 digits.
+    reserve(TYPE.length + typeJson.length + OFFSET.length + 20 + TEXT.length
+        + 6 * length + END.length);
+    put(TYPE);
+    put(typeJson);
+    put(OFFSET);
+    putLong(offset);
+    put(TEXT);
+    int end = start + length;
+    for (int i = start; i < end;) {
+      int b = buffer.get(i) & 0xFF;
+      if (b >= 0x80) {
+        int sequence = Utf8.sequenceLength(buffer, i, end);
+        if (sequence == 1) {
+          putEscape(0xFFFD);
+        } else {
+          for (int j = 0; j < sequence; j++) {
+            pending[count++] = buffer.get(i + j);
+          }
+        }
+        i += sequence;
+        continue;
+      }
+      if (b == '"' || b == '\\') {
+        pending[count++] = '\\';
+        pending[count++] = (byte) b;
+      } else if (b < 0x20 || b == 0x7F) {
+        putEscape(b);
+      } else {
+        pending[count++] = (byte) b;
+      }
+      i++;
+    }
+    put(END);
+  }
+
+  /**
+   * The name of a token id as a JSON string.
+   */
+  private byte[] quotedName(int type) {
+    if (type >= quotedNames.length || quotedNames[type] == null) {
+      if (type >= quotedNames.length) {
+        byte[][] grown = new byte[table.getTokenCount()][];
+        System.arraycopy(quotedNames, 0, grown, 0, quotedNames.length);
+        quotedNames = grown;
+      }
+      byte[] name = name(type);
+      byte[] quoted = new byte[name.length * 6 + 2];
+      int n = 0;
+      quoted[n++] = '"';
+      for (byte b : name) {
+        if (b == '"' || b == '\\') {
+          quoted[n++] = '\\';
+        }
+        quoted[n++] = b;
+      }
+      quoted[n++] = '"';
+      byte[] trimmed = new byte[n];
+      System.arraycopy(quoted, 0, trimmed, 0, n);
+      quotedNames[type] = trimmed;
+    }
+    return quotedNames[type];
+  }
+
+  private void put(byte[] bytes) {
+    System.arraycopy(bytes, 0, pending, count, bytes.length);
+    count += bytes.length;
+  }
+
+  private void putEscape(int c) {
+    pending[count++] = '\\';
+    pending[count++] = 'u';
+    pending[count++] = HEX[(c >>> 12) & 0xF];
+    pending[count++] = HEX[(c >>> 8) & 0xF];
+    pending[count++] = HEX[(c >>> 4) & 0xF];
+    pending[count++] = HEX[c & 0xF];
+  }
+
+  private void putLong(long value) {
+    if (value == 0) {
+      pending[count++] = '0';
+      return;
+    }
+    int digits = 0;
+    for (long v = value; v > 0; v /= 10) {
+      digits++;
+    }
+    for (int i = count + digits - 1; i >= count; i--) {
+      pending[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    count += digits;
+  }
+
+  private static byte[] ascii(String s) {
+    byte[] bytes = new byte[s.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) s.charAt(i);
+    }
+    return bytes;
+  }
+}
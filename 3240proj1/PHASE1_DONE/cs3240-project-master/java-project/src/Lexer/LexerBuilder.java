@@ -0,0 +1,262 @@
+package Lexer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+import DFA.CompactDFATable;
+import DFA.DFA;
+import DFA.HopcroftMinimizer;
+import DFA.LazyDFATable;
+import DFA.SubsetConstruction;
+import DFA.TransitionTable;
+import NFA.ByteClasses;
+import NFA.CharRanges;
+import NFA.DenseNFA;
+import NFA.NFA;
+
+/**
+ * The state of one scanner build: the NFA state counter, the character
+ * classes the spec defined, the parser's bracket flag and which parser and
+ * construction to use. Nothing is shared between builders, so independent
+ * specs can be compiled on separate threads, and everything a build created
+ * can be collected once it is done. A builder itself is not thread safe; use
+ * one per build.
+ */
+
+public class LexerBuilder {
+  /** The next NFAState number to hand out */
+  private int nextStateNumber = 0;
+
+  /** The character classes defined so far, by name */
+  private Map<String, CharRanges> definedClasses = new HashMap<String, CharRanges>();
+
+  /** The length of the longest class name defined so far */
+  private int maxDefinedClassLength = 0;
+
+  /** The defined class names, shortest first; null until asked for */
+  private String[] definedClassNames;
+
+  /** Whether specs are parsed with RegexParser instead of RegexCursorParser */
+  private boolean legacyParser = false;
+
+  /** Whether specs become Glushkov automata instead of Thompson NFAs */
+  private boolean positionAutomaton = false;
+
+  /** The most DFA states build() makes before simulating the NFA instead */
+  private int stateLimit = Integer.MAX_VALUE;
+
+  /** Whether the parser is between square brackets */
+  private boolean insideSquareBrackets = false;
+
+  /** The DFA states of the last buildOrSimulate(), -1 if it simulated */
+  private int statesBefore = -1, statesAfter = -1;
+
+  /**
+   * Hands out the number of a new NFAState.
+   * @return
+   */
+  public int nextStateNumber() {
+    return nextStateNumber++;
+  }
+
+  /**
+   * Defines a character class such as $DIGIT.
+   * @param key
+   *        The name of the class, with its '$'.
+   * @param set
+   *        The characters in the class.
+   */
+  public void defineClass(String key, CharRanges set) {
+    definedClasses.put(key, set);
+    maxDefinedClassLength = Math.max(maxDefinedClassLength, key.length());
+    definedClassNames = null;
+  }
+
+  /**
+   * The characters of a defined class.
+   * @param key
+   * @return null if no such class was defined.
+   */
+  public CharRanges getDefinedClass(String key) {
+    return definedClasses.get(key);
+  }
+
+  /**
+   * The names of the defined classes, shortest first. Shared, do not modify.
+   * @return
+   */
+  public String[] getDefinedClassNames() {
+    if (definedClassNames == null) {
+      definedClassNames = definedClasses.keySet().toArray(
+          new String[definedClasses.size()]);
+      Arrays.sort(definedClassNames, new Comparator<String>() {
+        public int compare(String a, String b) {
+          return a.length() - b.length();
+        }
+      });
+    }
+    return definedClassNames;
+  }
+
+  /**
+   * The length of the longest class name defined so far.
+   * @return
+   */
+  public int getMaxDefinedClassLength() {
+    return maxDefinedClassLength;
+  }
+
+  /**
+   * Forgets every defined class.
+   */
+  public void clearDefinedClasses() {
+    definedClasses.clear();
+    maxDefinedClassLength = 0;
+    definedClassNames = null;
+  }
+
+  /**
+   * Whether the parser is between square brackets, where spaces are
+   * significant.
+   * @return
+   */
+  public boolean isInsideSquareBrackets() {
+    return insideSquareBrackets;
+  }
+
+  /**
+   * Setter for the square brackets flag.
+   * @param insideSquareBrackets
+   */
+  public void setInsideSquareBrackets(boolean insideSquareBrackets) {
+    this.insideSquareBrackets = insideSquareBrackets;
+  }
+
+  /**
+   * Whether specs are parsed with the original RegexParser.
+   * @return
+   */
+  public boolean isLegacyParser() {
+    return legacyParser;
+  }
+
+  /**
+   * Chooses the parser for specs: the original RegexParser, or by default
+   * RegexCursorParser, which accepts the same specs and allocates far less.
+   * @param legacyParser
+   */
+  public void setLegacyParser(boolean legacyParser) {
+    this.legacyParser = legacyParser;
+  }
+
+  /**
+   * Whether specs are built into epsilon free position automata.
+   * @return
+   */
+  public boolean isPositionAutomaton() {
+    return positionAutomaton;
+  }
+
+  /**
+   * Chooses the construction for specs: by default ThompsonConstruction, or
+   * GlushkovConstruction, whose NFA has one state per character or class in
+   * the spec and no epsilon transitions. Only applies to RegexCursorParser.
+   * @param positionAutomaton
+   */
+  public void setPositionAutomaton(boolean positionAutomaton) {
+    this.positionAutomaton = positionAutomaton;
+  }
+
+  /**
+   * The most DFA states buildOrSimulate() makes.
+   * @return
+   */
+  public int getStateLimit() {
+    return stateLimit;
+  }
+
+  /**
+   * Sets the most DFA states buildOrSimulate() makes before it gives up on
+   * the subset construction and simulates the NFA instead. Unlimited by
+   * default.
+   * @param stateLimit
+   */
+  public void setStateLimit(int stateLimit) {
+    this.stateLimit = stateLimit;
+  }
+
+  /**
+   * The DFA states the last buildOrSimulate() made before minimizing them.
+   * @return -1 if it simulated the NFA.
+   */
+  public int getStatesBefore() {
+    return statesBefore;
+  }
+
+  /**
+   * The DFA states the last buildOrSimulate() was left with after
+   * minimizing them.
+   * @return -1 if it simulated the NFA.
+   */
+  public int getStatesAfter() {
+    return statesAfter;
+  }
+
+  /**
+   * Reads a spec file into an NFA, defining its classes in this builder.
+   * @param spec
+   * @return the NFA matching every token of the spec.
+   */
+  public NFA getNFAFromSpecFile(Scanner spec) {
+    return NFA.getNFAFromSpecFile(spec, this);
+  }
+
+  /**
+   * Compiles a spec to a table that makes its states as they are walked,
+   * with no subset construction up front.
+   * @param spec
+   * @param memoryBudget
+   *        Roughly how many bytes the table's states may take before it
+   *        forgets them and starts over.
+   * @return the table.
+   */
+  public LazyDFATable buildLazy(Scanner spec, long memoryBudget) {
+    DenseNFA nfa = new DenseNFA(getNFAFromSpecFile(spec));
+    return new LazyDFATable(nfa, ByteClasses.fromNFA(nfa), memoryBudget);
+  }
+
+  /**
+   * Compiles a spec to a minimized table, unless its DFA has more states
+   * than the state limit, in which case the NFA is simulated instead.
+   * @param spec
+   * @return a CompactDFATable, or an NFASimulator if the DFA is too big.
+   */
+  public TransitionTable buildOrSimulate(Scanner spec) {
+    DenseNFA nfa = new DenseNFA(getNFAFromSpecFile(spec));
+    DFA dfa = new SubsetConstruction(nfa, stateLimit).getDFA();
+    if (dfa == null) {
+      statesBefore = statesAfter = -1;
+      return new NFASimulator(nfa, ByteClasses.fromNFA(nfa));
+    }
+    HopcroftMinimizer minimizer = new HopcroftMinimizer(dfa);
+    statesBefore = minimizer.getStatesBefore();
+    statesAfter = minimizer.getStatesAfter();
+    return CompactDFATable.fromDFA(minimizer.getMinimizedDFA(), ByteClasses
+        .fromNFA(nfa));
+  }
+
+  /**
+   * Compiles a spec all the way to a minimized table, as the Driver does.
+   * @param spec
+   * @return the table.
+   */
+  public CompactDFATable build(Scanner spec) {
+    NFA nfa = getNFAFromSpecFile(spec);
+    DFA minimized = new HopcroftMinimizer(DFA.getDFAFromNFA(nfa))
+        .getMinimizedDFA();
+    return CompactDFATable.fromDFA(minimized, ByteClasses.fromNFA(nfa));
+  }
+}
@@ -0,0 +1,232 @@
+package Lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import DFA.TransitionTable;
+import NFA.ByteClasses;
+import NFA.DenseNFA;
+import NFA.NFAState;
+
+/**
+ * Runs an NFA directly instead of determinizing it, for specs whose DFA
+ * would be too big. The active NFA states are a bitset over the DenseNFA
+ * numbering, and each step adds the epsilon closure of every target once,
+ * the way a Pike VM does, so a character costs time linear in the NFA and
+ * nothing is ever cached. It is a TransitionTable so that every tokenizer
+ * can walk it, but it only has three states: the start state and two that
+ * take turns holding the set a walk is in. A state number is only valid
+ * until the next call to next(), which is all the tokenizers need. Not
+ * thread safe: use one simulator per thread.
+ */
+
+public class NFASimulator implements TransitionTable {
+  /** The NFA to run */
+  private DenseNFA nfa;
+
+  /** The byte class of each of the 256 byte values */
+  private byte[] classMap;
+
+  /**
+   * Per NFA state, the byte classes it has transitions on, sorted, one entry
+   * per target
+   */
+  private char[][] classes;
+
+  /** Per NFA state, the transition targets, parallel to classes */
+  private int[][] targets;
+
+  /** The final NFA states */
+  private long[] finalStates;
+
+  /** The token id of each final NFA state */
+  private int[] stateTokens;
+
+  /** The NFA states of the start state and of the two working states */
+  private long[][] sets;
+
+  /** The token id of each of the three states */
+  private int[] acceptTokens = new int[3];
+
+  /** The printable name of each token id */
+  private List<String> tokenNames = new ArrayList<String>();
+
+  /**
+   * Constructor method.
+   * @param nfa
+   *        The NFA to run.
+   * @param byteClasses
+   *        The byte classes of the NFA.
+   */
+  public NFASimulator(DenseNFA nfa, ByteClasses byteClasses) {
+    this.nfa = nfa;
+    this.classMap = byteClasses.getClassMap();
+    int size = nfa.size();
+    classes = new char[size][];
+    targets = new int[size][];
+    finalStates = new long[nfa.words()];
+    stateTokens = new int[size];
+    Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+    for (int s = 0; s < size; s++) {
+      // Keep one byte per class; the others of the class go the same way.
+      char[] symbols = nfa.getSymbols(s);
+      int[] to = nfa.getTargets(s);
+      boolean[] representative = new boolean[256];
+      boolean[] seen = new boolean[byteClasses.getCount()];
+      char[] kept = new char[symbols.length];
+      int[] keptTargets = new int[symbols.length];
+      int count = 0;
+      for (int i = 0; i < symbols.length; i++) {
+        char c = symbols[i];
+        if (c > 255) {
+          continue;
+        }
+        int byteClass = classMap[c] & 0xFF;
+        if (!seen[byteClass]) {
+          seen[byteClass] = true;
+          representative[c] = true;
+        }
+        if (representative[c]) {
+          kept[count] = (char) byteClass;
+          keptTargets[count++] = to[i];
+        }
+      }
+      sortByClass(kept, keptTargets, count);
+      classes[s] = Arrays.copyOf(kept, count);
+      targets[s] = Arrays.copyOf(keptTargets, count);
+      NFAState state = nfa.getState(s);
+      if (state.isFinal()) {
+        finalStates[s >>> 6] |= 1L << s;
+        String trimmed = state.getTokenTypeIfFinalState().trim();
+        String name = trimmed.startsWith("$") ? trimmed.substring(1)
+            : trimmed;
+        Integer id = tokenIds.get(name);
+        if (id == null) {
+          id = tokenNames.size();
+          tokenIds.put(name, id);
+          tokenNames.add(name);
+        }
+        stateTokens[s] = id;
+      }
+    }
+    sets = new long[3][nfa.words()];
+    nfa.addClosure(nfa.getStartState(), sets[0]);
+    acceptTokens[0] = acceptToken(sets[0]);
+  }
+
+  public int getStartState() {
+    return 0;
+  }
+
+  public int next(int state, int c) {
+    if (c > 255) {
+      return -1;
+    }
+    int byteClass = classMap[c] & 0xFF;
+    int nextState = state == 1 ? 2 : 1;
+    long[] from = sets[state];
+    long[] to = sets[nextState];
+    Arrays.fill(to, 0L);
+    boolean empty = true;
+    for (int word = 0; word < from.length; word++) {
+      long remaining = from[word];
+      while (remaining != 0) {
+        int s = (word << 6) + Long.numberOfTrailingZeros(remaining);
+        remaining &= remaining - 1;
+        char[] on = classes[s];
+        int[] targetsOfS = targets[s];
+        for (int i = firstIndexOf(on, byteClass); i < on.length
+            && on[i] == byteClass; i++) {
+          int target = targetsOfS[i];
+          // A closure holds the closure of each of its states, so a target
+          // already in the set has nothing left to add.
+          if ((to[target >>> 6] & (1L << target)) == 0) {
+            nfa.addClosure(target, to);
+          }
+          empty = false;
+        }
+      }
+    }
+    if (empty) {
+      return -1;
+    }
+    acceptTokens[nextState] = acceptToken(to);
+    return nextState;
+  }
+
+  public int getAcceptToken(int state) {
+    return acceptTokens[state];
+  }
+
+  public int getTokenCount() {
+    return tokenNames.size();
+  }
+
+  public String getTokenName(int token) {
+    return tokenNames.get(token);
+  }
+
+  public boolean hasStableStates() {
+    return false;
+  }
+
+  /**
+   * The token id of a set of NFA states: that of the final state first in
+   * the spec, as in DFAState.
+   */
+  private int acceptToken(long[] bits) {
+    NFAState winner = null;
+    int winnerIndex = -1;
+    for (int word = 0; word < bits.length; word++) {
+      long remaining = bits[word] & finalStates[word];
+      while (remaining != 0) {
+        int s = (word << 6) + Long.numberOfTrailingZeros(remaining);
+        remaining &= remaining - 1;
+        NFAState state = nfa.getState(s);
+        if (state.beats(winner)) {
+          winner = state;
+          winnerIndex = s;
+        }
+      }
+    }
+    return winnerIndex < 0 ? -1 : stateTokens[winnerIndex];
+  }
+
+  /**
+   * Sorts the first count classes, keeping targets parallel. The arrays are
+   * short, so insertion sort does.
+   */
+  private static void sortByClass(char[] on, int[] to, int count) {
+    for (int i = 1; i < count; i++) {
+      char c = on[i];
+      int target = to[i];
+      int j = i - 1;
+      for (; j >= 0 && on[j] > c; j--) {
+        on[j + 1] = on[j];
+        to[j + 1] = to[j];
+      }
+      on[j + 1] = c;
+      to[j + 1] = target;
+    }
+  }
+
+  /**
+   * The index of the first occurrence of c in a sorted array, or where it
+   * would go.
+   */
+  private static int firstIndexOf(char[] symbols, int c) {
+    int low = 0, high = symbols.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (symbols[middle] < c) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,243 @@
+package Lexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import DFA.TransitionTable;
+
+/**
+ * Tokenizes a file on several cores. The file is cut into chunks that end
+ * right after a line break, since no token spans one; each chunk is memory
+ * mapped and tokenized on a ForkJoinPool against the shared table, and the
+ * outputs are written in file order as soon as the oldest chunk is done, so
+ * the result is byte for byte what StreamingTokenizer produces through the
+ * same BufferedTokenSink format. Chunks are only started while the input of
+ * those not yet written stays under a budget, which bounds both the mapped
+ * input and the output held in memory whatever the number of cores.
+ */
+
+public class ParallelTokenizer {
+  /** The smallest chunk worth a task of its own */
+  private static final long MIN_CHUNK = 1 << 20;
+
+  /** The largest chunk, keeping the output buffered per chunk bounded */
+  private static final long MAX_CHUNK = 64 << 20;
+
+  /** The default budget of input bytes in chunks not yet written */
+  private static final long MAX_IN_FLIGHT = 256 << 20;
+
+  /** The table to walk, shared by every task */
+  private TransitionTable table;
+
+  /** The number of worker threads */
+  private int parallelism;
+
+  /** The BufferedTokenSink format of the output */
+  private String format;
+
+  /** Makes the tokenizer of each task, null to walk the table */
+  private TokenizerCompiler compiled;
+
+  /** The budget of input bytes in chunks not yet written */
+  private long maxInFlight = MAX_IN_FLIGHT;
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table to walk. It is only read, so tasks share it.
+   * @param parallelism
+   *        The number of worker threads.
+   */
+  public ParallelTokenizer(TransitionTable table, int parallelism) {
+    this(table, parallelism, "text");
+  }
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table to walk. It is only read, so tasks share it.
+   * @param parallelism
+   *        The number of worker threads.
+   * @param format
+   *        One of BufferedTokenSink.FORMATS.
+   * @throws IllegalArgumentException
+   *         for an unknown format.
+   */
+  public ParallelTokenizer(TransitionTable table, int parallelism,
+      String format) {
+    if (!Arrays.asList(BufferedTokenSink.FORMATS).contains(format)) {
+      throw new IllegalArgumentException("Unknown output format " + format);
+    }
+    this.table = table;
+    this.parallelism = parallelism;
+    this.format = format;
+  }
+
+  /**
+   * Constructor method.
+   * @param compiled
+   *        The compiled table to tokenize with.
+   * @param parallelism
+   *        The number of worker threads.
+   * @param format
+   *        One of BufferedTokenSink.FORMATS.
+   * @throws IllegalArgumentException
+   *         for an unknown format.
+   */
+  public ParallelTokenizer(TokenizerCompiler compiled, int parallelism,
+      String format) {
+    this(compiled.getTable(), parallelism, format);
+    this.compiled = compiled;
+  }
+
+  /**
+   * Sets the budget of input bytes in chunks being tokenized or waiting to
+   * be written. Chunks are made small enough that every thread has two of
+   * them within it, down to a megabyte; one chunk is always let through.
+   * @param maxInFlight
+   */
+  void setMaxInFlight(long maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Tokenizes a file and writes the tokens in the format given.
+   * @param input
+   *        The file to tokenize.
+   * @param out
+   *        Where the tokens go.
+   * @throws IOException
+   */
+  public void tokenize(File input, OutputStream out) throws IOException {
+    FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<long[]> chunks = split(in);
+      // What a sink writes before any token, such as the binary names, is
+      // written once here rather than by every chunk.
+      BufferedTokenSink.forFormat(format, table, out).flush();
+      Deque<ChunkTask> running = new ArrayDeque<ChunkTask>();
+      long inFlight = 0;
+      int next = 0;
+      while (next < chunks.size() || !running.isEmpty()) {
+        // Keep a window of chunks in flight, oldest first, bounded both in
+        // tasks and in bytes.
+        while (next < chunks.size() && running.size() < 2 * parallelism) {
+          long[] chunk = chunks.get(next);
+          long length = chunk[1] - chunk[0];
+          if (!running.isEmpty() && inFlight + length > maxInFlight) {
+            break;
+          }
+          ChunkTask task = new ChunkTask(in.map(FileChannel.MapMode.READ_ONLY,
+              chunk[0], length), chunk[0]);
+          pool.execute(task);
+          running.addLast(task);
+          inFlight += length;
+          next++;
+        }
+        ChunkTask done = running.removeFirst();
+        out.write(done.join());
+        inFlight -= done.length;
+      }
+      out.flush();
+    } finally {
+      pool.shutdown();
+      in.close();
+    }
+  }
+
+  /**
+   * Cuts a file into [start, end) chunks that each end after a line break
+   * (or at the end of the file).
+   */
+  private List<long[]> split(FileChannel in) throws IOException {
+    long size = in.size();
+    long target = Math.min(size / (4L * parallelism) + 1, maxInFlight
+        / (2L * parallelism));
+    target = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, target));
+    List<long[]> chunks = new ArrayList<long[]>();
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    long start = 0;
+    while (start < size) {
+      long end = start + target;
+      if (end >= size) {
+        end = size;
+      } else {
+        end = nextLineStart(in, end, probe);
+      }
+      if (end - start > Integer.MAX_VALUE) {
+        throw new IOException("Line too long to map starting at " + start);
+      }
+      chunks.add(new long[] { start, end });
+      start = end;
+    }
+    return chunks;
+  }
+
+  /**
+   * The offset just past the first line break at or after position.
+   */
+  private static long nextLineStart(FileChannel in, long position,
+      ByteBuffer probe) throws IOException {
+    while (true) {
+      probe.clear();
+      int read = in.read(probe, position);
+      if (read <= 0) {
+        return in.size();
+      }
+      for (int i = 0; i < read; i++) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Tokenizes one mapped chunk into a byte array.
+   */
+  private class ChunkTask extends RecursiveTask<byte[]> {
+    private static final long serialVersionUID = 1L;
+
+    private MappedByteBuffer chunk;
+    private long offset;
+    private int length;
+
+    ChunkTask(MappedByteBuffer chunk, long offset) {
+      this.chunk = chunk;
+      this.offset = offset;
+      length = chunk.limit();
+    }
+
+    protected byte[] compute() {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 16);
+      BufferedTokenSink sink = BufferedTokenSink.forChunk(format, table, out);
+      StreamingTokenizer tokenizer = compiled == null
+          ? new StreamingTokenizer(table) : compiled.newTokenizer();
+      try {
+        tokenizer.tokenize(chunk, 0, length, offset, sink, true);
+        sink.flush();
+      } catch (IOException e) {
+        // The sink writes to a ByteArrayOutputStream, which does not throw.
+        throw new IllegalStateException(e);
+      }
+      // The mapping can go while the output waits its turn.
+      chunk = null;
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package Lexer;
+
+import java.io.PrintStream;
+
+import DFA.TransitionTable;
+
+/**
+ * Prints each token as its name, a space and its text on a line of its own.
+ * Characters no token starts with are reported on System.err.
+ */
+
+public class PrintingTokenVisitor implements TokenVisitor {
+  /** The table whose token names to print */
+  private TransitionTable table;
+
+  /** Where the lines go */
+  private PrintStream p;
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to print.
+   * @param p
+   *        Where the lines go.
+   */
+  public PrintingTokenVisitor(TransitionTable table, PrintStream p) {
+    this.table = table;
+    this.p = p;
+  }
+
+  public void onToken(int type, CharSequence src, int start, int end) {
+    if (type == TokenSink.ERROR) {
+      System.err.println("ERROR: " + Utf8.decode(src, start, end));
+      return;
+    }
+    p.print(table.getTokenName(type));
+    p.print(' ');
+    p.append(src, start, end);
+    p.println();
+  }
+}
@@ -0,0 +1,242 @@
+package Lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import DFA.TransitionTable;
+
+/**
+ * Tokenizes a byte stream in large chunks. Tokens are tracked as offsets into
+ * the chunk buffer and handed to a TokenSink without building any String.
+ * Tokens never span a line break; a token cut by the end of a chunk is moved
+ * to the front of the buffer and finished after the next read. As in
+ * TokenCursor, states walked past the end of a token are remembered so
+ * that the walk stays linear.
+ */
+
+public class StreamingTokenizer {
+  /** The default number of bytes read at a time */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  /** The table to walk */
+  private TransitionTable table;
+
+  /** The number of bytes read at a time */
+  private int chunkSize;
+
+  /** Whether a space is skipped between tokens */
+  private boolean spaceSeparates;
+
+  /** The walks that found nothing, null if the table's states are not stable */
+  FailureMemo memo;
+
+  /** The states of the current walk */
+  int[] path = new int[16];
+
+  /** Where the last token the current walk passed ends, -1 if none */
+  int acceptEnd;
+
+  /** The id of that token, -1 if none */
+  int acceptToken;
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table to walk.
+   */
+  public StreamingTokenizer(TransitionTable table) {
+    this(table, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table to walk.
+   * @param chunkSize
+   *        The number of bytes read at a time.
+   */
+  public StreamingTokenizer(TransitionTable table, int chunkSize) {
+    this.table = table;
+    this.chunkSize = chunkSize;
+    spaceSeparates = table.next(table.getStartState(), ' ') < 0;
+    if (table.hasStableStates()) {
+      memo = new FailureMemo();
+    }
+  }
+
+  /**
+   * Tokenizes everything readable from a channel.
+   * @param in
+   *        The channel to read.
+   * @param sink
+   *        Where the tokens go.
+   * @throws IOException
+   */
+  public void tokenize(ReadableByteChannel in, TokenSink sink)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+    long bufferOffset = 0;
+    boolean endOfInput = false;
+    while (!endOfInput) {
+      while (buffer.hasRemaining()) {
+        if (in.read(buffer) < 0) {
+          endOfInput = true;
+          break;
+        }
+      }
+      int limit = buffer.position();
+      int consumed = tokenize(buffer, 0, limit, bufferOffset, sink, endOfInput);
+      if (consumed == 0 && limit == buffer.capacity()) {
+        // A single token fills the whole buffer; make room for the rest.
+        ByteBuffer bigger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+        continue;
+      }
+      buffer.limit(limit);
+      buffer.position(consumed);
+      buffer.compact();
+      bufferOffset += consumed;
+    }
+  }
+
+  /**
+   * Tokenizes the bytes of buffer in [from, to).
+   * @param buffer
+   *        The bytes to tokenize.
+   * @param from
+   *        The first index to tokenize.
+   * @param to
+   *        One past the last index to tokenize.
+   * @param bufferOffset
+   *        The offset in the whole input of index 0 of the buffer.
+   * @param sink
+   *        Where the tokens go.
+   * @param endOfInput
+   *        Whether the input ends at index to. If not, a token that might
+   *        go on past it is left for the next call.
+   * @return the index tokenizing stopped at, which is to unless a token was
+   *         left unfinished.
+   * @throws IOException
+   */
+  public int tokenize(ByteBuffer buffer, int from, int to, long bufferOffset,
+      TokenSink sink, boolean endOfInput) throws IOException {
+    FailureMemo memo = this.memo;
+    if (memo != null) {
+      // Positions are indices into a buffer that moves between calls.
+      memo.clear();
+    }
+    int position = from;
+    while (position < to) {
+      int first = buffer.get(position) & 0xFF;
+      if (first == '\n' || first == '\r') {
+        position++;
+        if (memo != null) {
+          memo.clear();
+        }
+        continue;
+      }
+      if (first == ' ' && spaceSeparates) {
+        position++;
+        continue;
+      }
+      int i = walk(buffer, position, to);
+      int lastAcceptEnd = acceptEnd, lastAcceptToken = acceptToken;
+      if (i == to && !endOfInput) {
+        // The token might go on in the next chunk.
+        return position;
+      }
+      if (memo != null && i > Math.max(lastAcceptEnd, position)) {
+        memo.addPath(path, i - position, position, lastAcceptEnd);
+      }
+      if (lastAcceptToken < 0) {
+        int length = Utf8.sequenceLength(buffer, position, to);
+        if (length == 1 && !endOfInput && position + 4 > to
+            && (buffer.get(position) & 0xFF) >= 0xC2) {
+          // The rest of a UTF-8 character may be in the next chunk.
+          return position;
+        }
+        sink.onToken(TokenSink.ERROR, bufferOffset + position, buffer,
+            position, length);
+        position += length;
+      } else {
+        sink.onToken(lastAcceptToken, bufferOffset + position, buffer,
+            position, lastAcceptEnd - position);
+        position = lastAcceptEnd;
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Walks the table from a position as far as a token could go, leaving
+   * where the last token passed ends in acceptEnd and its id in acceptToken,
+   * both -1 if none. TokenizerCompiler generates subclasses that override
+   * this with the table compiled in.
+   * @param buffer
+   *        The bytes to walk.
+   * @param position
+   *        Where the token starts.
+   * @param to
+   *        One past the last index to walk.
+   * @return where the walk stopped, which is to only if it could have gone
+   *         on.
+   */
+  int walk(ByteBuffer buffer, int position, int to) {
+    TransitionTable table = this.table;
+    FailureMemo memo = this.memo;
+    int state = table.getStartState(), lastAcceptEnd = -1, lastAcceptToken = -1;
+    int i = position;
+    for (; i < to; i++) {
+      int c = buffer.get(i) & 0xFF;
+      if (c == '\n' || c == '\r') {
+        break;
+      }
+      state = table.next(state, c);
+      if (state < 0) {
+        break;
+      }
+      if (memo != null) {
+        if (memo.contains(state, i + 1)) {
+          break;
+        }
+        if (i - position == path.length) {
+          path = Arrays.copyOf(path, path.length * 2);
+        }
+        path[i - position] = state;
+      }
+      int token = table.getAcceptToken(state);
+      if (token >= 0) {
+        lastAcceptEnd = i + 1;
+        lastAcceptToken = token;
+      }
+    }
+    acceptEnd = lastAcceptEnd;
+    acceptToken = lastAcceptToken;
+    return i;
+  }
+
+  /**
+   * Fills path with the states a walk from a position went through, for
+   * walks that do not keep it as they go.
+   * @param buffer
+   *        The bytes walked.
+   * @param position
+   *        Where the walk started.
+   * @param end
+   *        Where it stopped.
+   */
+  final void retrace(ByteBuffer buffer, int position, int end) {
+    if (end - position > path.length) {
+      path = Arrays.copyOf(path, Math.max(end - position, path.length * 2));
+    }
+    int state = table.getStartState();
+    for (int i = position; i < end; i++) {
+      state = table.next(state, buffer.get(i) & 0xFF);
+      path[i - position] = state;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package Lexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import DFA.TransitionTable;
+
+/**
+ * Writes each token as its name, a space and its text on a line of its own,
+ * the format TableWalker prints. Characters no token starts with are
+ * reported on System.err.
+ */
+
+public class TextTokenSink extends BufferedTokenSink {
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to print.
+   * @param out
+   *        Where the lines go.
+   */
+  public TextTokenSink(TransitionTable table, OutputStream out) {
+    super(table, out);
+  }
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table whose token names to print.
+   * @param channel
+   *        Where the lines go.
+   */
+  public TextTokenSink(TransitionTable table, WritableByteChannel channel) {
+    super(table, channel);
+  }
+
+  public void onToken(int type, long offset, ByteBuffer buffer, int start,
+      int length) throws IOException {
+    if (type == ERROR) {
+      System.err.println("ERROR: " + Utf8.decode(buffer, start, length));
+      return;
+    }
+    byte[] name = name(type);
+    reserve(name.length + length + 2);
+    byte[] pending = this.pending;
+    System.arraycopy(name, 0, pending, count, name.length);
+    count += name.length;
+    pending[count++] = ' ';
+    for (int i = 0; i < length; i++) {
+      pending[count++] = buffer.get(start + i);
+    }
+    pending[count++] = '\n';
+  }
+}
@@ -0,0 +1,57 @@
+package Lexer;
+
+/**
+ * A token as handed out by TokenIterator.
+ */
+
+public class Token {
+  /** The token id, or TokenSink.ERROR */
+  private int type;
+
+  /** The printable name of the type, null for TokenSink.ERROR */
+  private String typeName;
+
+  /** The text of the token */
+  private String text;
+
+  /** Where the token starts in the source */
+  private int start;
+
+  /**
+   * Constructor method.
+   * @param type
+   * @param typeName
+   * @param text
+   * @param start
+   */
+  public Token(int type, String typeName, String text, int start) {
+    this.type = type;
+    this.typeName = typeName;
+    this.text = text;
+    this.start = start;
+  }
+
+  public int getType() {
+    return type;
+  }
+
+  public String getTypeName() {
+    return typeName;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public int getStart() {
+    return start;
+  }
+
+  public int getEnd() {
+    return start + text.length();
+  }
+
+  public String toString() {
+    return typeName + " " + text;
+  }
+}
@@ -0,0 +1,163 @@
+package Lexer;
+
+import java.util.Arrays;
+
+import DFA.TransitionTable;
+
+/**
+ * Pull-based tokenizer over a CharSequence. Each call to next() moves to the
+ * following token, whose type and bounds can then be read without any
+ * allocation. Tokens are the longest match the table accepts; spaces the
+ * start state has no transition on and line breaks separate them. States
+ * walked past the end of a token are remembered, so the total walk stays
+ * linear in the text however often the walk overshoots.
+ */
+
+public class TokenCursor {
+  /** The table to walk */
+  private TransitionTable table;
+
+  /** The text being tokenized */
+  private CharSequence src;
+
+  /** Whether a space is skipped between tokens */
+  private boolean spaceSeparates;
+
+  /** The walks that found nothing, null if the table's states are not stable */
+  private FailureMemo memo;
+
+  /** The states of the current walk */
+  private int[] path = new int[16];
+
+  /** The current token */
+  private int type, start, end;
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table to walk.
+   * @param src
+   *        The text to tokenize.
+   */
+  public TokenCursor(TransitionTable table, CharSequence src) {
+    this.table = table;
+    this.src = src;
+    spaceSeparates = table.next(table.getStartState(), ' ') < 0;
+    if (table.hasStableStates()) {
+      memo = new FailureMemo();
+    }
+  }
+
+  /**
+   * Moves to the next token.
+   * @return false once the text is exhausted.
+   */
+  public boolean next() {
+    CharSequence src = this.src;
+    TransitionTable table = this.table;
+    int length = src.length();
+    int position = end;
+    while (position < length) {
+      char first = src.charAt(position);
+      if (first == '\n' || first == '\r') {
+        position++;
+        if (memo != null) {
+          memo.clear();
+        }
+      } else if (first == ' ' && spaceSeparates) {
+        position++;
+      } else {
+        break;
+      }
+    }
+    if (position >= length) {
+      start = end = length;
+      return false;
+    }
+    FailureMemo memo = this.memo;
+    int state = table.getStartState(), lastAcceptEnd = -1, lastAcceptToken = -1;
+    int i = position;
+    for (; i < length; i++) {
+      char c = src.charAt(i);
+      if (c == '\n' || c == '\r') {
+        break;
+      }
+      state = table.next(state, c);
+      if (state < 0 || memo != null && memo.contains(state, i + 1)) {
+        break;
+      }
+      if (memo != null) {
+        if (i - position == path.length) {
+          path = Arrays.copyOf(path, path.length * 2);
+        }
+        path[i - position] = state;
+      }
+      int token = table.getAcceptToken(state);
+      if (token >= 0) {
+        lastAcceptEnd = i + 1;
+        lastAcceptToken = token;
+      }
+    }
+    if (memo != null && i > Math.max(lastAcceptEnd, position)) {
+      memo.addPath(path, i - position, position, lastAcceptEnd);
+    }
+    start = position;
+    if (lastAcceptToken < 0) {
+      type = TokenSink.ERROR;
+      end = position + Utf8.sequenceLength(src, position, length);
+    } else {
+      type = lastAcceptToken;
+      end = lastAcceptEnd;
+    }
+    return true;
+  }
+
+  /**
+   * The token id of the current token, TokenSink.ERROR for a character no
+   * token starts with.
+   * @return
+   */
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * The printable name of the current token type.
+   * @return null for TokenSink.ERROR
+   */
+  public String getTypeName() {
+    return type == TokenSink.ERROR ? null : table.getTokenName(type);
+  }
+
+  /**
+   * The index of the first character of the current token.
+   * @return
+   */
+  public int getStart() {
+    return start;
+  }
+
+  /**
+   * One past the index of the last character of the current token.
+   * @return
+   */
+  public int getEnd() {
+    return end;
+  }
+
+  /**
+   * The text of the current token.
+   * @return
+   */
+  public CharSequence getText() {
+    return src.subSequence(start, end);
+  }
+
+  /**
+   * The text being tokenized.
+   * @return
+   */
+  public CharSequence getSource() {
+    return src;
+  }
+}
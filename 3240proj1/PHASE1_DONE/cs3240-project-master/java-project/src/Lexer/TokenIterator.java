@@ -0,0 +1,50 @@
+package Lexer;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import DFA.TransitionTable;
+
+/**
+ * An Iterator of Token objects on top of a TokenCursor, for callers that
+ * prefer objects over the allocation free cursor.
+ */
+
+public class TokenIterator implements Iterator<Token> {
+  /** The cursor doing the work */
+  private TokenCursor cursor;
+
+  /** Whether the cursor sits on a token not handed out yet */
+  private boolean ready;
+
+  /** Whether the cursor is exhausted */
+  private boolean done;
+
+  /**
+   * Constructor method.
+   * @param table
+   *        The table to walk.
+   * @param src
+   *        The text to tokenize.
+   */
+  public TokenIterator(TransitionTable table, CharSequence src) {
+    cursor = new TokenCursor(table, src);
+  }
+
+  public boolean hasNext() {
+    if (!ready && !done) {
+      ready = cursor.next();
+      done = !ready;
+    }
+    return ready;
+  }
+
+  public Token next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    ready = false;
+    return new Token(cursor.getType(), cursor.getTypeName(), cursor.getText()
+        .toString(), cursor.getStart());
+  }
+}
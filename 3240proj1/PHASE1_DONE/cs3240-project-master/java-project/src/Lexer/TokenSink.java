@@ -0,0 +1,31 @@
+package Lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the tokens found by a byte oriented tokenizer. The token bytes are
+ * only valid for the duration of the call, as the buffer gets reused.
+ */
+
+public interface TokenSink {
+  /** The type reported for a byte no token starts with */
+  int ERROR = -1;
+
+  /**
+   * Called once per token, in input order.
+   * @param type
+   *        The token id in the table, or ERROR.
+   * @param offset
+   *        The offset of the token in the whole input.
+   * @param buffer
+   *        The buffer holding the token bytes.
+   * @param start
+   *        The index of the first token byte in buffer.
+   * @param length
+   *        The number of token bytes.
+   * @throws IOException
+   */
+  void onToken(int type, long offset, ByteBuffer buffer, int start, int length)
+      throws IOException;
+}
@@ -0,0 +1,22 @@
+package Lexer;
+
+/**
+ * Receives the tokens found in a CharSequence, in order. Push-based
+ * counterpart of TokenCursor.
+ */
+
+public interface TokenVisitor {
+  /**
+   * Called once per token.
+   * @param type
+   *        The token id in the table, or TokenSink.ERROR for a character no
+   *        token starts with.
+   * @param src
+   *        The text being tokenized.
+   * @param start
+   *        The index of the first character of the token in src.
+   * @param end
+   *        One past the index of the last character of the token in src.
+   */
+  void onToken(int type, CharSequence src, int start, int end);
+}
@@ -0,0 +1,603 @@
+package Lexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import DFA.TransitionTable;
+
+/**
+ * Compiles a table into a StreamingTokenizer of its own. The walk of the
+ * table is written out as Java source in which each state is code: the
+ * transitions are comparisons of the byte against constants, or a switch on
+ * its byte class when a state has many, a state only reachable from one
+ * other is nested in the code of that one, and a transition back to the
+ * same state is an inner loop, so a walk mostly runs straight through
+ * without looking up a table or going back to a switch on the state. The
+ * source is compiled in memory with the compiler of the running JDK and
+ * loaded as a hidden class, which the JIT compiles like any other. Line
+ * breaks end every walk, so the generated code only tests for them as part
+ * of the transitions.
+ * <p>
+ * HotSpot does not JIT compile methods over 8000 bytes of bytecode, so
+ * tables whose walk would come out larger are refused rather than
+ * interpreted.
+ */
+
+public class TokenizerCompiler {
+  /** The simple name of the generated class */
+  public static final String CLASS_NAME = "CompiledTokenizer";
+
+  /** The estimated bytecode size of the walk past which tables are refused */
+  private static final int MAX_WALK_SIZE = 7000;
+
+  /** States with more byte ranges than this switch on the byte class */
+  private static final int MAX_RANGE_TESTS = 8;
+
+  /** The table compiled */
+  private TransitionTable table;
+
+  /** The generated source */
+  private String source;
+
+  /** Makes an instance of the hidden class from a table and chunk size */
+  private MethodHandle constructor;
+
+  /**
+   * Constructor method. Generates, compiles and loads the tokenizer, which
+   * takes a moment; reuse the compiler for every tokenizer of a table.
+   * @param table
+   *        The table to compile. Its states must be stable.
+   * @throws IllegalArgumentException
+   *         if the table's states are not stable, or its walk would be too
+   *         large for the JIT.
+   * @throws UnsupportedOperationException
+   *         if there is no Java compiler, as in a JRE.
+   */
+  public TokenizerCompiler(TransitionTable table) {
+    this.table = table;
+    source = generateSource(table, CLASS_NAME);
+    byte[] classFile = compile(CLASS_NAME, source);
+    try {
+      MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(
+          classFile, true);
+      constructor = hidden.findConstructor(hidden.lookupClass(), MethodType
+          .methodType(void.class, TransitionTable.class, int.class));
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the table compiled.
+   */
+  public TransitionTable getTable() {
+    return table;
+  }
+
+  /**
+   * @return the source of the generated class.
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * A new tokenizer reading StreamingTokenizer.DEFAULT_CHUNK_SIZE bytes at a
+   * time. Tokenizers are not thread safe; make one per thread.
+   * @return the tokenizer.
+   */
+  public StreamingTokenizer newTokenizer() {
+    return newTokenizer(StreamingTokenizer.DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * A new tokenizer. Tokenizers are not thread safe; make one per thread.
+   * @param chunkSize
+   *        The number of bytes read at a time.
+   * @return the tokenizer.
+   */
+  public StreamingTokenizer newTokenizer(int chunkSize) {
+    try {
+      return (StreamingTokenizer) constructor.invoke(table, chunkSize);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Generates the source of a StreamingTokenizer subclass in package Lexer
+   * that walks a table without reading it. Its constructor takes the table,
+   * for the token names and start state, and the chunk size.
+   * @param table
+   *        The table to compile. Its states must be stable.
+   * @param className
+   *        The simple name of the class.
+   * @return the source.
+   * @throws IllegalArgumentException
+   *         if the table's states are not stable, or its walk would be too
+   *         large for the JIT.
+   */
+  public static String generateSource(TransitionTable table, String className) {
+    if (!table.hasStableStates()) {
+      throw new IllegalArgumentException(
+          "Only a table with stable states can be compiled");
+    }
+    Generator generator = new Generator(table);
+    if (generator.size > MAX_WALK_SIZE) {
+      throw new IllegalArgumentException("The walk of a table of "
+          + generator.states.size() + " states would be too large for the "
+          + "JIT to compile");
+    }
+
+    StringBuilder out = new StringBuilder();
+    out.append("package Lexer;\n\n");
+    out.append("import java.nio.ByteBuffer;\n\n");
+    out.append("import DFA.TransitionTable;\n\n");
+    out.append("/**\n");
+    out.append(" * Generated by TokenizerCompiler from a table of ")
+        .append(generator.states.size()).append(" states.\n");
+    out.append(" */\n\n");
+    out.append("final class ").append(className)
+        .append(" extends StreamingTokenizer {\n");
+    if (generator.usesClasses) {
+      out.append("  /** The byte class of each byte value */\n");
+      out.append("  private static final char[] CLASSES = \"");
+      for (char k : generator.classes) {
+        out.append('\\').append(Integer.toOctalString(k));
+      }
+      out.append("\".toCharArray();\n\n");
+    }
+    out.append("  public ").append(className)
+        .append("(TransitionTable table, int chunkSize) {\n");
+    out.append("    super(table, chunkSize);\n");
+    out.append("  }\n\n");
+    out.append("  int walk(ByteBuffer buffer, int position, int to) {\n");
+    out.append("    FailureMemo memo = this.memo;\n");
+    out.append("    int limit = memo.getLimit();\n");
+    out.append("    int state = ").append(table.getStartState())
+        .append(", lastAcceptEnd = -1, lastAcceptToken = -1;\n");
+    out.append("    int i = position, c;\n");
+    out.append("    walk: while (true) {\n");
+    out.append("      switch (state) {\n");
+    out.append(generator.cases);
+    out.append("      default:\n");
+    out.append("        throw new IllegalStateException(\"No state \" + state);\n");
+    out.append("      }\n");
+    out.append("    }\n");
+    out.append("    if (i > Math.max(lastAcceptEnd, position)) {\n");
+    out.append("      retrace(buffer, position, i);\n");
+    out.append("    }\n");
+    out.append("    acceptEnd = lastAcceptEnd;\n");
+    out.append("    acceptToken = lastAcceptToken;\n");
+    out.append("    return i;\n");
+    out.append("  }\n");
+    out.append("}\n");
+    return out.toString();
+  }
+
+  /**
+   * Writes the code of the states of a table. The code of a state reads a
+   * byte and tests it against the transitions, each of which checks the
+   * failure memo, notes a token if its state accepts one, and goes on
+   * straight into the code of the next state when the next state can only
+   * be reached from there, loops when it is the same state, and otherwise
+   * sets the state and goes back to the switch at the top, which has a case
+   * for each such state and the start state.
+   */
+  private static class Generator {
+    TransitionTable table;
+
+    /** The reachable states, breadth first from the start state */
+    List<Integer> states;
+
+    /** The next state of each state on each byte, null if unreachable */
+    int[][] rows;
+
+    /** The byte classes of the rows */
+    char[] classes;
+
+    /** Whether each state has its code in that of its one predecessor */
+    boolean[] nested;
+
+    /** Whether some state switches on the byte class */
+    boolean usesClasses;
+
+    /** The cases of the switch */
+    StringBuilder cases = new StringBuilder();
+
+    /** The estimated bytecode size of the walk */
+    int size = 80;
+
+    Generator(TransitionTable table) {
+      this.table = table;
+      states = reachableStates(table);
+      int maxState = Collections.max(states);
+      rows = new int[maxState + 1][];
+      for (int state : states) {
+        rows[state] = row(table, state);
+      }
+      classes = byteClasses(rows);
+
+      int[] predecessors = new int[maxState + 1];
+      for (int state : states) {
+        boolean[] counted = new boolean[maxState + 1];
+        for (int next : rows[state]) {
+          if (next >= 0 && next != state && !counted[next]) {
+            counted[next] = true;
+            predecessors[next]++;
+          }
+        }
+      }
+      nested = new boolean[maxState + 1];
+      for (int state : states) {
+        nested[state] = predecessors[state] == 1
+            && state != table.getStartState();
+      }
+      for (int state : states) {
+        if (!nested[state]) {
+          cases.append("      case ").append(state).append(":\n");
+          size += 8;
+          state(state, "        ");
+        }
+      }
+    }
+
+    /**
+     * Writes the code of a state, to be run with the next byte at i.
+     */
+    void state(int state, String indent) {
+      if (size > MAX_WALK_SIZE) {
+        // The table is refused; the rest of its walk need not be written.
+        return;
+      }
+      List<int[]> ranges = ranges(rows[state]);
+      if (ranges.isEmpty()) {
+        line(indent, "break walk;");
+        size += 3;
+        return;
+      }
+      boolean loops = false;
+      for (int[] range : ranges) {
+        loops |= range[2] == state;
+      }
+      String inner = indent;
+      if (loops) {
+        line(indent, "s" + state + ": while (true) {");
+        inner = indent + "  ";
+      }
+      line(inner, "if (i == to) {");
+      line(inner, "  break walk;");
+      line(inner, "}");
+      line(inner, "c = buffer.get(i) & 0xFF;");
+      size += 16;
+      if (ranges.size() > MAX_RANGE_TESTS) {
+        byClass(state, inner);
+      } else {
+        byRange(state, ranges, inner);
+      }
+      if (loops) {
+        line(indent, "}");
+      }
+    }
+
+    /**
+     * Writes the transitions of a state as tests of the byte against ranges,
+     * one test of all the ranges leading to each next state, so that the
+     * code of a nested state is written once.
+     */
+    void byRange(int state, List<int[]> ranges, String indent) {
+      TreeMap<Integer, List<int[]>> byTarget =
+          new TreeMap<Integer, List<int[]>>();
+      for (int[] range : ranges) {
+        if (!byTarget.containsKey(range[2])) {
+          byTarget.put(range[2], new ArrayList<int[]>());
+        }
+        byTarget.get(range[2]).add(range);
+      }
+      String keyword = "if (";
+      for (int target : byTarget.keySet()) {
+        StringBuilder test = new StringBuilder();
+        for (int[] range : byTarget.get(target)) {
+          if (test.length() > 0) {
+            test.append(" || ");
+            size += 3;
+          }
+          if (range[0] == range[1]) {
+            test.append("c == ").append(literal(range[0]));
+            size += 6;
+          } else {
+            test.append("c >= ").append(literal(range[0]))
+                .append(" && c <= ").append(literal(range[1]));
+            size += 12;
+          }
+        }
+        line(indent, keyword + test + ") {");
+        edge(state, target, indent + "  ");
+        keyword = "} else if (";
+      }
+      line(indent, "} else {");
+      line(indent, "  break walk;");
+      line(indent, "}");
+      size += 3;
+    }
+
+    /**
+     * Writes the transitions of a state as a switch on the byte class.
+     */
+    void byClass(int state, String indent) {
+      usesClasses = true;
+      // The classes leading to each next state.
+      TreeMap<Integer, List<Integer>> byTarget =
+          new TreeMap<Integer, List<Integer>>();
+      boolean[] seen = new boolean[256];
+      int classCount = 0;
+      int[] row = rows[state];
+      for (int c = 0; c < row.length; c++) {
+        int k = classes[c];
+        classCount = Math.max(classCount, k + 1);
+        if (seen[k] || row[c] < 0) {
+          continue;
+        }
+        seen[k] = true;
+        if (!byTarget.containsKey(row[c])) {
+          byTarget.put(row[c], new ArrayList<Integer>());
+        }
+        byTarget.get(row[c]).add(k);
+      }
+      line(indent, "switch (CLASSES[c]) {");
+      for (int target : byTarget.keySet()) {
+        for (int k : byTarget.get(target)) {
+          line(indent, "case " + k + ":");
+        }
+        edge(state, target, indent + "  ");
+      }
+      line(indent, "default:");
+      line(indent, "  break walk;");
+      line(indent, "}");
+      size += 20 + 4 * classCount;
+    }
+
+    /**
+     * Writes a transition taken on the byte at i.
+     */
+    void edge(int state, int next, String indent) {
+      int token = table.getAcceptToken(next);
+      if (token < 0) {
+        // The memo never has an accepting state, past which a walk found
+        // a token.
+        line(indent, "if (i < limit && memo.contains(" + next + ", i + 1)) {");
+        line(indent, "  break walk;");
+        line(indent, "}");
+        size += 16;
+      }
+      line(indent, "i++;");
+      size += 3;
+      if (token >= 0) {
+        line(indent, "lastAcceptEnd = i;");
+        line(indent, "lastAcceptToken = " + token + ";");
+        size += 6;
+      }
+      if (next == state) {
+        line(indent, "continue s" + state + ";");
+        size += 3;
+      } else if (nested[next]) {
+        state(next, indent);
+      } else {
+        line(indent, "state = " + next + ";");
+        line(indent, "continue walk;");
+        size += 6;
+      }
+    }
+
+    void line(String indent, String code) {
+      cases.append(indent).append(code).append('\n');
+    }
+  }
+
+  /**
+   * The states a walk can reach, breadth first from the start state.
+   */
+  private static List<Integer> reachableStates(TransitionTable table) {
+    List<Integer> states = new ArrayList<Integer>();
+    Deque<Integer> queue = new ArrayDeque<Integer>();
+    boolean[] found = new boolean[16];
+    int start = table.getStartState();
+    queue.add(start);
+    found = mark(found, start);
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      states.add(state);
+      for (int c = 0; c < 256; c++) {
+        int next = c == '\n' || c == '\r' ? -1 : table.next(state, c);
+        if (next >= 0 && (next >= found.length || !found[next])) {
+          found = mark(found, next);
+          queue.add(next);
+        }
+      }
+    }
+    return states;
+  }
+
+  private static boolean[] mark(boolean[] found, int state) {
+    if (state >= found.length) {
+      found = Arrays.copyOf(found, Math.max(found.length * 2, state + 1));
+    }
+    found[state] = true;
+    return found;
+  }
+
+  /**
+   * The next state of a state on each byte value, with line breaks leading
+   * nowhere.
+   */
+  private static int[] row(TransitionTable table, int state) {
+    int[] row = new int[256];
+    for (int c = 0; c < 256; c++) {
+      row[c] = c == '\n' || c == '\r' ? -1 : table.next(state, c);
+    }
+    return row;
+  }
+
+  /**
+   * Numbers the byte values so that two share a number when every state
+   * treats them alike.
+   */
+  private static char[] byteClasses(int[][] rows) {
+    char[] classes = new char[256];
+    List<Integer> representatives = new ArrayList<Integer>();
+    for (int c = 0; c < 256; c++) {
+      int k = 0;
+      for (; k < representatives.size(); k++) {
+        if (sameColumn(rows, c, representatives.get(k))) {
+          break;
+        }
+      }
+      if (k == representatives.size()) {
+        representatives.add(c);
+      }
+      classes[c] = (char) k;
+    }
+    return classes;
+  }
+
+  private static boolean sameColumn(int[][] rows, int a, int b) {
+    for (int[] row : rows) {
+      if (row != null && row[a] != row[b]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The runs of byte values with the same next state, as {first, last,
+   * next state}, leaving out the ones leading nowhere.
+   */
+  private static List<int[]> ranges(int[] row) {
+    List<int[]> ranges = new ArrayList<int[]>();
+    for (int c = 0; c < row.length; c++) {
+      if (row[c] < 0) {
+        continue;
+      }
+      int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+      if (last != null && last[1] == c - 1 && last[2] == row[c]) {
+        last[1] = c;
+      } else {
+        ranges.add(new int[] { c, c, row[c] });
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * A byte value as a Java literal, a char literal when it is printable.
+   */
+  private static String literal(int c) {
+    if (c > ' ' && c < 0x7F && c != '\'' && c != '\\') {
+      return "'" + (char) c + "'";
+    }
+    return Integer.toString(c);
+  }
+
+  /**
+   * Compiles one class of package Lexer in memory.
+   * @return the class file.
+   */
+  private static byte[] compile(String className, final String source) {
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    if (javac == null) {
+      throw new UnsupportedOperationException(
+          "Compiling a tokenizer needs the Java compiler of a JDK");
+    }
+    DiagnosticCollector<JavaFileObject> diagnostics =
+        new DiagnosticCollector<JavaFileObject>();
+    final ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+    StandardJavaFileManager standard = javac.getStandardFileManager(
+        diagnostics, null, null);
+    JavaFileManager files =
+        new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+      public JavaFileObject getJavaFileForOutput(Location location,
+          String name, JavaFileObject.Kind kind, FileObject sibling) {
+        return new SimpleJavaFileObject(URI.create("mem:///"
+            + name.replace('.', '/') + kind.extension), kind) {
+          public OutputStream openOutputStream() {
+            return classFile;
+          }
+        };
+      }
+    };
+    JavaFileObject unit = new SimpleJavaFileObject(URI.create("string:///Lexer/"
+        + className + ".java"), JavaFileObject.Kind.SOURCE) {
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+    List<String> options = Arrays.asList("-classpath", classPath(), "-g:none");
+    try {
+      boolean compiled = javac.getTask(null, files, diagnostics, options,
+          null, Collections.singletonList(unit)).call();
+      if (!compiled) {
+        throw new IllegalStateException(
+            "The generated tokenizer did not compile: "
+                + diagnostics.getDiagnostics());
+      }
+    } finally {
+      try {
+        files.close();
+      } catch (IOException e) {
+        // Nothing was written to disk.
+      }
+    }
+    return classFile.toByteArray();
+  }
+
+  /**
+   * The class path to compile against: where the Lexer classes were loaded
+   * from, then the class path of the JVM.
+   */
+  private static String classPath() {
+    String classPath = System.getProperty("java.class.path");
+    CodeSource code = StreamingTokenizer.class.getProtectionDomain()
+        .getCodeSource();
+    if (code == null || code.getLocation() == null) {
+      return classPath;
+    }
+    try {
+      return new File(code.getLocation().toURI()).getPath()
+          + File.pathSeparator + classPath;
+    } catch (URISyntaxException e) {
+      return classPath;
+    }
+  }
+}
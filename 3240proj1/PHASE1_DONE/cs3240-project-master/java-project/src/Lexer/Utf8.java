@@ -0,0 +1,111 @@
+package Lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Helpers for tokenizers that read UTF-8 as bytes, so that a character no
+ * token starts with is reported once, as a character, and not byte by byte.
+ */
+
+public class Utf8 {
+  /** The charset to decode reported characters with */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The length of the UTF-8 sequence starting at a byte of a buffer.
+   * @param buffer
+   * @param position
+   *        The index of the lead byte.
+   * @param limit
+   *        One past the last byte that may be part of the sequence.
+   * @return 1 if the bytes there are not a whole multi byte sequence.
+   */
+  public static int sequenceLength(ByteBuffer buffer, int position, int limit) {
+    int length = leadLength(buffer.get(position) & 0xFF);
+    if (position + length > limit) {
+      return 1;
+    }
+    for (int i = 1; i < length; i++) {
+      if ((buffer.get(position + i) & 0xC0) != 0x80) {
+        return 1;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * The length of the UTF-8 sequence starting at a char of a sequence whose
+   * chars stand for bytes, as when ISO-8859-1 decoded it.
+   * @param src
+   * @param position
+   *        The index of the lead byte.
+   * @param limit
+   *        One past the last char that may be part of the sequence.
+   * @return 1 if the chars there are not a whole multi byte sequence.
+   */
+  public static int sequenceLength(CharSequence src, int position, int limit) {
+    int length = leadLength(src.charAt(position));
+    if (position + length > limit) {
+      return 1;
+    }
+    for (int i = 1; i < length; i++) {
+      char c = src.charAt(position + i);
+      if (c < 0x80 || c > 0xBF) {
+        return 1;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * The number of bytes a UTF-8 lead byte announces.
+   */
+  private static int leadLength(int lead) {
+    if (lead >= 0xC2 && lead <= 0xDF) {
+      return 2;
+    }
+    if (lead >= 0xE0 && lead <= 0xEF) {
+      return 3;
+    }
+    if (lead >= 0xF0 && lead <= 0xF4) {
+      return 4;
+    }
+    return 1;
+  }
+
+  /**
+   * Decodes bytes of a buffer for a message.
+   * @param buffer
+   * @param start
+   * @param length
+   * @return
+   */
+  public static String decode(ByteBuffer buffer, int start, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, UTF_8);
+  }
+
+  /**
+   * Decodes chars standing for bytes for a message. Text that has chars
+   * above 255, so was not bytes to begin with, is returned as it is.
+   * @param src
+   * @param start
+   * @param end
+   * @return
+   */
+  public static String decode(CharSequence src, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    for (int i = start; i < end; i++) {
+      char c = src.charAt(i);
+      if (c > 0xFF) {
+        return src.subSequence(start, end).toString();
+      }
+      bytes[i - start] = (byte) c;
+    }
+    return new String(bytes, UTF_8);
+  }
+}
@@ -0,0 +1,30 @@
+package Lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hands the tokens of a byte oriented tokenizer to a TokenVisitor. The
+ * visitor sees each token as the whole of a reused CharSequence view of the
+ * buffer, valid only during the call.
+ */
+
+public class VisitorTokenSink implements TokenSink {
+  /** The visitor tokens go to */
+  private TokenVisitor visitor;
+
+  /** The view handed to the visitor */
+  private ByteBufferCharSequence view = new ByteBufferCharSequence();
+
+  /**
+   * Constructor method.
+   * @param visitor
+   */
+  public VisitorTokenSink(TokenVisitor visitor) {
+    this.visitor = visitor;
+  }
+
+  public void onToken(int type, long offset, ByteBuffer buffer, int start,
+      int length) {
+    visitor.onToken(type, view.set(buffer, start, length), 0, length);
+  }
+}
@@ -0,0 +1,518 @@
+package MiniRE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import DFA.CompactDFATable;
+import DFA.DFA;
+import DFA.HopcroftMinimizer;
+import Lexer.FailureMemo;
+import Lexer.LexerBuilder;
+import Lexer.Utf8;
+import NFA.ByteClasses;
+import NFA.CharRanges;
+import NFA.NFA;
+import Parser.RegexCursorParser;
+import Regex.Accept;
+import Regex.CharSet;
+import Regex.Concat;
+import Regex.Optional;
+import Regex.Plus;
+import Regex.RegexNode;
+import Regex.RequiredLiteral;
+import Regex.Simplifier;
+import Regex.Star;
+import Regex.ThompsonConstruction;
+import Regex.Union;
+import Regex.Utf8Encoder;
+
+/**
+ * Finds the matches of one regex in files, for the find statement of MiniRE.
+ * The regex is compiled into three byte tables: the regex without the empty
+ * string, prefixed with .*, which reads each file once and accepts wherever
+ * the next match could end at the earliest; the prefixes of the regex
+ * reversed, which walk back from such an end over every start a match
+ * through it could have; and the regex itself, which walks forward from
+ * those starts, leftmost first, to the longest match. Matches are thus leftmost and longest, do not overlap, are
+ * never empty and never span a line break. The forward walks remember in a
+ * FailureMemo where they went past their last accepting state, as the
+ * tokenizers do, so a walk from a later start stops where an earlier one
+ * found nothing, and finding stays linear in the length of a line however
+ * many starts it has. Files are memory mapped and only the text of a match
+ * is ever copied out of them. When every match contains some literal, only
+ * the lines it occurs on, found by a LiteralScanner, go through the tables,
+ * unless they turn out to be most of the input. Not thread safe: use one
+ * engine per thread.
+ */
+
+public class FindEngine {
+  /** The most bytes mapped at once */
+  private static final long SEGMENT = 1 << 30;
+
+  /** Every byte, the .* that makes the search unanchored */
+  private static final CharRanges ANY_BYTE = CharRanges.range('\0', '\u00ff');
+
+  /** The regex without the empty string, prefixed with .* */
+  private CompactDFATable unanchored;
+
+  /** The prefixes of the regex without the empty string, reversed */
+  private CompactDFATable reversePrefixes;
+
+  /** The regex */
+  private CompactDFATable anchored;
+
+  /** Finds a literal every match contains, null if there is none */
+  private LiteralScanner literal;
+
+  /** Whether only the lines the literal is on are searched */
+  private boolean prefilter = true;
+
+  /** The starts found by the last backward walk, rightmost first */
+  private int[] starts = new int[64];
+
+  /** Where forward walks on the current line found nothing */
+  private FailureMemo memo = new FailureMemo();
+
+  /** The states of the current forward walk */
+  private int[] path = new int[16];
+
+  /**
+   * Constructor method.
+   * @param regex
+   *        The regex to find, in the syntax of a spec.
+   * @throws IllegalArgumentException
+   *         if the regex does not parse.
+   */
+  public FindEngine(String regex) {
+    this(regex, new LexerBuilder());
+  }
+
+  /**
+   * Constructor method.
+   * @param regex
+   *        The regex to find, in the syntax of a spec.
+   * @param builder
+   *        The build whose defined classes the regex may use.
+   * @throws IllegalArgumentException
+   *         if the regex does not parse.
+   */
+  public FindEngine(String regex, LexerBuilder builder) {
+    RegexNode parsed = new RegexCursorParser(regex, builder).parse();
+    if (parsed == null) {
+      throw new IllegalArgumentException("Cant work with regex :" + regex);
+    }
+    RegexNode bytes = Utf8Encoder.encode(parsed);
+    String required = RequiredLiteral.of(bytes);
+    if (required.length() > 0 && required.indexOf('\n') < 0) {
+      literal = new LiteralScanner(required.getBytes(Charset
+          .forName("ISO-8859-1")));
+    }
+    anchored = table(bytes, builder);
+    // Matches are never empty; a search accepting the empty string would
+    // walk back over the whole line from every byte.
+    RegexNode nonEmpty = nonEmpty(bytes);
+    reversePrefixes = table(reversed(prefixes(nonEmpty)), builder);
+    unanchored = table(new Concat(new Star(new CharSet(ANY_BYTE)), nonEmpty),
+        builder);
+  }
+
+  /**
+   * Whether only the lines a literal every match contains is on are
+   * searched.
+   * @return
+   */
+  public boolean isPrefilter() {
+    return prefilter;
+  }
+
+  /**
+   * Chooses whether to skip to the lines a literal every match contains is
+   * on, when the regex has such a literal, or to search every line. On by
+   * default.
+   * @param prefilter
+   */
+  public void setPrefilter(boolean prefilter) {
+    this.prefilter = prefilter;
+  }
+
+  /**
+   * Finds the matches in files.
+   * @param files
+   * @return the matches, file by file in file order.
+   * @throws IOException
+   */
+  public List<Match> find(List<File> files) throws IOException {
+    final List<Match> matches = new ArrayList<Match>();
+    MatchSink collect = new MatchSink() {
+      public void onMatch(String file, long line, long offset,
+          ByteBuffer buffer, int start, int length) {
+        matches.add(new Match(file, line, offset, Utf8.decode(buffer, start,
+            length)));
+      }
+    };
+    for (File file : files) {
+      find(file, collect);
+    }
+    return matches;
+  }
+
+  /**
+   * Finds the matches in a file.
+   * @param file
+   * @return the matches, in file order.
+   * @throws IOException
+   */
+  public List<Match> find(File file) throws IOException {
+    return find(Collections.singletonList(file));
+  }
+
+  /**
+   * Finds the matches in a file, handing each to a sink.
+   * @param file
+   * @param sink
+   * @throws IOException
+   */
+  public void find(File file, MatchSink sink) throws IOException {
+    String path = file.getPath();
+    FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      long size = in.size();
+      long base = 0, line = 1;
+      while (base < size) {
+        long length = Math.min(SEGMENT, size - base);
+        MappedByteBuffer segment = in.map(FileChannel.MapMode.READ_ONLY,
+            base, length);
+        // The literal is looked for in longs, read fastest in native order.
+        segment.order(ByteOrder.nativeOrder());
+        int limit = (int) length;
+        if (base + length < size) {
+          // Cut after the last line break; the rest is mapped again next.
+          while (limit > 0 && segment.get(limit - 1) != '\n') {
+            limit--;
+          }
+          if (limit == 0) {
+            throw new IOException("Line too long to map starting at " + base);
+          }
+        }
+        line = find(path, segment, limit, base, line, sink);
+        base += limit;
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Finds the matches in the first limit bytes of a buffer, handing each to
+   * a sink with offsets from the start of the buffer.
+   * @param name
+   *        What to report as the file.
+   * @param buffer
+   * @param limit
+   * @param sink
+   * @throws IOException
+   */
+  public void find(String name, ByteBuffer buffer, int limit, MatchSink sink)
+      throws IOException {
+    find(name, buffer, limit, 0, 1, sink);
+  }
+
+  /**
+   * Finds the matches in the first limit bytes of a buffer.
+   * @return the line the buffer ends on.
+   */
+  private long find(String file, ByteBuffer buffer, int limit, long offset,
+      long line, MatchSink sink) throws IOException {
+    return literal != null && prefilter ? findLines(file, buffer, limit,
+        offset, line, sink) : find(file, buffer, 0, limit, offset, line, sink);
+  }
+
+  /**
+   * Finds the matches on the lines of the first limit bytes of a buffer that
+   * the literal is on.
+   * @return the line the buffer ends on.
+   */
+  private long findLines(String file, ByteBuffer buffer, int limit,
+      long offset, long line, MatchSink sink) throws IOException {
+    literal.startLineCount(0);
+    int position = 0, searched = 0;
+    while (position < limit) {
+      if (searched > position / 2 && position > (1 << 16)) {
+        // The literal is on most lines; skipping to them does not pay.
+        return find(file, buffer, position, limit, offset, line
+            + literal.lineBreaksBefore(buffer, position), sink);
+      }
+      int hit = literal.indexOf(buffer, position, limit);
+      if (hit < 0) {
+        break;
+      }
+      int lineStart = hit;
+      while (lineStart > position && buffer.get(lineStart - 1) != '\n') {
+        lineStart--;
+      }
+      int lineEnd = LiteralScanner.indexOf(buffer, (byte) '\n', hit
+          + literal.length(), limit);
+      if (lineEnd < 0) {
+        lineEnd = limit;
+      }
+      find(file, buffer, lineStart, lineEnd, offset, line
+          + literal.lineBreaksBefore(buffer, lineStart), sink);
+      searched += lineEnd - lineStart;
+      position = lineEnd;
+    }
+    return line + literal.lineBreaksBefore(buffer, limit);
+  }
+
+  /**
+   * Finds the matches in a buffer from index from to index limit.
+   * @return the line the range ends on.
+   */
+  private long find(String file, ByteBuffer buffer, int from, int limit,
+      long offset, long line, MatchSink sink) throws IOException {
+    int[] transitions = unanchored.getTransitions();
+    int[] accepts = unanchored.getAcceptTokens();
+    byte[] classMap = unanchored.getClassMap();
+    int stride = unanchored.getStride();
+    int start = unanchored.getStartState();
+    int state = start;
+    int floor = from;
+    memo.clear();
+    for (int position = from; position < limit;) {
+      int c = buffer.get(position++) & 0xFF;
+      if (c == '\n') {
+        line++;
+        floor = position;
+        state = start;
+        memo.clear();
+        continue;
+      }
+      state = transitions[state * stride + (classMap[c] & 0xFF)];
+      if (accepts[state] < 0) {
+        continue;
+      }
+      // No match ends before here, so the leftmost one goes through here.
+      for (int i = startsBefore(buffer, floor, position) - 1; i >= 0; i--) {
+        int matchStart = starts[i];
+        int matchEnd = longestEnd(buffer, matchStart, limit);
+        if (matchEnd > matchStart) {
+          sink.onMatch(file, line, offset + matchStart, buffer, matchStart,
+              matchEnd - matchStart);
+          floor = position = matchEnd;
+          state = start;
+          break;
+        }
+      }
+    }
+    return line;
+  }
+
+  /**
+   * Walks back from end, no further than floor, and puts every start from
+   * which a match could go through end in starts, rightmost first.
+   * @return the number of starts.
+   */
+  private int startsBefore(ByteBuffer buffer, int floor, int end) {
+    int count = 0;
+    int state = reversePrefixes.getStartState();
+    for (int i = end; ; i--) {
+      if (reversePrefixes.getAcceptToken(state) >= 0) {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count * 2);
+        }
+        starts[count++] = i;
+      }
+      if (i == floor) {
+        break;
+      }
+      state = reversePrefixes.next(state, buffer.get(i - 1) & 0xFF);
+      if (state < 0) {
+        break;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * The end of the longest match starting at start, or start if there is
+   * none. Stops at a line break, and where an earlier walk found nothing.
+   */
+  private int longestEnd(ByteBuffer buffer, int start, int limit) {
+    FailureMemo memo = this.memo;
+    int state = anchored.getStartState();
+    int end = -1;
+    int i = start;
+    for (; i < limit; i++) {
+      int c = buffer.get(i) & 0xFF;
+      if (c == '\n') {
+        break;
+      }
+      state = anchored.next(state, c);
+      if (state < 0 || memo.contains(state, i + 1)) {
+        break;
+      }
+      if (i - start == path.length) {
+        path = Arrays.copyOf(path, path.length * 2);
+      }
+      path[i - start] = state;
+      if (anchored.getAcceptToken(state) >= 0) {
+        end = i + 1;
+      }
+    }
+    if (i > Math.max(end, start)) {
+      memo.addPath(path, i - start, start, end);
+    }
+    return end < 0 ? start : end;
+  }
+
+  /**
+   * Compiles a byte level regex to a minimized table accepting it.
+   */
+  private static CompactDFATable table(RegexNode bytes, LexerBuilder builder) {
+    NFA nfa = ThompsonConstruction.toNFA(Simplifier.simplify(new Concat(
+        bytes, new Accept("$MATCH", 0))), builder);
+    return CompactDFATable.fromDFA(new HopcroftMinimizer(DFA
+        .getDFAFromNFA(nfa)).getMinimizedDFA(), ByteClasses.fromNFA(nfa));
+  }
+
+  /**
+   * The regex matching every prefix of every string a regex matches.
+   */
+  private static RegexNode prefixes(RegexNode n) {
+    if (n instanceof Concat) {
+      List<RegexNode> children = ((Concat) n).getChildren();
+      List<RegexNode> alternatives = new ArrayList<RegexNode>();
+      for (int i = 0; i < children.size(); i++) {
+        List<RegexNode> parts = new ArrayList<RegexNode>(children.subList(0,
+            i));
+        parts.add(prefixes(children.get(i)));
+        alternatives.add(new Concat(parts));
+      }
+      return new Union(alternatives);
+    }
+    if (n instanceof Union) {
+      List<RegexNode> alternatives = new ArrayList<RegexNode>();
+      for (RegexNode child : ((Union) n).getChildren()) {
+        alternatives.add(prefixes(child));
+      }
+      return new Union(alternatives);
+    }
+    if (n instanceof Star) {
+      return new Concat(n, prefixes(((Star) n).getChild()));
+    }
+    if (n instanceof Plus) {
+      RegexNode child = ((Plus) n).getChild();
+      return new Concat(new Star(child), prefixes(child));
+    }
+    if (n instanceof Optional) {
+      return prefixes(((Optional) n).getChild());
+    }
+    return new Optional(n);
+  }
+
+  /**
+   * Whether a regex matches the empty string.
+   */
+  private static boolean nullable(RegexNode n) {
+    if (n instanceof Concat) {
+      for (RegexNode child : ((Concat) n).getChildren()) {
+        if (!nullable(child)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (n instanceof Union) {
+      for (RegexNode child : ((Union) n).getChildren()) {
+        if (nullable(child)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (n instanceof Plus) {
+      return nullable(((Plus) n).getChild());
+    }
+    return n instanceof Star || n instanceof Optional;
+  }
+
+  /**
+   * The regex matching every string but the empty one that a regex matches.
+   */
+  private static RegexNode nonEmpty(RegexNode n) {
+    if (n instanceof Concat) {
+      // The first non-empty part, after parts that all matched nothing.
+      List<RegexNode> children = ((Concat) n).getChildren();
+      List<RegexNode> alternatives = new ArrayList<RegexNode>();
+      for (int i = 0; i < children.size(); i++) {
+        List<RegexNode> parts = new ArrayList<RegexNode>();
+        parts.add(nonEmpty(children.get(i)));
+        parts.addAll(children.subList(i + 1, children.size()));
+        alternatives.add(new Concat(parts));
+        if (!nullable(children.get(i))) {
+          break;
+        }
+      }
+      return alternatives.isEmpty() ? new CharSet(CharRanges.EMPTY)
+          : new Union(alternatives);
+    }
+    if (n instanceof Union) {
+      List<RegexNode> alternatives = new ArrayList<RegexNode>();
+      for (RegexNode child : ((Union) n).getChildren()) {
+        alternatives.add(nonEmpty(child));
+      }
+      return new Union(alternatives);
+    }
+    if (n instanceof Star) {
+      RegexNode child = ((Star) n).getChild();
+      return new Concat(nonEmpty(child), n);
+    }
+    if (n instanceof Plus) {
+      RegexNode child = ((Plus) n).getChild();
+      return new Concat(nonEmpty(child), new Star(child));
+    }
+    if (n instanceof Optional) {
+      return nonEmpty(((Optional) n).getChild());
+    }
+    return n;
+  }
+
+  /**
+   * The regex matching the reverse of every string a regex matches.
+   */
+  private static RegexNode reversed(RegexNode n) {
+    if (n instanceof Concat) {
+      List<RegexNode> parts = new ArrayList<RegexNode>();
+      for (RegexNode child : ((Concat) n).getChildren()) {
+        parts.add(0, reversed(child));
+      }
+      return new Concat(parts);
+    }
+    if (n instanceof Union) {
+      List<RegexNode> alternatives = new ArrayList<RegexNode>();
+      for (RegexNode child : ((Union) n).getChildren()) {
+        alternatives.add(reversed(child));
+      }
+      return new Union(alternatives);
+    }
+    if (n instanceof Star) {
+      return new Star(reversed(((Star) n).getChild()));
+    }
+    if (n instanceof Plus) {
+      return new Plus(reversed(((Plus) n).getChild()));
+    }
+    if (n instanceof Optional) {
+      return new Optional(reversed(((Optional) n).getChild()));
+    }
+    return n;
+  }
+}
@@ -0,0 +1,212 @@
+package MiniRE;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Finds a literal in a ByteBuffer eight bytes at a time, testing a whole
+ * long for bytes equal to a given one the way memchr does. A longer literal
+ * is looked for by its first and last bytes at once: the long read at a
+ * position and the one read as far ahead as the literal is long are both
+ * tested, and only where both bytes are in place is the rest compared. A
+ * window the longs do not fit in is searched with Boyer-Moore-Horspool,
+ * which compares the last byte first and skips ahead by as much as the byte
+ * found there allows. The line breaks in the longs read are counted on the
+ * way, so that the line a hit is on costs no second pass over the buffer.
+ */
+
+public class LiteralScanner {
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGHS = 0x8080808080808080L;
+  private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+  private static final long NEWLINES = ONES * '\n';
+
+  /** The literal */
+  private byte[] literal;
+
+  /** How far the window may move when its last byte is a given value */
+  private int[] shift = new int[256];
+
+  /** The number of line breaks counted up to countedTo */
+  private long lineBreaks;
+
+  /** The index line breaks are counted up to */
+  private int countedTo;
+
+  /**
+   * Constructor method.
+   * @param literal
+   *        The literal to find, at least one byte.
+   */
+  public LiteralScanner(byte[] literal) {
+    this.literal = literal.clone();
+    int last = literal.length - 1;
+    Arrays.fill(shift, literal.length);
+    for (int i = 0; i < last; i++) {
+      shift[literal[i] & 0xFF] = last - i;
+    }
+  }
+
+  /**
+   * The length of the literal.
+   * @return
+   */
+  public int length() {
+    return literal.length;
+  }
+
+  /**
+   * Starts counting line breaks from an index of a buffer.
+   * @param position
+   */
+  public void startLineCount(int position) {
+    lineBreaks = 0;
+    countedTo = position;
+  }
+
+  /**
+   * The number of line breaks in a buffer from where startLineCount was
+   * called up to an index.
+   * @param buffer
+   * @param position
+   * @return
+   */
+  public long lineBreaksBefore(ByteBuffer buffer, int position) {
+    if (position < countedTo) {
+      lineBreaks -= count(buffer, (byte) '\n', position, countedTo);
+    } else {
+      lineBreaks += count(buffer, (byte) '\n', countedTo, position);
+    }
+    countedTo = position;
+    return lineBreaks;
+  }
+
+  /**
+   * Where the literal next starts in a buffer, counting the line breaks
+   * before it.
+   * @param buffer
+   * @param from
+   *        The first index the literal may start at.
+   * @param limit
+   *        The index the literal must end by.
+   * @return the index, -1 if the literal is not there.
+   */
+  public int indexOf(ByteBuffer buffer, int from, int limit) {
+    lineBreaksBefore(buffer, from);
+    byte[] literal = this.literal;
+    int last = literal.length - 1;
+    long firsts = ONES * (literal[0] & 0xFF);
+    long lasts = ONES * (literal[last] & 0xFF);
+    boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+    long breaks = lineBreaks;
+    int start = from;
+    for (; start + last + 8 <= limit; start += 8) {
+      long word = buffer.getLong(start);
+      breaks += Long.bitCount(zeros(word ^ NEWLINES));
+      long found = zeros(word ^ firsts);
+      if (last > 0) {
+        found &= zeros(buffer.getLong(start + last) ^ lasts);
+      }
+      while (found != 0) {
+        // The first byte is the highest in big endian order.
+        int byteIndex = bigEndian ? Long.numberOfLeadingZeros(found) >>> 3
+            : Long.numberOfTrailingZeros(found) >>> 3;
+        if (matches(buffer, start + byteIndex)) {
+          lineBreaks = breaks;
+          countedTo = start + 8;
+          return start + byteIndex;
+        }
+        found &= ~(0x80L << (bigEndian ? 56 - 8 * byteIndex : 8 * byteIndex));
+      }
+    }
+    lineBreaks = breaks;
+    countedTo = start;
+    byte lastByte = literal[last];
+    for (int i = start + last; i < limit;) {
+      byte b = buffer.get(i);
+      if (b == lastByte) {
+        int candidate = i - last;
+        int j = 0;
+        while (j < last && buffer.get(candidate + j) == literal[j]) {
+          j++;
+        }
+        if (j == last) {
+          return candidate;
+        }
+      }
+      i += shift[b & 0xFF];
+    }
+    return -1;
+  }
+
+  /**
+   * Whether the literal is at an index of a buffer, its first and last bytes
+   * being known to be.
+   */
+  private boolean matches(ByteBuffer buffer, int start) {
+    for (int j = 1; j < literal.length - 1; j++) {
+      if (buffer.get(start + j) != literal[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sets exactly the high bits of the bytes of x that are zero.
+   */
+  private static long zeros(long x) {
+    return ~(((x & LOWS) + LOWS) | x) & HIGHS;
+  }
+
+  /**
+   * Where a byte next occurs in a buffer.
+   * @param buffer
+   * @param b
+   * @param from
+   * @param limit
+   * @return the index, -1 if the byte is not there.
+   */
+  public static int indexOf(ByteBuffer buffer, byte b, int from, int limit) {
+    long pattern = ONES * (b & 0xFF);
+    int i = from;
+    for (; i + 8 <= limit; i += 8) {
+      long x = buffer.getLong(i) ^ pattern;
+      // Only sets high bits for bytes of x that are zero, and any bit it
+      // sets wrongly is above one it sets rightly.
+      if (((x - ONES) & ~x & HIGHS) != 0) {
+        break;
+      }
+    }
+    for (; i < limit; i++) {
+      if (buffer.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The number of times a byte occurs in part of a buffer.
+   * @param buffer
+   * @param b
+   * @param from
+   * @param to
+   * @return
+   */
+  public static int count(ByteBuffer buffer, byte b, int from, int to) {
+    long pattern = ONES * (b & 0xFF);
+    int count = 0;
+    int i = from;
+    for (; i + 8 <= to; i += 8) {
+      count += Long.bitCount(zeros(buffer.getLong(i) ^ pattern));
+    }
+    for (; i < to; i++) {
+      if (buffer.get(i) == b) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
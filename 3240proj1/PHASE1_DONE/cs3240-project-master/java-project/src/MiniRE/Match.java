@@ -0,0 +1,53 @@
+package MiniRE;
+
+/**
+ * A match as handed out by FindEngine.find.
+ */
+
+public class Match {
+  /** The path of the file the match is in */
+  private String file;
+
+  /** The line the match is on, the first line being 1 */
+  private long line;
+
+  /** Where the match starts in the file */
+  private long offset;
+
+  /** The text matched */
+  private String text;
+
+  /**
+   * Constructor method.
+   * @param file
+   * @param line
+   * @param offset
+   * @param text
+   */
+  public Match(String file, long line, long offset, String text) {
+    this.file = file;
+    this.line = line;
+    this.offset = offset;
+    this.text = text;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public long getLine() {
+    return line;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public String toString() {
+    return file + ":" + line + ":" + offset + ": " + text;
+  }
+}
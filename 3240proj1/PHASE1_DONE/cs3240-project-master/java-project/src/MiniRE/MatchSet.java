@@ -0,0 +1,568 @@
+package MiniRE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import Lexer.Utf8;
+
+/**
+ * The result of finds as the diff, union and inters operators of MiniRE see
+ * it: the distinct strings matched, each with where it was matched. The
+ * strings are interned and kept in String order; the places each string was
+ * matched are kept sorted by file and offset in primitive arrays shared by
+ * all strings, so the operators are merges of sorted runs and no Match
+ * object is made unless asked for. Immutable.
+ */
+
+public class MatchSet {
+  private static final int UNION = 0;
+  private static final int INTERS = 1;
+  private static final int DIFF = 2;
+
+  /** The distinct strings, interned, in String order */
+  private String[] texts;
+
+  /**
+   * Where the places of each string start in the arrays below, with the end
+   * of the last one at the end
+   */
+  private int[] starts;
+
+  /** The files matched in, in String order */
+  private String[] files;
+
+  /** For each place: the index in files of the file */
+  private int[] placeFiles;
+
+  /** For each place: the offset in the file */
+  private long[] offsets;
+
+  /** For each place: the line, the first line being 1 */
+  private long[] lines;
+
+  /**
+   * Constructor method, used by the Builder and the operators, which hand
+   * over their arrays.
+   */
+  private MatchSet(String[] texts, int[] starts, String[] files,
+      int[] placeFiles, long[] offsets, long[] lines) {
+    this.texts = texts;
+    this.starts = starts;
+    this.files = files;
+    this.placeFiles = placeFiles;
+    this.offsets = offsets;
+    this.lines = lines;
+  }
+
+  /**
+   * Finds the matches of an engine in files.
+   * @param engine
+   * @param files
+   * @return the matches as a set.
+   * @throws IOException
+   */
+  public static MatchSet find(FindEngine engine, List<File> files)
+      throws IOException {
+    Builder builder = new Builder();
+    for (File file : files) {
+      engine.find(file, builder);
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return the number of distinct strings, the # operator of MiniRE.
+   */
+  public int size() {
+    return texts.length;
+  }
+
+  /**
+   * @return the number of places matched, over all strings.
+   */
+  public int getMatchCount() {
+    return starts[texts.length];
+  }
+
+  /**
+   * @param index
+   *        From 0 to size() - 1.
+   * @return the string at an index.
+   */
+  public String getText(int index) {
+    return texts[index];
+  }
+
+  /**
+   * @return the strings, in String order.
+   */
+  public List<String> getTexts() {
+    return Collections.unmodifiableList(Arrays.asList(texts));
+  }
+
+  /**
+   * @param index
+   *        From 0 to size() - 1.
+   * @return the number of places the string at an index was matched.
+   */
+  public int getMatchCount(int index) {
+    return starts[index + 1] - starts[index];
+  }
+
+  /**
+   * Looks a string up by binary search.
+   * @param text
+   * @return its index, or -1 if it was not matched.
+   */
+  public int indexOf(String text) {
+    int found = Arrays.binarySearch(texts, text);
+    return found < 0 ? -1 : found;
+  }
+
+  /**
+   * The maxfreqstring function of MiniRE.
+   * @return the string matched in the most places, the first in String
+   *         order on a tie, or null if the set is empty.
+   */
+  public String maxFreqString() {
+    int best = -1, bestCount = 0;
+    for (int i = 0; i < texts.length; i++) {
+      int count = starts[i + 1] - starts[i];
+      if (count > bestCount) {
+        best = i;
+        bestCount = count;
+      }
+    }
+    return best < 0 ? null : texts[best];
+  }
+
+  /**
+   * @param index
+   *        From 0 to size() - 1.
+   * @return the places the string at an index was matched, by file and
+   *         offset.
+   */
+  public List<Match> getMatches(int index) {
+    List<Match> matches = new ArrayList<Match>();
+    for (int p = starts[index]; p < starts[index + 1]; p++) {
+      matches.add(new Match(files[placeFiles[p]], lines[p], offsets[p],
+          texts[index]));
+    }
+    return matches;
+  }
+
+  /**
+   * @return every match, by string, then file and offset.
+   */
+  public List<Match> getMatches() {
+    List<Match> matches = new ArrayList<Match>();
+    for (int i = 0; i < texts.length; i++) {
+      matches.addAll(getMatches(i));
+    }
+    return matches;
+  }
+
+  /**
+   * The union operator of MiniRE.
+   * @param other
+   * @return the strings of either set, with the places of both.
+   */
+  public MatchSet union(MatchSet other) {
+    return combine(this, other, UNION);
+  }
+
+  /**
+   * The inters operator of MiniRE.
+   * @param other
+   * @return the strings of both sets, with the places of both.
+   */
+  public MatchSet inters(MatchSet other) {
+    return combine(this, other, INTERS);
+  }
+
+  /**
+   * The diff operator of MiniRE.
+   * @param other
+   * @return the strings of this set that are not in the other, with their
+   *         places in this one.
+   */
+  public MatchSet diff(MatchSet other) {
+    return combine(this, other, DIFF);
+  }
+
+  /**
+   * Merges the strings of two sets, and the places of the strings in both.
+   */
+  private static MatchSet combine(MatchSet a, MatchSet b, int operator) {
+    // Merge the file tables; the new indexes keep the order of the old.
+    String[] files = new String[a.files.length + b.files.length];
+    int[] aFiles = new int[a.files.length];
+    int[] bFiles = new int[b.files.length];
+    int fileCount = 0;
+    for (int i = 0, j = 0; i < a.files.length || j < b.files.length;) {
+      int c = i == a.files.length ? 1 : j == b.files.length ? -1
+          : a.files[i].compareTo(b.files[j]);
+      if (c <= 0) {
+        aFiles[i] = fileCount;
+        files[fileCount] = a.files[i++];
+      }
+      if (c >= 0) {
+        bFiles[j] = fileCount;
+        files[fileCount] = b.files[j++];
+      }
+      fileCount++;
+    }
+
+    int places = operator == DIFF ? a.getMatchCount() : a.getMatchCount()
+        + b.getMatchCount();
+    int textBound = operator == DIFF ? a.size() : operator == INTERS ? Math
+        .min(a.size(), b.size()) : a.size() + b.size();
+    Merge out = new Merge(textBound, places);
+    for (int i = 0, j = 0; i < a.texts.length || j < b.texts.length;) {
+      int c = i == a.texts.length ? 1 : j == b.texts.length ? -1
+          : a.texts[i].compareTo(b.texts[j]);
+      if (c < 0) {
+        if (operator != INTERS) {
+          out.startText(a.texts[i]);
+          out.copy(a, aFiles, a.starts[i], a.starts[i + 1]);
+        }
+        i++;
+      } else if (c > 0) {
+        if (operator == UNION) {
+          out.startText(b.texts[j]);
+          out.copy(b, bFiles, b.starts[j], b.starts[j + 1]);
+        }
+        j++;
+      } else {
+        if (operator != DIFF) {
+          out.startText(a.texts[i]);
+          out.merge(a, aFiles, a.starts[i], a.starts[i + 1], b, bFiles,
+              b.starts[j], b.starts[j + 1]);
+        }
+        i++;
+        j++;
+      }
+    }
+    return out.build(Arrays.copyOf(files, fileCount));
+  }
+
+  /**
+   * The arrays of a set being made by an operator.
+   */
+  private static class Merge {
+    String[] texts;
+    int[] starts;
+    int textCount;
+    int[] placeFiles;
+    long[] offsets;
+    long[] lines;
+    int count;
+
+    Merge(int textBound, int placeBound) {
+      texts = new String[textBound];
+      starts = new int[textBound + 1];
+      placeFiles = new int[placeBound];
+      offsets = new long[placeBound];
+      lines = new long[placeBound];
+    }
+
+    void startText(String text) {
+      texts[textCount] = text;
+      starts[textCount++] = count;
+    }
+
+    /**
+     * Copies places from a set, with its file indexes mapped to new ones.
+     */
+    void copy(MatchSet from, int[] fileMap, int start, int end) {
+      for (int p = start; p < end; p++) {
+        put(fileMap[from.placeFiles[p]], from.offsets[p], from.lines[p]);
+      }
+    }
+
+    /**
+     * Merges the places of a string in two sets, keeping a place in both
+     * once.
+     */
+    void merge(MatchSet a, int[] aMap, int i, int aEnd, MatchSet b,
+        int[] bMap, int j, int bEnd) {
+      while (i < aEnd && j < bEnd) {
+        int aFile = aMap[a.placeFiles[i]], bFile = bMap[b.placeFiles[j]];
+        int c = aFile != bFile ? (aFile < bFile ? -1 : 1) : Long.compare(
+            a.offsets[i], b.offsets[j]);
+        if (c <= 0) {
+          put(aFile, a.offsets[i], a.lines[i]);
+          i++;
+          if (c == 0) {
+            j++;
+          }
+        } else {
+          put(bFile, b.offsets[j], b.lines[j]);
+          j++;
+        }
+      }
+      copy(a, aMap, i, aEnd);
+      copy(b, bMap, j, bEnd);
+    }
+
+    void put(int file, long offset, long line) {
+      placeFiles[count] = file;
+      offsets[count] = offset;
+      lines[count++] = line;
+    }
+
+    MatchSet build(String[] files) {
+      starts[textCount] = count;
+      return new MatchSet(Arrays.copyOf(texts, textCount), Arrays.copyOf(
+          starts, textCount + 1), files, Arrays.copyOf(placeFiles, count),
+          Arrays.copyOf(offsets, count), Arrays.copyOf(lines, count));
+    }
+  }
+
+  /**
+   * Collects the matches handed to it into a MatchSet. Match bytes are
+   * looked up in a hash table of the strings seen so far, so a string is
+   * only decoded the first time it is matched. Not thread safe.
+   */
+  public static class Builder implements MatchSink {
+    /** The bytes of each distinct string, by id */
+    private byte[][] keys = new byte[16][];
+
+    /** The number of distinct strings */
+    private int keyCount;
+
+    /** Open addressing table of string ids plus one, 0 being empty */
+    private int[] table = new int[32];
+
+    /** The files seen, by id */
+    private List<String> files = new ArrayList<String>();
+
+    /** The file of the last match, which is most likely the next one's */
+    private String lastFile;
+    private int lastFileId;
+
+    /** For each match: its string id, file id, offset and line */
+    private int[] matchKeys = new int[64];
+    private int[] matchFiles = new int[64];
+    private long[] matchOffsets = new long[64];
+    private long[] matchLines = new long[64];
+    private int count;
+
+    public void onMatch(String file, long line, long offset,
+        ByteBuffer buffer, int start, int length) {
+      if (count == matchKeys.length) {
+        int grown = count * 2;
+        matchKeys = Arrays.copyOf(matchKeys, grown);
+        matchFiles = Arrays.copyOf(matchFiles, grown);
+        matchOffsets = Arrays.copyOf(matchOffsets, grown);
+        matchLines = Arrays.copyOf(matchLines, grown);
+      }
+      matchKeys[count] = key(buffer, start, length);
+      matchFiles[count] = fileId(file);
+      matchOffsets[count] = offset;
+      matchLines[count++] = line;
+    }
+
+    /**
+     * @return the set of the matches so far.
+     */
+    public MatchSet build() {
+      // Rank the strings and the files in String order. Two byte strings
+      // can decode to the same String when they are not valid UTF-8, so
+      // they share a rank.
+      final String[] decoded = new String[keyCount];
+      for (int id = 0; id < keyCount; id++) {
+        decoded[id] = Utf8.decode(ByteBuffer.wrap(keys[id]), 0,
+            keys[id].length).intern();
+      }
+      int[] textRank = new int[keyCount];
+      String[] texts = rank(decoded, textRank);
+      int[] fileRank = new int[files.size()];
+      String[] sortedFiles = rank(files.toArray(new String[files.size()]),
+          fileRank);
+
+      // Counting sort of the matches by string, keeping their order.
+      int[] starts = new int[texts.length + 1];
+      for (int m = 0; m < count; m++) {
+        starts[textRank[matchKeys[m]] + 1]++;
+      }
+      for (int t = 0; t < texts.length; t++) {
+        starts[t + 1] += starts[t];
+      }
+      int[] next = Arrays.copyOf(starts, texts.length);
+      final int[] placeFiles = new int[count];
+      final long[] offsets = new long[count];
+      long[] lines = new long[count];
+      for (int m = 0; m < count; m++) {
+        int p = next[textRank[matchKeys[m]]]++;
+        placeFiles[p] = fileRank[matchFiles[m]];
+        offsets[p] = matchOffsets[m];
+        lines[p] = matchLines[m];
+      }
+
+      // Files searched in order of name and one by one are already sorted;
+      // otherwise sort the places of each string, then drop the places of a
+      // file searched twice.
+      Comparator<Integer> byPlace = new Comparator<Integer>() {
+        public int compare(Integer x, Integer y) {
+          if (placeFiles[x] != placeFiles[y]) {
+            return placeFiles[x] < placeFiles[y] ? -1 : 1;
+          }
+          return Long.compare(offsets[x], offsets[y]);
+        }
+      };
+      int kept = 0;
+      for (int t = 0; t < texts.length; t++) {
+        int start = starts[t], end = starts[t + 1];
+        boolean sorted = true;
+        for (int p = start + 1; p < end && sorted; p++) {
+          sorted = byPlace.compare(p - 1, p) <= 0;
+        }
+        if (!sorted) {
+          Integer[] order = new Integer[end - start];
+          for (int p = start; p < end; p++) {
+            order[p - start] = p;
+          }
+          Arrays.sort(order, byPlace);
+          int[] f = new int[order.length];
+          long[] o = new long[order.length], l = new long[order.length];
+          for (int k = 0; k < order.length; k++) {
+            f[k] = placeFiles[order[k]];
+            o[k] = offsets[order[k]];
+            l[k] = lines[order[k]];
+          }
+          System.arraycopy(f, 0, placeFiles, start, f.length);
+          System.arraycopy(o, 0, offsets, start, o.length);
+          System.arraycopy(l, 0, lines, start, l.length);
+        }
+        starts[t] = kept;
+        for (int p = start; p < end; p++) {
+          if (p > start && placeFiles[p] == placeFiles[p - 1]
+              && offsets[p] == offsets[p - 1]) {
+            continue;
+          }
+          placeFiles[kept] = placeFiles[p];
+          offsets[kept] = offsets[p];
+          lines[kept++] = lines[p];
+        }
+      }
+      starts[texts.length] = kept;
+      return new MatchSet(texts, starts, sortedFiles, Arrays.copyOf(
+          placeFiles, kept), Arrays.copyOf(offsets, kept), Arrays.copyOf(
+          lines, kept));
+    }
+
+    /**
+     * The id of the string of some bytes, added if it is new.
+     */
+    private int key(ByteBuffer buffer, int start, int length) {
+      int hash = 1;
+      for (int i = start; i < start + length; i++) {
+        hash = 31 * hash + buffer.get(i);
+      }
+      hash ^= hash >>> 16;
+      int mask = table.length - 1;
+      for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+        int id = table[slot] - 1;
+        if (id < 0) {
+          break;
+        }
+        if (equal(keys[id], buffer, start, length)) {
+          return id;
+        }
+      }
+      if (keyCount == keys.length) {
+        keys = Arrays.copyOf(keys, keyCount * 2);
+      }
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(start + i);
+      }
+      keys[keyCount++] = bytes;
+      if (keyCount * 2 > table.length) {
+        rehash();
+      } else {
+        insert(table, hash, keyCount - 1);
+      }
+      return keyCount - 1;
+    }
+
+    private void rehash() {
+      int[] grown = new int[table.length * 2];
+      for (int id = 0; id < keyCount; id++) {
+        int hash = 1;
+        for (byte b : keys[id]) {
+          hash = 31 * hash + b;
+        }
+        insert(grown, hash ^ (hash >>> 16), id);
+      }
+      table = grown;
+    }
+
+    private static void insert(int[] table, int hash, int id) {
+      int mask = table.length - 1;
+      int slot = hash & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = id + 1;
+    }
+
+    private static boolean equal(byte[] key, ByteBuffer buffer, int start,
+        int length) {
+      if (key.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (key[i] != buffer.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int fileId(String file) {
+      if (file != lastFile) {
+        int id = files.indexOf(file);
+        if (id < 0) {
+          id = files.size();
+          files.add(file);
+        }
+        lastFile = file;
+        lastFileId = id;
+      }
+      return lastFileId;
+    }
+
+    /**
+     * Sorts strings, dropping repeats, and gives the rank of each in the
+     * result.
+     */
+    private static String[] rank(final String[] strings, int[] ranks) {
+      Integer[] order = new Integer[strings.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        public int compare(Integer x, Integer y) {
+          return strings[x].compareTo(strings[y]);
+        }
+      });
+      List<String> sorted = new ArrayList<String>();
+      for (int i = 0; i < order.length; i++) {
+        String s = strings[order[i]];
+        if (sorted.isEmpty() || !sorted.get(sorted.size() - 1).equals(s)) {
+          sorted.add(s);
+        }
+        ranks[order[i]] = sorted.size() - 1;
+      }
+      return sorted.toArray(new String[sorted.size()]);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package MiniRE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the matches found by a FindEngine. The match bytes are only valid
+ * for the duration of the call, as the buffer gets unmapped.
+ */
+
+public interface MatchSink {
+  /**
+   * Called once per match, in file order.
+   * @param file
+   *        The path of the file searched.
+   * @param line
+   *        The line the match is on, the first line being 1.
+   * @param offset
+   *        The offset of the match in the file.
+   * @param buffer
+   *        The buffer holding the match bytes.
+   * @param start
+   *        The index of the first match byte in buffer.
+   * @param length
+   *        The number of match bytes.
+   * @throws IOException
+   */
+  void onMatch(String file, long line, long offset, ByteBuffer buffer,
+      int start, int length) throws IOException;
+}
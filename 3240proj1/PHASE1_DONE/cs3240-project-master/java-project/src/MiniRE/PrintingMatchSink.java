@@ -0,0 +1,55 @@
+package MiniRE;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Prints each match as its file, line and offset followed by its text, as in
+ * "input.txt:3:41: text", on a line of its own. The text is copied as is.
+ */
+
+public class PrintingMatchSink implements MatchSink {
+  /** Where the lines go */
+  private OutputStream out;
+
+  /** The last file printed and its UTF-8 bytes */
+  private String file;
+  private byte[] fileBytes;
+
+  /**
+   * Constructor method.
+   * @param out
+   *        Where the lines go. Should be buffered.
+   */
+  public PrintingMatchSink(OutputStream out) {
+    this.out = out;
+  }
+
+  public void onMatch(String file, long line, long offset, ByteBuffer buffer,
+      int start, int length) throws IOException {
+    if (!file.equals(this.file)) {
+      this.file = file;
+      fileBytes = file.getBytes(Charset.forName("UTF-8"));
+    }
+    out.write(fileBytes);
+    out.write(':');
+    writeNumber(line);
+    out.write(':');
+    writeNumber(offset);
+    out.write(':');
+    out.write(' ');
+    for (int i = 0; i < length; i++) {
+      out.write(buffer.get(start + i));
+    }
+    out.write('\n');
+  }
+
+  private void writeNumber(long n) throws IOException {
+    if (n >= 10) {
+      writeNumber(n / 10);
+    }
+    out.write((int) ('0' + n % 10));
+  }
+}
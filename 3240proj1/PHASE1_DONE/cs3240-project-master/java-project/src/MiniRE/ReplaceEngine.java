@@ -0,0 +1,281 @@
+package MiniRE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Runs the replace and recursivereplace statements of MiniRE: writes a copy
+ * of a file with every match of a regex replaced by a string. The copy is
+ * streamed: a FindEngine reads the source through its mappings, the text
+ * between matches is copied with FileChannel.transferTo when it is long and
+ * through one reused batch otherwise, and replacements go into the batch, so
+ * the memory used does not depend on the size of the file. The destination
+ * may be the source; the copy is written next to it and then moved over it.
+ * Not thread safe: use one engine per thread.
+ */
+
+public class ReplaceEngine {
+  /** The most passes recursiveReplace() makes by default */
+  public static final int DEFAULT_MAX_PASSES = 100;
+
+  /** The size of the batch */
+  private static final int BATCH_SIZE = 1 << 20;
+
+  /** The shortest text between matches worth a transferTo */
+  private static final int TRANSFER_SIZE = 1 << 16;
+
+  /** Finds the matches to replace */
+  private FindEngine engine;
+
+  /** What a match is replaced with */
+  private byte[] replacement;
+
+  /**
+   * Constructor method.
+   * @param regex
+   *        The regex to replace, in the syntax of a spec.
+   * @param replacement
+   *        What to replace its matches with.
+   * @throws IllegalArgumentException
+   *         if the regex does not parse.
+   */
+  public ReplaceEngine(String regex, String replacement) {
+    this(new FindEngine(regex), replacement);
+  }
+
+  /**
+   * Constructor method.
+   * @param engine
+   *        Finds the matches to replace.
+   * @param replacement
+   *        What to replace them with.
+   */
+  public ReplaceEngine(FindEngine engine, String replacement) {
+    this.engine = engine;
+    this.replacement = replacement.getBytes(Charset.forName("UTF-8"));
+  }
+
+  /**
+   * Writes a copy of a file with every match replaced.
+   * @param source
+   * @param destination
+   *        May be the source.
+   * @return the number of matches replaced.
+   * @throws IOException
+   */
+  public long replace(File source, File destination) throws IOException {
+    File copy = temporaryNextTo(destination);
+    try {
+      long replaced = replace(source, copy.toPath());
+      Files.move(copy.toPath(), destination.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+      return replaced;
+    } finally {
+      copy.delete();
+    }
+  }
+
+  /**
+   * Replaces matches over and over until there are none left, with at most
+   * DEFAULT_MAX_PASSES passes.
+   * @param source
+   * @param destination
+   *        May be the source.
+   * @return the number of passes that replaced something.
+   * @throws IOException
+   * @throws IllegalArgumentException
+   *         if the replacement itself has a match, which would never go.
+   * @throws IllegalStateException
+   *         if matches are left after the last pass.
+   */
+  public int recursiveReplace(File source, File destination)
+      throws IOException {
+    return recursiveReplace(source, destination, DEFAULT_MAX_PASSES);
+  }
+
+  /**
+   * Replaces matches over and over until there are none left. Each pass
+   * reads the output of the previous one, taking turns between two
+   * temporary files.
+   * @param source
+   * @param destination
+   *        May be the source.
+   * @param maxPasses
+   *        The most passes to make.
+   * @return the number of passes that replaced something.
+   * @throws IOException
+   * @throws IllegalArgumentException
+   *         if the replacement itself has a match, which would never go.
+   * @throws IllegalStateException
+   *         if matches are left after the last pass.
+   */
+  public int recursiveReplace(File source, File destination, int maxPasses)
+      throws IOException {
+    // Every pass that replaces something writes the replacement, so one with
+    // a match of its own would be there after any number of passes.
+    CountingSink inReplacement = new CountingSink();
+    engine.find("replacement", ByteBuffer.wrap(replacement),
+        replacement.length, inReplacement);
+    if (inReplacement.count > 0) {
+      throw new IllegalArgumentException(
+          "The replacement has a match of its own, so recursivereplace "
+              + "would never end");
+    }
+    File[] passes = { temporaryNextTo(destination),
+        temporaryNextTo(destination) };
+    try {
+      File input = source;
+      int pass = 0;
+      while (true) {
+        File output = passes[pass % 2];
+        if (replace(input, output.toPath()) == 0) {
+          // Nothing was replaced, so the output is the final text.
+          Files.move(output.toPath(), destination.toPath(),
+              StandardCopyOption.REPLACE_EXISTING);
+          return pass;
+        }
+        input = output;
+        if (++pass == maxPasses) {
+          throw new IllegalStateException("Matches were left after "
+              + maxPasses + " passes of recursivereplace");
+        }
+      }
+    } finally {
+      passes[0].delete();
+      passes[1].delete();
+    }
+  }
+
+  /**
+   * Writes a copy of a file with every match replaced.
+   * @return the number of matches replaced.
+   */
+  private long replace(File source, Path destination) throws IOException {
+    FileChannel in = FileChannel.open(source.toPath(),
+        StandardOpenOption.READ);
+    FileChannel out = FileChannel.open(destination, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      ReplacingSink sink = new ReplacingSink(in, out);
+      engine.find(source, sink);
+      sink.finish(in.size());
+      return sink.replaced;
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+
+  /**
+   * A new empty file in the directory of another, so that it can be moved
+   * over it.
+   */
+  private static File temporaryNextTo(File file) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+    return File.createTempFile("replace", ".tmp", directory);
+  }
+
+  /**
+   * Counts matches.
+   */
+  private static class CountingSink implements MatchSink {
+    long count;
+
+    public void onMatch(String file, long line, long offset,
+        ByteBuffer buffer, int start, int length) {
+      count++;
+    }
+  }
+
+  /**
+   * Writes the source with its matches replaced, as they are found.
+   */
+  private class ReplacingSink implements MatchSink {
+    private FileChannel in;
+    private FileChannel out;
+
+    /** The batch being written */
+    private byte[] pending = new byte[BATCH_SIZE];
+
+    /** The number of bytes in the batch */
+    private int count;
+
+    /** Where in the source the text not yet copied starts */
+    private long copied;
+
+    /** The number of matches replaced */
+    long replaced;
+
+    ReplacingSink(FileChannel in, FileChannel out) {
+      this.in = in;
+      this.out = out;
+    }
+
+    public void onMatch(String file, long line, long offset,
+        ByteBuffer buffer, int start, int length) throws IOException {
+      long gap = offset - copied;
+      if (gap < TRANSFER_SIZE && gap <= start) {
+        // The text before the match is in the same mapping; copy it.
+        reserve((int) gap);
+        for (int i = start - (int) gap; i < start; i++) {
+          pending[count++] = buffer.get(i);
+        }
+        copied = offset;
+      } else {
+        transfer(offset);
+      }
+      reserve(replacement.length);
+      System.arraycopy(replacement, 0, pending, count, replacement.length);
+      count += replacement.length;
+      copied = offset + length;
+      replaced++;
+    }
+
+    /**
+     * Copies the rest of the source and writes out the batch.
+     */
+    void finish(long size) throws IOException {
+      transfer(size);
+      write();
+    }
+
+    /**
+     * Copies the source up to an offset straight from channel to channel.
+     */
+    private void transfer(long to) throws IOException {
+      write();
+      while (copied < to) {
+        long moved = in.transferTo(copied, to - copied, out);
+        if (moved <= 0) {
+          throw new IOException("The source ended at " + copied
+              + " while being copied");
+        }
+        copied += moved;
+      }
+    }
+
+    private void reserve(int bytes) throws IOException {
+      if (count + bytes > pending.length) {
+        write();
+        if (bytes > pending.length) {
+          pending = new byte[bytes];
+        }
+      }
+    }
+
+    private void write() throws IOException {
+      ByteBuffer batch = ByteBuffer.wrap(pending, 0, count);
+      while (batch.hasRemaining()) {
+        out.write(batch);
+      }
+      count = 0;
+    }
+  }
+}
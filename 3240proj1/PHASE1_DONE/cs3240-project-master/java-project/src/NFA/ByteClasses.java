@@ -0,0 +1,165 @@
+package NFA;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Equivalence classes of the 256 byte values. Two bytes share a class when
+ * every NFA transition treats them alike, so a DFA table only needs one
+ * column per class instead of one per byte.
+ */
+
+public class ByteClasses {
+  /** The class of each byte value */
+  private byte[] classMap;
+
+  /** The number of classes */
+  private int count;
+
+  /**
+   * Constructor method.
+   * @param classMap
+   *        The class of each of the 256 byte values.
+   * @param count
+   *        The number of classes.
+   */
+  public ByteClasses(byte[] classMap, int count) {
+    this.classMap = classMap;
+    this.count = count;
+  }
+
+  /**
+   * Every byte in a class of its own.
+   * @return
+   */
+  public static ByteClasses identity() {
+    byte[] classMap = new byte[256];
+    for (int i = 0; i < 256; i++) {
+      classMap[i] = (byte) i;
+    }
+    return new ByteClasses(classMap, 256);
+  }
+
+  /**
+   * Computes the classes for an NFA.
+   * @param n
+   * @return
+   */
+  public static ByteClasses fromNFA(NFA n) {
+    return fromNFA(new DenseNFA(n));
+  }
+
+  /**
+   * Computes the classes for an NFA. For each state, the characters leading
+   * to the same target form one set, and the classes are the coarsest
+   * partition of the bytes that does not cut any of those sets.
+   * @param nfa
+   * @return
+   */
+  public static ByteClasses fromNFA(DenseNFA nfa) {
+    Set<CharSet> sets = new HashSet<CharSet>();
+    for (int s = 0; s < nfa.size(); s++) {
+      char[] symbols = nfa.getSymbols(s);
+      int[] targets = nfa.getTargets(s);
+      boolean[] done = new boolean[symbols.length];
+      for (int i = 0; i < symbols.length; i++) {
+        if (done[i] || symbols[i] >= 256) {
+          continue;
+        }
+        long[] bits = new long[4];
+        for (int j = i; j < symbols.length; j++) {
+          if (targets[j] == targets[i] && symbols[j] < 256) {
+            bits[symbols[j] >>> 6] |= 1L << symbols[j];
+            done[j] = true;
+          }
+        }
+        sets.add(new CharSet(bits));
+      }
+    }
+
+    int[] classOf = new int[256];
+    int count = 1;
+    int[] remap = new int[512];
+    for (CharSet set : sets) {
+      Arrays.fill(remap, 0, count, -1);
+      int next = count;
+      for (int c = 0; c < 256; c++) {
+        if ((set.bits[c >>> 6] & (1L << c)) != 0) {
+          int old = classOf[c];
+          if (remap[old] == -1) {
+            remap[old] = next++;
+          }
+          classOf[c] = remap[old];
+        }
+      }
+      count = renumber(classOf, remap);
+    }
+    byte[] classMap = new byte[256];
+    for (int c = 0; c < 256; c++) {
+      classMap[c] = (byte) classOf[c];
+    }
+    return new ByteClasses(classMap, count);
+  }
+
+  /**
+   * Renumbers classes densely in order of first appearance.
+   * @return the number of classes.
+   */
+  private static int renumber(int[] classOf, int[] scratch) {
+    Arrays.fill(scratch, -1);
+    int count = 0;
+    for (int c = 0; c < 256; c++) {
+      if (scratch[classOf[c]] == -1) {
+        scratch[classOf[c]] = count++;
+      }
+      classOf[c] = scratch[classOf[c]];
+    }
+    return count;
+  }
+
+  /**
+   * The class of each of the 256 byte values, to be read with & 0xFF.
+   * Shared, do not modify.
+   * @return
+   */
+  public byte[] getClassMap() {
+    return classMap;
+  }
+
+  /**
+   * The class of a character.
+   * @param c
+   * @return
+   */
+  public int classOf(int c) {
+    return classMap[c] & 0xFF;
+  }
+
+  /**
+   * The number of classes.
+   * @return
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * A 256-bit set of characters, usable as a hash key.
+   */
+  private static final class CharSet {
+    private final long[] bits;
+
+    CharSet(long[] bits) {
+      this.bits = bits;
+    }
+
+    public int hashCode() {
+      return Arrays.hashCode(bits);
+    }
+
+    public boolean equals(Object o) {
+      return o instanceof CharSet && Arrays.equals(((CharSet) o).bits, bits);
+    }
+  }
+}
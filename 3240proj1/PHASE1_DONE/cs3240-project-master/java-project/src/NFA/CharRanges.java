@@ -0,0 +1,265 @@
+package NFA;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of characters stored as sorted, disjoint ranges, so that
+ * a class such as [ -~] costs one range instead of 95 boxed Characters. It
+ * is a Set<Character> for code that iterates over or compares classes, but
+ * building, combining and looking up sets works on the ranges only.
+ */
+
+public class CharRanges extends AbstractSet<Character> {
+  /** The set with no characters */
+  public static final CharRanges EMPTY = new CharRanges(new int[0]);
+
+  /**
+   * The ranges as [start, end) pairs of char values, sorted, with no two
+   * touching
+   */
+  private final int[] bounds;
+
+  /**
+   * Constructor method.
+   * @param bounds
+   *        Sorted, disjoint and non adjacent [start, end) pairs. Not copied.
+   */
+  private CharRanges(int[] bounds) {
+    this.bounds = bounds;
+  }
+
+  /**
+   * The set of one character.
+   * @param c
+   * @return
+   */
+  public static CharRanges of(char c) {
+    return new CharRanges(new int[] { c, c + 1 });
+  }
+
+  /**
+   * The set of the characters from first to last, both included, in either
+   * order.
+   * @param first
+   * @param last
+   * @return
+   */
+  public static CharRanges range(char first, char last) {
+    if (first > last) {
+      return new CharRanges(new int[] { last, first + 1 });
+    }
+    return new CharRanges(new int[] { first, last + 1 });
+  }
+
+  /**
+   * The characters in this set or the other one.
+   * @param other
+   * @return
+   */
+  public CharRanges union(CharRanges other) {
+    if (other.bounds.length == 0) {
+      return this;
+    }
+    if (bounds.length == 0) {
+      return other;
+    }
+    int[] merged = new int[bounds.length + other.bounds.length];
+    int count = 0;
+    int i = 0, j = 0;
+    while (i < bounds.length || j < other.bounds.length) {
+      int start, end;
+      if (j >= other.bounds.length
+          || (i < bounds.length && bounds[i] <= other.bounds[j])) {
+        start = bounds[i];
+        end = bounds[i + 1];
+        i += 2;
+      } else {
+        start = other.bounds[j];
+        end = other.bounds[j + 1];
+        j += 2;
+      }
+      if (count > 0 && start <= merged[count - 1]) {
+        merged[count - 1] = Math.max(merged[count - 1], end);
+      } else {
+        merged[count++] = start;
+        merged[count++] = end;
+      }
+    }
+    return new CharRanges(Arrays.copyOf(merged, count));
+  }
+
+  /**
+   * The characters in this set but not in the other one.
+   * @param other
+   * @return
+   */
+  public CharRanges minus(CharRanges other) {
+    if (other.bounds.length == 0 || bounds.length == 0) {
+      return this;
+    }
+    int[] result = new int[bounds.length + other.bounds.length];
+    int count = 0;
+    int j = 0;
+    for (int i = 0; i < bounds.length; i += 2) {
+      int start = bounds[i];
+      int end = bounds[i + 1];
+      while (j < other.bounds.length && other.bounds[j + 1] <= start) {
+        j += 2;
+      }
+      int k = j;
+      while (start < end) {
+        if (k >= other.bounds.length || other.bounds[k] >= end) {
+          result[count++] = start;
+          result[count++] = end;
+          break;
+        }
+        if (other.bounds[k] > start) {
+          result[count++] = start;
+          result[count++] = other.bounds[k];
+        }
+        start = Math.max(start, other.bounds[k + 1]);
+        k += 2;
+      }
+    }
+    return new CharRanges(Arrays.copyOf(result, count));
+  }
+
+  /**
+   * Whether this set and the other one have a character in common.
+   * @param other
+   * @return
+   */
+  public boolean intersects(CharRanges other) {
+    int i = 0, j = 0;
+    while (i < bounds.length && j < other.bounds.length) {
+      if (bounds[i + 1] <= other.bounds[j]) {
+        i += 2;
+      } else if (other.bounds[j + 1] <= bounds[i]) {
+        j += 2;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Whether a character is in this set, by binary search over the ranges.
+   * @param c
+   * @return
+   */
+  public boolean contains(char c) {
+    int low = 0, high = bounds.length / 2 - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (c < bounds[2 * middle]) {
+        high = middle - 1;
+      } else if (c >= bounds[2 * middle + 1]) {
+        low = middle + 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean contains(Object o) {
+    return o instanceof Character && contains(((Character) o).charValue());
+  }
+
+  /**
+   * The number of ranges.
+   * @return
+   */
+  public int rangeCount() {
+    return bounds.length / 2;
+  }
+
+  /**
+   * The first character of a range.
+   * @param i
+   * @return
+   */
+  public char rangeStart(int i) {
+    return (char) bounds[2 * i];
+  }
+
+  /**
+   * The last character of a range.
+   * @param i
+   * @return
+   */
+  public char rangeEnd(int i) {
+    return (char) (bounds[2 * i + 1] - 1);
+  }
+
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < bounds.length; i += 2) {
+      size += bounds[i + 1] - bounds[i];
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return bounds.length == 0;
+  }
+
+  public Iterator<Character> iterator() {
+    return new Iterator<Character>() {
+      private int range = 0;
+      private int next = bounds.length > 0 ? bounds[0] : 0;
+
+      public boolean hasNext() {
+        return range < bounds.length;
+      }
+
+      public Character next() {
+        if (range >= bounds.length) {
+          throw new NoSuchElementException();
+        }
+        char c = (char) next++;
+        if (next == bounds[range + 1]) {
+          range += 2;
+          if (range < bounds.length) {
+            next = bounds[range];
+          }
+        }
+        return c;
+      }
+    };
+  }
+
+  public boolean equals(Object o) {
+    if (o instanceof CharRanges) {
+      return Arrays.equals(bounds, ((CharRanges) o).bounds);
+    }
+    return super.equals(o);
+  }
+
+  /**
+   * The sum of the character values, as Set requires, computed per range.
+   */
+  public int hashCode() {
+    long hash = 0;
+    for (int i = 0; i < bounds.length; i += 2) {
+      hash += ((long) bounds[i] + bounds[i + 1] - 1)
+          * (bounds[i + 1] - bounds[i]) / 2;
+    }
+    return (int) hash;
+  }
+
+  public String toString() {
+    StringBuilder s = new StringBuilder("[");
+    for (int i = 0; i < bounds.length; i += 2) {
+      s.append((char) bounds[i]);
+      if (bounds[i + 1] - bounds[i] > 1) {
+        s.append('-').append((char) (bounds[i + 1] - 1));
+      }
+    }
+    return s.append(']').toString();
+  }
+}
@@ -0,0 +1,292 @@
+package NFA;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A densely numbered, array based view of an NFA. Every state reachable from
+ * the start state gets an index in [0, size) so that sets of states can be
+ * represented as long[] bitsets, and the epsilon closure of every state is
+ * computed once up front.
+ */
+
+public class DenseNFA {
+  /** The NFAStates indexed by their dense number */
+  private NFAState[] states;
+
+  /** The index of the start state */
+  private int startState;
+
+  /** Sorted transition characters per state */
+  private char[][] symbols;
+
+  /** Transition targets per state, parallel to symbols */
+  private int[][] targets;
+
+  /** Epsilon successors per state */
+  private int[][] epsilons;
+
+  /** Memoized epsilon closure per state, as a sorted list of indices */
+  private int[][] closures;
+
+  /**
+   * Constructor method. Numbers all the states reachable from the start state
+   * of the NFA and precomputes their epsilon closures.
+   * @param n
+   *        The NFA to index.
+   */
+  public DenseNFA(NFA n) {
+    Map<NFAState, Integer> numbering = new IdentityHashMap<NFAState, Integer>();
+    List<NFAState> order = new ArrayList<NFAState>();
+    numbering.put(n.getStartState(), 0);
+    order.add(n.getStartState());
+    for (int i = 0; i < order.size(); i++) {
+      NFAState current = order.get(i);
+      for (NFAState next : current.getEpsilonTransitions()) {
+        number(next, numbering, order);
+      }
+      for (NFAState next : current.getTransition().values()) {
+        number(next, numbering, order);
+      }
+      for (List<NFAState> more : current.getMoreTransitions().values()) {
+        for (NFAState next : more) {
+          number(next, numbering, order);
+        }
+      }
+      for (NFAState next : current.getRangeTransitions().keySet()) {
+        number(next, numbering, order);
+      }
+    }
+    int size = order.size();
+    states = order.toArray(new NFAState[size]);
+    startState = 0;
+    symbols = new char[size][];
+    targets = new int[size][];
+    epsilons = new int[size][];
+    for (int i = 0; i < size; i++) {
+      NFAState current = states[i];
+      int[] eps = new int[current.getEpsilonTransitions().size()];
+      int e = 0;
+      for (NFAState next : current.getEpsilonTransitions()) {
+        eps[e++] = numbering.get(next);
+      }
+      epsilons[i] = eps;
+      int count = current.getTransition().size();
+      for (List<NFAState> more : current.getMoreTransitions().values()) {
+        count += more.size();
+      }
+      for (CharRanges range : current.getRangeTransitions().values()) {
+        count += range.size();
+      }
+      long[] packed = new long[count];
+      int t = 0;
+      for (Entry<Character, NFAState> transition : current.getTransition()
+          .entrySet()) {
+        packed[t++] = ((long) transition.getKey().charValue() << 32)
+            | numbering.get(transition.getValue());
+      }
+      for (Entry<Character, List<NFAState>> more : current
+          .getMoreTransitions().entrySet()) {
+        for (NFAState next : more.getValue()) {
+          packed[t++] = ((long) more.getKey().charValue() << 32)
+              | numbering.get(next);
+        }
+      }
+      for (Entry<NFAState, CharRanges> range : current.getRangeTransitions()
+          .entrySet()) {
+        long target = numbering.get(range.getKey());
+        CharRanges characters = range.getValue();
+        for (int r = 0; r < characters.rangeCount(); r++) {
+          for (int c = characters.rangeStart(r); c <= characters.rangeEnd(r); c++) {
+            packed[t++] = ((long) c << 32) | target;
+          }
+        }
+      }
+      Arrays.sort(packed);
+      symbols[i] = new char[packed.length];
+      targets[i] = new int[packed.length];
+      for (int j = 0; j < packed.length; j++) {
+        symbols[i][j] = (char) (packed[j] >>> 32);
+        targets[i][j] = (int) packed[j];
+      }
+    }
+    computeClosures();
+  }
+
+  private static void number(NFAState s, Map<NFAState, Integer> numbering,
+      List<NFAState> order) {
+    if (s != null && !numbering.containsKey(s)) {
+      numbering.put(s, order.size());
+      order.add(s);
+    }
+  }
+
+  /**
+   * Computes the epsilon closure of every state. The epsilon graph is split
+   * into strongly connected components (iterative Tarjan) which come out in
+   * reverse topological order, so the closure of a component is its members
+   * plus the already computed closures of its successors.
+   */
+  private void computeClosures() {
+    int size = states.length;
+    closures = new int[size][];
+    int[] index = new int[size];
+    int[] lowLink = new int[size];
+    boolean[] onStack = new boolean[size];
+    Arrays.fill(index, -1);
+    int[] sccStack = new int[size];
+    int sccTop = 0;
+    int[] callStack = new int[size];
+    int[] edgeStack = new int[size];
+    int[] mark = new int[size];
+    int stamp = 0;
+    int nextIndex = 0;
+    int[] scratch = new int[size];
+
+    for (int root = 0; root < size; root++) {
+      if (index[root] != -1) {
+        continue;
+      }
+      int callTop = 0;
+      callStack[callTop] = root;
+      edgeStack[callTop] = 0;
+      index[root] = lowLink[root] = nextIndex++;
+      sccStack[sccTop++] = root;
+      onStack[root] = true;
+      while (callTop >= 0) {
+        int v = callStack[callTop];
+        if (edgeStack[callTop] < epsilons[v].length) {
+          int w = epsilons[v][edgeStack[callTop]++];
+          if (index[w] == -1) {
+            index[w] = lowLink[w] = nextIndex++;
+            sccStack[sccTop++] = w;
+            onStack[w] = true;
+            callTop++;
+            callStack[callTop] = w;
+            edgeStack[callTop] = 0;
+          } else if (onStack[w]) {
+            lowLink[v] = Math.min(lowLink[v], index[w]);
+          }
+          continue;
+        }
+        callTop--;
+        if (callTop >= 0) {
+          int parent = callStack[callTop];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+        }
+        if (lowLink[v] != index[v]) {
+          continue;
+        }
+        // v is the root of a component; pop it and build its closure.
+        stamp++;
+        int count = 0;
+        int bottom = sccTop;
+        do {
+          bottom--;
+        } while (sccStack[bottom] != v);
+        for (int i = bottom; i < sccTop; i++) {
+          int member = sccStack[i];
+          onStack[member] = false;
+          mark[member] = stamp;
+          scratch[count++] = member;
+        }
+        for (int i = bottom; i < sccTop; i++) {
+          for (int w : epsilons[sccStack[i]]) {
+            if (closures[w] == null) {
+              continue; // same component
+            }
+            for (int x : closures[w]) {
+              if (mark[x] != stamp) {
+                mark[x] = stamp;
+                scratch[count++] = x;
+              }
+            }
+          }
+        }
+        int[] closure = Arrays.copyOf(scratch, count);
+        Arrays.sort(closure);
+        for (int i = bottom; i < sccTop; i++) {
+          closures[sccStack[i]] = closure;
+        }
+        sccTop = bottom;
+      }
+    }
+  }
+
+  /**
+   * The number of states in this NFA.
+   * @return
+   */
+  public int size() {
+    return states.length;
+  }
+
+  /**
+   * The index of the start state.
+   * @return
+   */
+  public int getStartState() {
+    return startState;
+  }
+
+  /**
+   * The NFAState with the given index.
+   * @param i
+   * @return
+   */
+  public NFAState getState(int i) {
+    return states[i];
+  }
+
+  /**
+   * The sorted transition characters of a state. A character appears once
+   * per target.
+   * @param i
+   * @return
+   */
+  public char[] getSymbols(int i) {
+    return symbols[i];
+  }
+
+  /**
+   * The transition targets of a state, parallel to getSymbols(i).
+   * @param i
+   * @return
+   */
+  public int[] getTargets(int i) {
+    return targets[i];
+  }
+
+  /**
+   * The epsilon closure of a state, as a sorted array of indices. The
+   * returned array is shared and must not be modified.
+   * @param i
+   * @return
+   */
+  public int[] getClosure(int i) {
+    return closures[i];
+  }
+
+  /**
+   * The number of longs needed for a bitset over the states of this NFA.
+   * @return
+   */
+  public int words() {
+    return (states.length + 63) >>> 6;
+  }
+
+  /**
+   * Adds the epsilon closure of state i to the given bitset.
+   * @param i
+   * @param bits
+   */
+  public void addClosure(int i, long[] bits) {
+    for (int x : closures[i]) {
+      bits[x >>> 6] |= 1L << x;
+    }
+  }
+}
@@ -7,9 +7,19 @@ import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
+import Lexer.LexerBuilder;
+import Parser.RegexCursorParser;
 import Parser.RegexParser;
 import Parser.RegexParserInput;
 import Parser.RegexParserOutput;
+import Regex.Accept;
+import Regex.Concat;
+import Regex.GlushkovConstruction;
+import Regex.RegexNode;
+import Regex.Simplifier;
+import Regex.ThompsonConstruction;
+import Regex.Union;
+import Regex.Utf8Encoder;
 
 /**
  * This class represents an NFA. This class also provides methods for the
@@ -20,15 +30,32 @@ public class NFA {
   /** The start and the end state */
   private NFAState startState, endState;
 
+  /** The build this NFA belongs to */
+  private LexerBuilder builder;
+
   /**
    * Constructor method.
+   * @param builder
+   *        The build this NFA belongs to.
    */
-  public NFA() {
-    startState = new NFAState();
-    endState = new NFAState();
+  public NFA(LexerBuilder builder) {
+    this.builder = builder;
+    startState = new NFAState(builder);
+    endState = new NFAState(builder);
     endState.setFinal(true);
-    NFAState.allStates.add(startState);
-    NFAState.allStates.add(endState);
+  }
+
+  /**
+   * Constructor method for an NFA whose states are already built.
+   * @param builder
+   *        The build this NFA belongs to.
+   * @param startState
+   * @param endState
+   */
+  public NFA(LexerBuilder builder, NFAState startState, NFAState endState) {
+    this.builder = builder;
+    this.startState = startState;
+    this.endState = endState;
   }
 
   public String toString() {
@@ -70,11 +97,31 @@ public class NFA {
   }
 
   /**
-   * Takes a file and generates and NFA out of it like a boss.
+   * Getter for the build this NFA belongs to.
+   * @return
+   */
+  public LexerBuilder getBuilder() {
+    return builder;
+  }
+
+  /**
+   * Takes a file and generates and NFA out of it like a boss, in a build of
+   * its own.
    * @param scanner
    * @return
    */
   public static NFA getNFAFromSpecFile(Scanner scanner) {
+    return getNFAFromSpecFile(scanner, new LexerBuilder());
+  }
+
+  /**
+   * Takes a file and generates and NFA out of it, defining its classes in the
+   * given build.
+   * @param scanner
+   * @param builder
+   * @return
+   */
+  public static NFA getNFAFromSpecFile(Scanner scanner, LexerBuilder builder) {
     while (scanner.hasNextLine()) {
       Scanner lineScanner = new Scanner(scanner.nextLine());
       if (!lineScanner.hasNext()) {
@@ -82,13 +129,21 @@ public class NFA {
       }
       String type = lineScanner.next();
       String regex = lineScanner.nextLine();
-      RegexParserOutput lol = RegexParser
-          .char_class(new RegexParserInput(regex));
-      RegexParser.defineClass(type, lol.getCharSet());
+      if (builder.isLegacyParser()) {
+        RegexParserOutput lol = RegexParser.char_class(new RegexParserInput(
+            regex, builder));
+        builder.defineClass(type, lol.getCharSet());
+      } else {
+        CharRanges characters = new RegexCursorParser(regex, builder)
+            .parseCharClass();
+        builder.defineClass(type, characters != null ? characters
+            : CharRanges.EMPTY);
+      }
 //      System.out.println(lol);
     }
 
     List<NFA> allNFAsSoFar = new ArrayList<NFA>();
+    List<RegexNode> rules = new ArrayList<RegexNode>();
     while (scanner.hasNextLine()) {
       Scanner regexLineScanner = new Scanner(scanner.nextLine());
       if (!regexLineScanner.hasNext()) {
@@ -97,17 +152,36 @@ public class NFA {
 
       String identifier = regexLineScanner.next();
       String regex = regexLineScanner.nextLine();
-      RegexParserOutput lol = RegexParser.reg_ex(regex);
+      if (!builder.isLegacyParser()) {
+        RegexNode rule = new RegexCursorParser(regex, builder).parse();
+        if (rule == null) {
+          System.err.println("Cant work with regex :" + regex);
+          System.exit(1);
+        }
+        rules.add(new Concat(rule, new Accept(identifier, rules.size())));
+        continue;
+      }
+      RegexParserOutput lol = RegexParser.reg_ex(regex, builder);
       if (!lol.isWorkedOrNot() || lol.wasEpsilonTransition()) {
         System.err.println("Cant work with regex :" + regex);
         System.exit(1);
       }
       NFA currentNFA = lol.getNFA();
       currentNFA.getEndState().setTokenTypeIfFinalState(identifier);
+      currentNFA.getEndState().setTokenPriority(allNFAsSoFar.size());
 //      System.out.println(identifier);
 //      System.out.println(lol.getNFA());
       allNFAsSoFar.add(currentNFA);
     }
+    if (!rules.isEmpty()) {
+      // All rules become one AST, so prefixes shared across rules (such as
+      // keywords) are factored out before any NFA state is made. Non ASCII
+      // characters turn into their UTF-8 bytes first, so the DFA reads bytes.
+      RegexNode all = Simplifier.simplify(Utf8Encoder.encode(new Union(
+          rules)));
+      return builder.isPositionAutomaton() ? GlushkovConstruction.toNFA(all,
+          builder) : ThompsonConstruction.toNFA(all, builder);
+    }
     NFA all = null;
     if (allNFAsSoFar.size() > 0) {
       all = allNFAsSoFar.get(0);
@@ -148,7 +222,7 @@ public class NFA {
    */
   public static NFA
       unionNFA(NFA nfa, NFA nfa2, boolean toClearFlags, boolean toJoinToEnd) {
-    NFA newNFA = new NFA();
+    NFA newNFA = new NFA(nfa.builder);
 
     NFAState start = newNFA.getStartState(), end = newNFA.getEndState();
 
@@ -172,7 +246,7 @@ public class NFA {
    * @return
    */
   public static NFA KleeneStar(NFA current) {
-    NFA updatedNFA = new NFA();
+    NFA updatedNFA = new NFA(current.builder);
 
     NFAState start = updatedNFA.getStartState();
     NFAState end = updatedNFA.getEndState();
@@ -190,11 +264,13 @@ public class NFA {
 
   /**
    * Creates a NFA for a given character
+   * @param builder
    * @param characterParsed
    * @return
    */
-  public static NFA getNFAFromCharacter(char characterParsed) {
-    NFA theNFA = new NFA();
+  public static NFA getNFAFromCharacter(LexerBuilder builder,
+      char characterParsed) {
+    NFA theNFA = new NFA(builder);
     theNFA.getStartState().getTransition()
         .put(characterParsed, theNFA.getEndState());
     return theNFA;
@@ -211,20 +287,15 @@ public class NFA {
       return rv;
     }
     rv.add(d);
-    boolean toContinue = true;
-    while (true) {
-      if (!toContinue) {
-        break;
-      }
-      HashSet<NFAState> temp = new HashSet<NFAState>();
-
-      for (NFAState n : rv) {
-        if (n == null) {
-          continue;
+    List<NFAState> toVisit = new ArrayList<NFAState>();
+    toVisit.add(d);
+    while (!toVisit.isEmpty()) {
+      NFAState n = toVisit.remove(toVisit.size() - 1);
+      for (NFAState next : n.getEpsilonTransitions()) {
+        if (next != null && rv.add(next)) {
+          toVisit.add(next);
         }
-        temp.addAll(n.getEpsilonTransitions());
       }
-      toContinue = rv.addAll(temp);
     }
     return rv;
   }
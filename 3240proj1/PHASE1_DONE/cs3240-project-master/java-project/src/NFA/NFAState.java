@@ -3,10 +3,16 @@ package NFA;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import Lexer.LexerBuilder;
+
 /**
  * This class represents a NFA state.
  * @author Surenkumar Nihalani
@@ -22,25 +28,36 @@ public class NFAState {
   /** Transition map */
   private HashMap<Character, NFAState> transition;
 
+  /**
+   * Further targets of characters that already have one in the transition
+   * map; null until a character gets a second target
+   */
+  private HashMap<Character, List<NFAState>> moreTransitions;
+
+  /** Transitions labeled with character ranges; null until one is added */
+  private LinkedHashMap<NFAState, CharRanges> rangeTransitions;
+
   /** whether is state is an accepting one or not */
   private boolean isFinal;
 
-  /** The next state number to be taken */
-  private static int nextStateNumber = 0;
-
   /** The identifier if this is a final state or not */
   private String tokenTypeIfFinalState;
 
-  /** All the NFAStates ever created */
-  public static ArrayList<NFAState> allStates = new ArrayList<NFAState>();
+  /**
+   * The place of this state's token rule in the spec; when a DFA state has
+   * several final NFA states, the lowest wins
+   */
+  private int tokenPriority = Integer.MAX_VALUE;
 
   /**
    * Constructor method.
+   * @param builder
+   *        The build this state belongs to, which numbers its states.
    */
-  public NFAState() {
+  public NFAState(LexerBuilder builder) {
     epsilonTransitions = new HashSet<NFAState>();
     transition = new HashMap<Character, NFAState>();
-    uniqueIdentifier = "state-" + nextStateNumber++;
+    uniqueIdentifier = "state-" + builder.nextStateNumber();
     setTokenTypeIfFinalState("");
   }
 
@@ -52,6 +69,70 @@ public class NFAState {
     return transition;
   }
 
+  /**
+   * Adds a transition, keeping the targets the character already has.
+   * @param c
+   * @param target
+   */
+  public void addTransition(char c, NFAState target) {
+    NFAState first = transition.get(c);
+    if (first == null) {
+      transition.put(c, target);
+    } else if (first != target) {
+      if (moreTransitions == null) {
+        moreTransitions = new HashMap<Character, List<NFAState>>();
+      }
+      List<NFAState> more = moreTransitions.get(c);
+      if (more == null) {
+        more = new ArrayList<NFAState>(2);
+        moreTransitions.put(c, more);
+      } else if (more.contains(target)) {
+        return;
+      }
+      more.add(target);
+    }
+  }
+
+  /**
+   * The targets addTransition gave characters on top of the one in the
+   * transition map.
+   * @return an empty map if every character has a single target.
+   */
+  public Map<Character, List<NFAState>> getMoreTransitions() {
+    if (moreTransitions == null) {
+      return Collections.emptyMap();
+    }
+    return moreTransitions;
+  }
+
+  /**
+   * Adds a transition on every character of a set, stored as its ranges.
+   * @param characters
+   * @param target
+   */
+  public void addTransition(CharRanges characters, NFAState target) {
+    if (characters.isEmpty()) {
+      return;
+    }
+    if (rangeTransitions == null) {
+      rangeTransitions = new LinkedHashMap<NFAState, CharRanges>();
+    }
+    CharRanges existing = rangeTransitions.get(target);
+    rangeTransitions.put(target, existing == null ? characters : existing
+        .union(characters));
+  }
+
+  /**
+   * The transitions labeled with character ranges, by target.
+   * @return an empty map if there are none.
+   */
+  public Map<NFAState, CharRanges> getRangeTransitions() {
+    if (rangeTransitions == null) {
+      return Collections.emptyMap();
+    }
+    return rangeTransitions;
+  }
+
   /**
    * Whether this state an accepting state or not.
    * @return
@@ -112,21 +193,12 @@ public class NFAState {
       }
       s.append("\nepsilon-----> q" + Arrays.toString(a));
     }
-    return s.toString();
-  }
-
-  public boolean equals(Object o) {
-    if (o == null) {
-      return false;
-    }
-    if (o == this) {
-      return true;
-    }
-    if (!(o instanceof NFAState)) {
-      return false;
+    for (Map.Entry<NFAState, CharRanges> range : getRangeTransitions()
+        .entrySet()) {
+      s.append("\n" + range.getValue() + "-----> q"
+          + range.getKey().uniqueIdentifier);
     }
-    NFAState casted = (NFAState) o;
-    return casted.uniqueIdentifier.equalsIgnoreCase(casted.uniqueIdentifier);
+    return s.toString();
   }
 
   /**
@@ -145,4 +217,33 @@ public class NFAState {
     this.tokenTypeIfFinalState = tokenTypeIfFinalState;
   }
 
+  /**
+   * The place of this state's token rule in the spec, Integer.MAX_VALUE if
+   * it was never set.
+   * @return
+   */
+  public int getTokenPriority() {
+    return tokenPriority;
+  }
+
+  /**
+   * Sets the place of this state's token rule in the spec. Earlier rules
+   * win, so a keyword listed before $IDENTIFIER is a keyword.
+   * @param tokenPriority
+   */
+  public void setTokenPriority(int tokenPriority) {
+    this.tokenPriority = tokenPriority;
+  }
+
+  /**
+   * Whether this final state's token wins over another one's, i.e. its rule
+   * comes earlier in the spec. On a tie the other one keeps winning.
+   * @param other
+   *        Another final state, or null.
+   * @return
+   */
+  public boolean beats(NFAState other) {
+    return other == null || tokenPriority < other.tokenPriority;
+  }
+
 }
@@ -0,0 +1,584 @@
+package Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import Lexer.LexerBuilder;
+import NFA.CharRanges;
+import NFA.NFA;
+import Regex.Char;
+import Regex.CharSet;
+import Regex.Concat;
+import Regex.Plus;
+import Regex.RegexNode;
+import Regex.Simplifier;
+import Regex.Star;
+import Regex.ThompsonConstruction;
+import Regex.Union;
+
+/**
+ * A regex parser that accepts exactly what RegexParser accepts, without its
+ * per-rule copies, and builds a regex AST instead of NFA fragments. The regex
+ * is read out of one char array; backtracking saves and restores an int
+ * cursor instead of cloning a RegexParserInput, and rule results go to fields
+ * instead of a RegexParserOutput per rule, so only AST nodes and character
+ * sets are allocated.
+ *
+ * Each rule method below mirrors the RegexParser method of the same name,
+ * including its quirks: a rule that does not parse ends the regex there, and
+ * whatever follows is ignored.
+ */
+
+public class RegexCursorParser {
+  /** The rule did not match */
+  private static final int FAILED = 0;
+
+  /** The rule matched the empty string */
+  private static final int EPSILON = 1;
+
+  /** The rule matched and left its result in the fields */
+  private static final int PARSED = 2;
+
+  /** The characters '.' matches */
+  private static final CharRanges PRINTABLE = CharRanges.range(' ', '~');
+
+  /** What reading past the end of the regex gives; matches no rule */
+  private static final char END = '\uffff';
+
+  /** The regex */
+  private final char[] text;
+
+  /** The build whose classes the regex may use */
+  private final LexerBuilder builder;
+
+  /** The next character to read */
+  private int pos;
+
+  /** The AST of the last rule that parsed */
+  private RegexNode node;
+
+  /** The characters of the last character class that parsed */
+  private CharRanges charSet;
+
+  /** The last single character that parsed */
+  private char character;
+
+  /**
+   * Constructor method.
+   * @param regex
+   *        The regex to parse.
+   * @param builder
+   *        The build whose defined classes the regex may use.
+   */
+  public RegexCursorParser(String regex, LexerBuilder builder) {
+    this.text = regex.toCharArray();
+    this.builder = builder;
+  }
+
+  /**
+   * Parses the regex as RegexParser.reg_ex does.
+   * @return the AST, null if the regex does not parse or matches only the
+   *         empty string.
+   */
+  public RegexNode parse() {
+    pos = 0;
+    return rexp() == PARSED ? node : null;
+  }
+
+  /**
+   * Parses the regex as RegexParser.reg_ex does and builds the NFA of its
+   * simplified AST.
+   * @return the NFA, null if the regex does not parse or matches only the
+   *         empty string.
+   */
+  public NFA parseRegex() {
+    RegexNode ast = parse();
+    return ast == null ? null : ThompsonConstruction.toNFA(
+        Simplifier.simplify(ast), builder);
+  }
+
+  /**
+   * Parses the regex as RegexParser.char_class does, as in the class
+   * definitions of a spec.
+   * @return the characters of the class, null if it does not parse.
+   */
+  public CharRanges parseCharClass() {
+    pos = 0;
+    return char_class() == PARSED ? charSet : null;
+  }
+
+  /**
+   * <rexp> -> <rexp1> <rexp'>
+   */
+  private int rexp() {
+    int r = rexp1();
+    if (r != PARSED) {
+      // RegexParser has no input to go on with after an empty <rexp1>.
+      return FAILED;
+    }
+    RegexNode first = node;
+    int afterFirst = pos;
+    if (rexp_prime() != PARSED) {
+      node = first;
+      pos = afterFirst;
+      return PARSED;
+    }
+    node = new Union(first, node);
+    return PARSED;
+  }
+
+  /**
+   * <rexp'> -> UNION <rexp1> <rexp'> | epsilon
+   */
+  private int rexp_prime() {
+    skipSpace();
+    if (!match('|')) {
+      return EPSILON;
+    }
+    int afterBar = pos;
+    int r = rexp1();
+    if (r == FAILED) {
+      return FAILED;
+    }
+    boolean firstEmpty = r == EPSILON;
+    RegexNode first = node;
+    int afterFirst = pos;
+    pos = firstEmpty ? afterBar : afterFirst;
+    r = rexp_prime();
+    if (r == FAILED) {
+      return FAILED;
+    }
+    boolean restEmpty = r == EPSILON;
+    if (restEmpty && firstEmpty) {
+      return EPSILON;
+    }
+    if (restEmpty) {
+      node = first;
+      pos = afterFirst;
+      return PARSED;
+    }
+    if (!firstEmpty) {
+      node = new Union(first, node);
+    }
+    return PARSED;
+  }
+
+  /**
+   * Skips whitespace, then reads one character and tells whether it is c.
+   */
+  private boolean match(char c) {
+    skipSpace();
+    if (pos >= text.length) {
+      return false;
+    }
+    return next() == c;
+  }
+
+  /**
+   * <rexp1> -> <rexp2> <rexp1'>
+   */
+  private int rexp1() {
+    int start = pos;
+    int r = rexp2();
+    if (r == FAILED) {
+      return FAILED;
+    }
+    if (r == EPSILON) {
+      pos = start;
+      return rexp1_prime();
+    }
+    return concatenateRest(node);
+  }
+
+  /**
+   * <rexp1'> -> <rexp2> <rexp1'> | epsilon
+   */
+  private int rexp1_prime() {
+    int start = pos;
+    if (rexp2() != PARSED) {
+      pos = start;
+      return EPSILON;
+    }
+    return concatenateRest(node);
+  }
+
+  /**
+   * Appends the <rexp2>s following the cursor to first, up to the first one
+   * that does not parse.
+   */
+  private int concatenateRest(RegexNode first) {
+    List<RegexNode> parts = new ArrayList<RegexNode>();
+    parts.add(first);
+    int end = pos;
+    while (rexp2() == PARSED) {
+      parts.add(node);
+      end = pos;
+    }
+    node = parts.size() == 1 ? first : new Concat(parts);
+    pos = end;
+    return PARSED;
+  }
+
+  /**
+   * <rexp2> -> (<rexp>) <rexp2-tail> | RE_CHAR <rexp2-tail> | <rexp3>
+   */
+  private int rexp2() {
+    int start = pos;
+    if (!match('(')) {
+      pos = start;
+      return rexp2_term2();
+    }
+    if (rexp() != PARSED || !match(')')) {
+      return FAILED;
+    }
+    int afterClose = pos;
+    if (rexp2_tail(node) == EPSILON) {
+      pos = afterClose;
+    }
+    return PARSED;
+  }
+
+  /**
+   * <rexp2-tail> -> * | + | epsilon, applied to current.
+   */
+  private int rexp2_tail(RegexNode current) {
+    skipSpace();
+    node = current;
+    if (pos >= text.length) {
+      return EPSILON;
+    }
+    switch (next()) {
+      case '*':
+        node = new Star(current);
+        return PARSED;
+      case '+':
+        node = new Plus(current);
+        return PARSED;
+      default:
+        pos--;
+        return EPSILON;
+    }
+  }
+
+  /**
+   * RE_CHAR <rexp2-tail> | <rexp3>
+   */
+  private int rexp2_term2() {
+    int start = pos;
+    if (RE_CHAR() != PARSED) {
+      pos = start;
+      return rexp3();
+    }
+    rexp2_tail(new Char(character));
+    return PARSED;
+  }
+
+  /**
+   * <rexp3> -> <char-class> | epsilon
+   */
+  private int rexp3() {
+    skipSpace();
+    int start = pos;
+    if (char_class() != PARSED) {
+      pos = start;
+      return EPSILON;
+    }
+    node = new CharSet(charSet);
+    return PARSED;
+  }
+
+  /**
+   * <char-class> -> . | [ <char-class1> | <defined-class>
+   */
+  private int char_class() {
+    skipSpace();
+    int start = pos;
+    if (pos >= text.length) {
+      return FAILED;
+    }
+    switch (next()) {
+      case '.':
+        charSet = PRINTABLE;
+        return PARSED;
+      case '[':
+        builder.setInsideSquareBrackets(true);
+        return char_class1();
+      default:
+        pos = start;
+        return defined_class();
+    }
+  }
+
+  /**
+   * <char-class1> -> <char-set-list> | <exclude-set>
+   */
+  private int char_class1() {
+    int start = pos;
+    if (char_set_list() == PARSED) {
+      return PARSED;
+    }
+    pos = start;
+    return exclude_set();
+  }
+
+  /**
+   * <char-set-list> -> <char-set> <char-set-list> | ]
+   */
+  private int char_set_list() {
+    CharRanges all = CharRanges.EMPTY;
+    while (true) {
+      int start = pos;
+      if (char_set() == PARSED) {
+        all = all.union(charSet);
+        continue;
+      }
+      pos = start;
+      skipSpace();
+      if (next() != ']') {
+        return FAILED;
+      }
+      builder.setInsideSquareBrackets(false);
+      charSet = all;
+      return PARSED;
+    }
+  }
+
+  /**
+   * <char-set> -> CLS_CHAR <char-set-tail>
+   */
+  private int char_set() {
+    if (CLS_CHAR() != PARSED) {
+      return FAILED;
+    }
+    char first = character;
+    int afterFirst = pos;
+    if (char_set_tail() != PARSED) {
+      pos = afterFirst;
+      charSet = CharRanges.of(first);
+      return PARSED;
+    }
+    charSet = CharRanges.range(first, character);
+    return PARSED;
+  }
+
+  /**
+   * <char-set-tail> -> - CLS_CHAR | epsilon
+   */
+  private int char_set_tail() {
+    skipSpace();
+    if (next() != '-') {
+      return EPSILON;
+    }
+    skipSpace();
+    return CLS_CHAR();
+  }
+
+  /**
+   * <exclude-set> -> ^ <char-set>] IN <exclude-set-tail>
+   */
+  private int exclude_set() {
+    skipSpace();
+    if (next() != '^') {
+      return FAILED;
+    }
+    skipSpace();
+    if (char_set() != PARSED) {
+      return FAILED;
+    }
+    CharRanges remove = charSet;
+    skipSpace();
+    if (next() != ']') {
+      return FAILED;
+    }
+    builder.setInsideSquareBrackets(false);
+    skipSpace();
+    if (next() != 'I') {
+      return FAILED;
+    }
+    boolean inside = builder.isInsideSquareBrackets();
+    builder.setInsideSquareBrackets(true);
+    skipSpace();
+    builder.setInsideSquareBrackets(inside);
+    if (next() != 'N') {
+      return FAILED;
+    }
+    if (exclude_set_tail() != PARSED) {
+      return FAILED;
+    }
+    charSet = charSet.minus(remove);
+    return PARSED;
+  }
+
+  /**
+   * <exclude-set-tail> -> [<char-set>] | <defined-class>. Like RegexParser,
+   * leaves the cursor right after the '[' of the first form.
+   */
+  private int exclude_set_tail() {
+    skipSpace();
+    if (next() != '[') {
+      pos--;
+      return defined_class();
+    }
+    int afterBracket = pos;
+    if (char_set() != PARSED) {
+      return FAILED;
+    }
+    int afterSet = pos;
+    pos = afterBracket;
+    skipSpace();
+    int end = pos;
+    pos = afterSet;
+    if (next() != ']') {
+      return FAILED;
+    }
+    pos = end;
+    return PARSED;
+  }
+
+  /**
+   * <defined-class>: the shortest defined class name at the cursor.
+   */
+  private int defined_class() {
+    skipSpace();
+    String[] names = builder.getDefinedClassNames();
+    if (names.length == 0) {
+      return FAILED;
+    }
+    if (pos >= text.length) {
+      return EPSILON;
+    }
+    for (String name : names) {
+      if (startsWith(name)) {
+        pos += name.length();
+        charSet = builder.getDefinedClass(name);
+        return PARSED;
+      }
+    }
+    return FAILED;
+  }
+
+  /**
+   * Whether the text at the cursor starts with s.
+   */
+  private boolean startsWith(String s) {
+    if (pos + s.length() > text.length) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (text[pos + i] != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A character inside square brackets.
+   */
+  private int CLS_CHAR() {
+    skipSpace();
+    char c = next();
+    switch (c) {
+      case '\\':
+        char escaped = next();
+        switch (escaped) {
+          case '\\':
+          case '^':
+          case '-':
+          case '[':
+          case ']':
+            character = escaped;
+            return PARSED;
+          default:
+            pos--;
+            return FAILED;
+        }
+      case '^':
+      case '-':
+      case '[':
+      case ']':
+        return FAILED;
+      default:
+        if (RegexParser.isSpecCharacter(c)) {
+          character = c;
+          return PARSED;
+        }
+        return FAILED;
+    }
+  }
+
+  /**
+   * A character outside square brackets.
+   */
+  private int RE_CHAR() {
+    skipSpace();
+    if (pos >= text.length) {
+      return FAILED;
+    }
+    char c = next();
+    switch (c) {
+      case '\\':
+        c = next();
+        switch (c) {
+          case '\\':
+          case '*':
+          case '+':
+          case '?':
+          case '|':
+          case '[':
+          case '(':
+          case ')':
+          case '.':
+          case '\'':
+          case '"':
+          case '$':
+          case ' ':
+            character = c;
+            return PARSED;
+          default:
+            return FAILED;
+        }
+      case '$':
+      case '*':
+      case '+':
+      case '?':
+      case '|':
+      case '[':
+      case ']':
+      case '(':
+      case ')':
+      case '.':
+      case '\'':
+      case '"':
+      case ' ':
+        return FAILED;
+      default:
+        if (RegexParser.isSpecCharacter(c)) {
+          character = c;
+          return PARSED;
+        }
+        return FAILED;
+    }
+  }
+
+  /**
+   * Reads the character at the cursor, END past the end.
+   */
+  private char next() {
+    char c = pos < text.length ? text[pos] : END;
+    pos++;
+    return c;
+  }
+
+  /**
+   * Skips whitespace, except spaces between square brackets.
+   */
+  private void skipSpace() {
+    while (pos < text.length && Character.isWhitespace(text[pos])) {
+      if (text[pos] == ' ' && builder.isInsideSquareBrackets()) {
+        break;
+      }
+      pos++;
+    }
+  }
+}
@@ -1,12 +1,7 @@
 package Parser;
 
-import static java.lang.Math.max;
-
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
-
+import Lexer.LexerBuilder;
+import NFA.CharRanges;
 import NFA.NFA;
 
 /**
@@ -19,9 +14,6 @@ import NFA.NFA;
 
 public class RegexParser {
 
-  private static boolean areWeInsideSquareBrackets = false;
-  private static HashMap<String, Set<Character>> definedClasses = new HashMap<String, Set<Character>>();
-  private static int maxDefinedClassLength = 0;
   private static final RegexParserOutput epsilonTransitionOutput = new RegexParserOutput(
       true, true);
   private static final RegexParserOutput didntWorkOutput = new RegexParserOutput(
@@ -37,6 +29,16 @@ public class RegexParser {
     return rexp(new RegexParserInput(input));
   }
 
+  /**
+   * Parses a regular expression that may use the classes defined in a build.
+   * @param input
+   * @param builder
+   * @return RegexParserOutput
+   */
+  public static RegexParserOutput reg_ex(String input, LexerBuilder builder) {
+    return rexp(new RegexParserInput(input, builder));
+  }
+
   /**
    * This method implements the following grammar rule: <rexp> -> <rexp1>
    * <rexp�>
@@ -233,7 +235,8 @@ public class RegexParser {
     if (!getRE_CHAR.isWorkedOrNot()) {
       return rexp3(input);
     }
-    NFA newNFA = NFA.getNFAFromCharacter(getRE_CHAR.getCharacterParsed());
+    NFA newNFA = NFA.getNFAFromCharacter(input.getBuilder(),
+        getRE_CHAR.getCharacterParsed());
     RegexParserOutput rexpTailOutput = rexp2_tail(currentInput, newNFA);
     if (rexpTailOutput.wasEpsilonTransition()) {
       rexpTailOutput.setFinalState(currentInput);
@@ -257,13 +260,9 @@ public class RegexParser {
       return new RegexParserOutput(true, true, input);
     }
     input = characterClassForNFA.getFinalState();
-    NFA newNFA = new NFA();
-    Iterator<Character> allTransitions = characterClassForNFA.getCharSet()
-        .iterator();
-    while (allTransitions.hasNext()) {
-      newNFA.getStartState().getTransition()
-          .put(allTransitions.next(), newNFA.getEndState());
-    }
+    NFA newNFA = new NFA(input.getBuilder());
+    newNFA.getStartState().addTransition(characterClassForNFA.getCharSet(),
+        newNFA.getEndState());
     return new RegexParserOutput(true, false, newNFA,
         characterClassForNFA.getFinalState());
   }
@@ -283,41 +282,19 @@ public class RegexParser {
     RegexParserOutput returnValue = new RegexParserOutput();
     switch (dotOrCharClassOneInput.getNextCharacter()) {
       case '.':
-        Set<Character> allCharacters = new HashSet<Character>();
-        for (int i = 32; i <= 126; i++) {
-          allCharacters.add((char) i);
-        }
-        returnValue.setCharSet(allCharacters);
+        returnValue.setCharSet(CharRanges.range(' ', '~'));
         returnValue.setWorkedOrNot(true);
         returnValue.setFinalState(dotOrCharClassOneInput);
         return returnValue;
       case '[':
-        assert (!areWeInsideSquareBrackets);
-        areWeInsideSquareBrackets = true;
+        assert (!input.getBuilder().isInsideSquareBrackets());
+        input.getBuilder().setInsideSquareBrackets(true);
         return char_class1(dotOrCharClassOneInput);
       default:
         return defined_class(input);
     }
   }
 
-  /**
-   * This method will clear the currently defined classes.
-   */
-  public static void clearDefinedClass() {
-    definedClasses.clear();
-  }
-
-  /**
-   * This method takes a defined class such as $DIGIT and adds the appropriate
-   * set of characters to this defined class.
-   * @param key
-   * @param set
-   */
-  public static void defineClass(String key, Set<Character> set) {
-    definedClasses.put(key, set);
-    maxDefinedClassLength = max(maxDefinedClassLength, key.length());
-  }
-
   /**
    * This method implements the following grammar rule: <exclude-set-tail> ->
    * [<char-set>] | <defined-class>
@@ -360,12 +337,12 @@ public class RegexParser {
 
   }
 
-  @SuppressWarnings("unchecked")
   public static RegexParserOutput defined_class(RegexParserInput input) {
     advanceUselessSpace(input);
     String definedClass = "";
     boolean worked = false;
-    for (int i = 0; i < maxDefinedClassLength; i++) {
+    LexerBuilder builder = input.getBuilder();
+    for (int i = 0; i < builder.getMaxDefinedClassLength(); i++) {
       if (input.endOfInput()) {
         if (i == 0) {
           return epsilonTransitionOutput;
@@ -374,7 +351,7 @@ public class RegexParser {
         }
       }
       definedClass += input.getNextCharacter();
-      if (definedClasses.containsKey(definedClass)) {
+      if (builder.getDefinedClass(definedClass) != null) {
         worked = true;
         break;
       }
@@ -384,14 +361,24 @@ public class RegexParser {
 
     if (worked) {
       returnValue.setFinalState(input);
-      returnValue
-          .setCharSet((Set<Character>) ((HashSet<Character>) definedClasses
-              .get(definedClass)).clone());
+      returnValue.setCharSet(builder.getDefinedClass(definedClass));
     }
 
     return returnValue;
   }
 
+  /**
+   * Whether a character may stand for itself in a regex: printable ASCII, or
+   * any character above it but the surrogates and U+FFFF. Non ASCII
+   * characters are matched as their UTF-8 bytes.
+   * @param c
+   * @return
+   */
+  public static boolean isSpecCharacter(char c) {
+    return (c >= 32 && c <= 126)
+        || (c >= 0x80 && !Character.isSurrogate(c) && c != '\uffff');
+  }
+
   /**
    * @param input
    * @return
@@ -427,9 +414,7 @@ public class RegexParser {
         isThisCharacterValidOrNot = false;
         break;
       default:
-        int currentCharactersAsciiValue = (int) currentCharacter;
-        if (currentCharactersAsciiValue >= 32
-            && currentCharactersAsciiValue <= 126) {
+        if (isSpecCharacter(currentCharacter)) {
           theCharacterToConsider = currentCharacter;
           isThisCharacterValidOrNot = true;
         }
@@ -480,9 +465,7 @@ public class RegexParser {
           rpout.setWorkedOrNot(false);
         }
         else {
-          int currentCharactersAsciiValue = (int) next;
-          if (currentCharactersAsciiValue >= 32
-              && currentCharactersAsciiValue <= 126) {
+          if (isSpecCharacter(next)) {
             rpout.setWorkedOrNot(true);
           }
           else {
@@ -520,15 +503,15 @@ public class RegexParser {
    */
   public static RegexParserOutput char_set_list(RegexParserInput input) {
     RegexParserOutput returnValue = new RegexParserOutput();
-    Set<Character> allCharacters = new HashSet<Character>();
+    CharRanges allCharacters = CharRanges.EMPTY;
     RegexParserOutput singleCharacterSetOutput = char_set(input.clone());
     if (!singleCharacterSetOutput.isWorkedOrNot()) {
       // Time to match ]
       advanceUselessSpace(input);
       char possibleClosingSquareBracket = input.getNextCharacter();
       if (possibleClosingSquareBracket == ']') {
-        assert (areWeInsideSquareBrackets);
-        areWeInsideSquareBrackets = false;
+        assert (input.getBuilder().isInsideSquareBrackets());
+        input.getBuilder().setInsideSquareBrackets(false);
         returnValue.setWorkedOrNot(true);
         returnValue.setFinalState(input);
         returnValue.setCharSet(allCharacters);
@@ -539,14 +522,14 @@ public class RegexParser {
       }
     }
     input = singleCharacterSetOutput.getFinalState();
-    allCharacters.addAll(singleCharacterSetOutput.getCharSet());
+    allCharacters = allCharacters.union(singleCharacterSetOutput.getCharSet());
     RegexParserOutput recursiveRestofTheSet = char_set_list(input.clone());
     if (!recursiveRestofTheSet.isWorkedOrNot()) {
       returnValue.setWorkedOrNot(false);
       return returnValue;
     }
     input = recursiveRestofTheSet.getFinalState();
-    allCharacters.addAll(recursiveRestofTheSet.getCharSet());
+    allCharacters = allCharacters.union(recursiveRestofTheSet.getCharSet());
     returnValue.setWorkedOrNot(true);
     returnValue.setCharSet(allCharacters);
     returnValue.setFinalState(input);
@@ -561,7 +544,6 @@ public class RegexParser {
    */
   public static RegexParserOutput char_set(RegexParserInput input) {
     RegexParserOutput returnValue = new RegexParserOutput();
-    Set<Character> characters = new HashSet<Character>();
     RegexParserOutput startingCharacterOutput = CLS_CHAR(input.clone());
     if (!startingCharacterOutput.isWorkedOrNot()) {
       returnValue.setWorkedOrNot(false);
@@ -573,24 +555,15 @@ public class RegexParser {
     RegexParserOutput endingCharacterOutput = char_set_tail(input.clone());
     if (endingCharacterOutput.wasEpsilonTransition()) {
       // there is only one character to parse
-      characters.add(startCharacter);
-      returnValue.setCharSet(characters);
+      returnValue.setCharSet(CharRanges.of(startCharacter));
       returnValue.setWorkedOrNot(true);
       returnValue.setFinalState(input);
       return returnValue;
     }
     input = endingCharacterOutput.getFinalState();
     Character endingCharacter = endingCharacterOutput.getCharacterParsed();
-    if (startCharacter.compareTo(endingCharacter) > 0) {
-      Character temp = startCharacter;
-      startCharacter = endingCharacter;
-      endingCharacter = temp;
-    }
-    for (int start = (int) startCharacter.charValue(); start <= (char) endingCharacter
-        .charValue(); start++) {
-      characters.add((char) start);
-    }
-    return new RegexParserOutput(true, false, characters, input);
+    return new RegexParserOutput(true, false, CharRanges.range(startCharacter,
+        endingCharacter), input);
   }
 
   /**
@@ -607,7 +580,7 @@ public class RegexParser {
     }
     advanceUselessSpace(input);
     RegexParserOutput charSetOutput = char_set(input.clone());
-    Set<Character> charactersToRemove = charSetOutput.getCharSet();
+    CharRanges charactersToRemove = charSetOutput.getCharSet();
     if (!charSetOutput.isWorkedOrNot()) {
       returnValue.setWorkedOrNot(false);
       return returnValue;
@@ -617,15 +590,16 @@ public class RegexParser {
     if (input.getNextCharacter() != ']') {
       return didntWorkOutput;
     }
-    areWeInsideSquareBrackets = false;
+    LexerBuilder builder = input.getBuilder();
+    builder.setInsideSquareBrackets(false);
     advanceUselessSpace(input);
     if (input.getNextCharacter() != 'I') {
       return didntWorkOutput;
     }
-    boolean copyOfAreWeInsideBrackets = areWeInsideSquareBrackets;
-    areWeInsideSquareBrackets = true;
+    boolean copyOfAreWeInsideBrackets = builder.isInsideSquareBrackets();
+    builder.setInsideSquareBrackets(true);
     advanceUselessSpace(input);
-    areWeInsideSquareBrackets = copyOfAreWeInsideBrackets;
+    builder.setInsideSquareBrackets(copyOfAreWeInsideBrackets);
     if (input.getNextCharacter() != 'N') {
       return didntWorkOutput;
     }
@@ -633,9 +607,8 @@ public class RegexParser {
     if (!excludeSetOutput.isWorkedOrNot()) {
       return didntWorkOutput;
     }
-    Set<Character> finalSet = excludeSetOutput.getCharSet();
-
-    finalSet.removeAll(charactersToRemove);
+    CharRanges finalSet = excludeSetOutput.getCharSet()
+        .minus(charactersToRemove);
 
     returnValue.setCharSet(finalSet);
     returnValue.setFinalState(input);
@@ -678,7 +651,7 @@ public class RegexParser {
     while (!input.endOfInput()) {
       char current = input.getNextCharacter();
       if (Character.isWhitespace(current)) {
-        if (current == ' ' && areWeInsideSquareBrackets) {
+        if (current == ' ' && input.getBuilder().isInsideSquareBrackets()) {
           input.goBackOneCharacter();
           break;
         }
@@ -1,5 +1,7 @@
 package Parser;
 
+import Lexer.LexerBuilder;
+
 /**
  * This class models the input into each RegexParser rule method.
  * @author Surenkumar Nihalani
@@ -12,33 +14,60 @@ public class RegexParserInput {
   /** The next character index to process */
   private int nextCharInInput;
 
+  /** The build the parsed regex belongs to */
+  private LexerBuilder builder;
+
   /**
    * Constructor method.
    * @param regexString
    *        the string to work on.
    * @param nextIndexToWorkOn
    *        the index to start parsing from.
+   * @param builder
+   *        the build the parsed regex belongs to.
    */
-  private RegexParserInput(String regexString, int nextIndexToWorkOn) {
-    input = new String(regexString);
+  private RegexParserInput(String regexString, int nextIndexToWorkOn,
+      LexerBuilder builder) {
+    input = regexString;
     nextCharInInput = nextIndexToWorkOn;
+    this.builder = builder;
   }
 
   /**
-   * construct a new object starting at zero.
+   * construct a new object starting at zero, in a build of its own.
    * @param regexString
    *        Regular expression that we are going to parse.
    */
   public RegexParserInput(String regexString) {
-    this(regexString, 0);
+    this(regexString, 0, new LexerBuilder());
   }
 
   /**
-   * Copy constructor.
+   * construct a new object starting at zero.
+   * @param regexString
+   *        Regular expression that we are going to parse.
+   * @param builder
+   *        The build whose defined classes the regex may use.
+   */
+  public RegexParserInput(String regexString, LexerBuilder builder) {
+    this(regexString, 0, builder);
+  }
+
+  /**
+   * Copy constructor. The copy shares the build.
    * @param regexParserInput
    */
   private RegexParserInput(RegexParserInput regexParserInput) {
-    this(regexParserInput.input, regexParserInput.nextCharInInput);
+    this(regexParserInput.input, regexParserInput.nextCharInInput,
+        regexParserInput.builder);
+  }
+
+  /**
+   * Getter for the build the parsed regex belongs to.
+   * @return
+   */
+  public LexerBuilder getBuilder() {
+    return builder;
   }
 
   /**
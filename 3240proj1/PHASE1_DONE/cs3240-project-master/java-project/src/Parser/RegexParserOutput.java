@@ -1,8 +1,6 @@
 package Parser;
 
-import java.util.HashSet;
-import java.util.Set;
-
+import NFA.CharRanges;
 import NFA.NFA;
 
 /**
@@ -27,7 +25,7 @@ public class RegexParserOutput {
   private boolean wasEpsilonTransition;
 
   /** The char set parsed so far */
-  private Set<Character> charSet;
+  private CharRanges charSet;
 
   /**
    * Constructor method
@@ -49,12 +47,10 @@ public class RegexParserOutput {
    * Default constructor method
    */
   public RegexParserOutput() {
-    output = new NFA();
     workedOrNot = false;
-    finalState = new RegexParserInput("DEFAULT");
     characterParsed = ' ';
     wasEpsilonTransition = false;
-    charSet = new HashSet<Character>();
+    charSet = CharRanges.EMPTY;
   }
 
   /**
@@ -92,7 +88,7 @@ public class RegexParserOutput {
    * @param input
    */
   public RegexParserOutput(boolean worked, boolean epsilon,
-      Set<Character> characters,
+      CharRanges characters,
       RegexParserInput input) {
     this(worked, epsilon, input);
     charSet = characters;
@@ -151,17 +147,17 @@ public class RegexParserOutput {
     this.wasEpsilonTransition = wasEpsilonTransition;
   }
 
-  public Set<Character> getCharSet() {
+  public CharRanges getCharSet() {
     return charSet;
   }
 
-  public void setCharSet(Set<Character> charSet) {
+  public void setCharSet(CharRanges charSet) {
     this.charSet = charSet;
   }
 
   public String toString() {
-    return "outputNFA: " + output.toString() + "\nworkedOrNot: " + workedOrNot
-        + "\nfinalState: " + finalState.toString() + "\nCharacter parsed: "
+    return "outputNFA: " + output + "\nworkedOrNot: " + workedOrNot
+        + "\nfinalState: " + finalState + "\nCharacter parsed: "
         + characterParsed + "\n wasEpsilonTransition: " + wasEpsilonTransition
         + "\nCharset: " + charSet.toString();
   }
@@ -0,0 +1,62 @@
+package Regex;
+
+/**
+ * Marks the end of a token rule: reaching it accepts the token. Only ever
+ * the last part of a rule, so it matches nothing and has nothing after it.
+ */
+
+public class Accept extends RegexNode {
+  /** The token accepted, as written in the spec, e.g. "$INT" */
+  private final String token;
+
+  /** The place of the rule in the spec; the lowest wins a tie */
+  private final int priority;
+
+  /**
+   * Constructor method, for a token that loses every tie.
+   * @param token
+   */
+  public Accept(String token) {
+    this(token, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructor method.
+   * @param token
+   * @param priority
+   *        The place of the rule in the spec.
+   */
+  public Accept(String token, int priority) {
+    this.token = token;
+    this.priority = priority;
+  }
+
+  /**
+   * The token accepted.
+   * @return
+   */
+  public String getToken() {
+    return token;
+  }
+
+  /**
+   * The place of the rule in the spec.
+   * @return
+   */
+  public int getPriority() {
+    return priority;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof Accept && ((Accept) o).token.equals(token)
+        && ((Accept) o).priority == priority;
+  }
+
+  public int hashCode() {
+    return token.hashCode() * 31 + priority;
+  }
+
+  public String toString() {
+    return "<" + token + ">";
+  }
+}
@@ -0,0 +1,43 @@
+package Regex;
+
+/**
+ * Matches one given character.
+ */
+
+public class Char extends RegexNode {
+  /** The character matched */
+  private final char c;
+
+  /**
+   * Constructor method.
+   * @param c
+   *        The character to match.
+   */
+  public Char(char c) {
+    this.c = c;
+  }
+
+  /**
+   * The character matched.
+   * @return
+   */
+  public char getCharacter() {
+    return c;
+  }
+
+  public boolean isSingleCharacter() {
+    return true;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof Char && ((Char) o).c == c;
+  }
+
+  public int hashCode() {
+    return c;
+  }
+
+  public String toString() {
+    return "'" + c + "'";
+  }
+}
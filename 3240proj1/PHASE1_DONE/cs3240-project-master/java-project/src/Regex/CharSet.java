@@ -0,0 +1,62 @@
+package Regex;
+
+import NFA.CharRanges;
+
+/**
+ * Matches any one character of a set.
+ */
+
+public class CharSet extends RegexNode {
+  /** The characters matched */
+  private final CharRanges chars;
+
+  /**
+   * Constructor method.
+   * @param chars
+   *        The characters to match.
+   */
+  public CharSet(CharRanges chars) {
+    this.chars = chars;
+  }
+
+  /**
+   * The characters matched.
+   * @return
+   */
+  public CharRanges getCharacters() {
+    return chars;
+  }
+
+  /**
+   * Whether a character is in the set.
+   * @param c
+   * @return
+   */
+  public boolean contains(char c) {
+    return chars.contains(c);
+  }
+
+  /**
+   * The number of characters in the set.
+   * @return
+   */
+  public int size() {
+    return chars.size();
+  }
+
+  public boolean isSingleCharacter() {
+    return true;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof CharSet && ((CharSet) o).chars.equals(chars);
+  }
+
+  public int hashCode() {
+    return chars.hashCode();
+  }
+
+  public String toString() {
+    return chars.toString();
+  }
+}
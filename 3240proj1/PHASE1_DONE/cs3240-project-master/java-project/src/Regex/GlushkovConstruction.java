@@ -0,0 +1,176 @@
+package Regex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import Lexer.LexerBuilder;
+import NFA.NFA;
+import NFA.NFAState;
+
+/**
+ * Builds the position automaton (Glushkov automaton) of a regex AST. Every
+ * Char and CharSet leaf is a position and gets one state, plus a start state;
+ * a state goes to position q on the characters of q whenever q can follow
+ * it. The NFA has no epsilon transitions at all, so the subset construction
+ * never has closures to compute, but a character may lead to several states.
+ * Accept nodes are positions without characters: a state that can be
+ * followed by one is final for its token.
+ */
+
+public class GlushkovConstruction {
+  /** The leaves, by position */
+  private List<RegexNode> positions = new ArrayList<RegexNode>();
+
+  /** The positions that can follow each position */
+  private List<BitSet> follow = new ArrayList<BitSet>();
+
+  /**
+   * The nullable flag and first and last sets of a subtree.
+   */
+  private static class Info {
+    boolean nullable;
+    BitSet first;
+    BitSet last;
+
+    Info(boolean nullable, BitSet first, BitSet last) {
+      this.nullable = nullable;
+      this.first = first;
+      this.last = last;
+    }
+  }
+
+  /**
+   * Builds the position automaton of a regex. If the regex has no Accept
+   * nodes, the states ending a match are final without a token.
+   * @param n
+   *        The regex.
+   * @param builder
+   *        The build the NFA belongs to.
+   * @return the NFA. Its end state is not connected to the others, as there
+   *         is no single state ending every match.
+   */
+  public static NFA toNFA(RegexNode n, LexerBuilder builder) {
+    GlushkovConstruction g = new GlushkovConstruction();
+    Info root = g.analyze(n);
+    NFAState start = new NFAState(builder);
+    NFAState[] states = new NFAState[g.positions.size()];
+    for (int p = 0; p < states.length; p++) {
+      if (!(g.positions.get(p) instanceof Accept)) {
+        states[p] = new NFAState(builder);
+      }
+    }
+    g.connect(start, root.first, states);
+    for (int p = 0; p < states.length; p++) {
+      if (states[p] != null) {
+        g.connect(states[p], g.follow.get(p), states);
+      }
+    }
+    if (root.nullable) {
+      start.setFinal(true);
+    }
+    for (int p = root.last.nextSetBit(0); p >= 0; p = root.last
+        .nextSetBit(p + 1)) {
+      if (states[p] != null) {
+        states[p].setFinal(true);
+      }
+    }
+    return new NFA(builder, start, new NFAState(builder));
+  }
+
+  /**
+   * Gives a state its transitions to the positions that can follow it, and
+   * makes it final if a token can.
+   */
+  private void connect(NFAState from, BitSet next, NFAState[] states) {
+    Accept winner = null;
+    for (int q = next.nextSetBit(0); q >= 0; q = next.nextSetBit(q + 1)) {
+      RegexNode leaf = positions.get(q);
+      if (leaf instanceof Accept) {
+        // The rule first in the spec wins, as it does in DFAState.
+        Accept accept = (Accept) leaf;
+        if (winner == null || accept.getPriority() < winner.getPriority()) {
+          winner = accept;
+        }
+      } else if (leaf instanceof Char) {
+        from.addTransition(((Char) leaf).getCharacter(), states[q]);
+      } else {
+        from.addTransition(((CharSet) leaf).getCharacters(), states[q]);
+      }
+    }
+    if (winner != null) {
+      from.setFinal(true);
+      from.setTokenTypeIfFinalState(winner.getToken());
+      from.setTokenPriority(winner.getPriority());
+    }
+  }
+
+  /**
+   * Numbers the positions of a subtree and fills in their follow sets.
+   */
+  private Info analyze(RegexNode n) {
+    if (n instanceof Char || n instanceof CharSet || n instanceof Accept) {
+      BitSet self = new BitSet();
+      self.set(positions.size());
+      positions.add(n);
+      follow.add(new BitSet());
+      return new Info(false, self, (BitSet) self.clone());
+    }
+    if (n instanceof Concat) {
+      Info result = null;
+      for (RegexNode child : ((Concat) n).getChildren()) {
+        Info next = analyze(child);
+        if (result == null) {
+          result = next;
+          continue;
+        }
+        addFollow(result.last, next.first);
+        if (result.nullable) {
+          result.first.or(next.first);
+        }
+        if (next.nullable) {
+          next.last.or(result.last);
+        }
+        result = new Info(result.nullable && next.nullable, result.first,
+            next.last);
+      }
+      return result;
+    }
+    if (n instanceof Union) {
+      Info result = new Info(false, new BitSet(), new BitSet());
+      for (RegexNode child : ((Union) n).getChildren()) {
+        Info next = analyze(child);
+        result.nullable |= next.nullable;
+        result.first.or(next.first);
+        result.last.or(next.last);
+      }
+      return result;
+    }
+    if (n instanceof Star) {
+      Info child = analyze(((Star) n).getChild());
+      addFollow(child.last, child.first);
+      child.nullable = true;
+      return child;
+    }
+    if (n instanceof Plus) {
+      Info child = analyze(((Plus) n).getChild());
+      addFollow(child.last, child.first);
+      return child;
+    }
+    if (n instanceof Optional) {
+      Info child = analyze(((Optional) n).getChild());
+      child.nullable = true;
+      return child;
+    }
+    throw new IllegalArgumentException("Unknown regex node " + n);
+  }
+
+  /**
+   * Lets every position of "to" follow every position of "from".
+   */
+  private void addFollow(BitSet from, BitSet to) {
+    for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1)) {
+      follow.get(p).or(to);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package Regex;
+
+/**
+ * Matches its child or the empty string.
+ */
+
+public class Optional extends RegexNode {
+  /** The node made optional */
+  private final RegexNode child;
+
+  /**
+   * Constructor method.
+   * @param child
+   */
+  public Optional(RegexNode child) {
+    this.child = child;
+  }
+
+  /**
+   * The node made optional.
+   * @return
+   */
+  public RegexNode getChild() {
+    return child;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof Optional && ((Optional) o).child.equals(child);
+  }
+
+  public int hashCode() {
+    return child.hashCode() * 47;
+  }
+
+  public String toString() {
+    return child + "?";
+  }
+}
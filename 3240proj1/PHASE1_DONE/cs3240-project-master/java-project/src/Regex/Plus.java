@@ -0,0 +1,38 @@
+package Regex;
+
+/**
+ * Matches its child one or more times.
+ */
+
+public class Plus extends RegexNode {
+  /** The repeated node */
+  private final RegexNode child;
+
+  /**
+   * Constructor method.
+   * @param child
+   */
+  public Plus(RegexNode child) {
+    this.child = child;
+  }
+
+  /**
+   * The repeated node.
+   * @return
+   */
+  public RegexNode getChild() {
+    return child;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof Plus && ((Plus) o).child.equals(child);
+  }
+
+  public int hashCode() {
+    return child.hashCode() * 43;
+  }
+
+  public String toString() {
+    return child + "+";
+  }
+}
@@ -0,0 +1,18 @@
+package Regex;
+
+/**
+ * A node of a parsed regex. Nodes are immutable and compare structurally, so
+ * equal subexpressions can be recognized by the Simplifier.
+ */
+
+public abstract class RegexNode {
+
+  /**
+   * Whether this node only ever matches a single character, i.e. is a Char
+   * or a CharSet.
+   * @return
+   */
+  public boolean isSingleCharacter() {
+    return false;
+  }
+}
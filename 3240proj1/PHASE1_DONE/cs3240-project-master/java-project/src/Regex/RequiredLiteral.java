@@ -0,0 +1,120 @@
+package Regex;
+
+/**
+ * Finds a literal every match of a regex contains, such as "ment" in
+ * ([A-Z a-z])*ment([A-Z a-z])*, so that a search can skip to where it
+ * occurs before running the DFA. Each node is summed up bottom up by the
+ * string it matches if it only matches one, a prefix and a suffix all its
+ * matches share, and the longest literal found inside it; a concatenation
+ * also gets the literal made of the suffix of one part and the prefix of the
+ * next. Unions only keep what their alternatives start or end with, and
+ * repetitions that may match nothing give nothing.
+ */
+
+public class RequiredLiteral {
+  /** The string matched, null if there is more than one */
+  private String exact;
+
+  /** What every match starts with */
+  private String prefix;
+
+  /** What every match ends with */
+  private String suffix;
+
+  /** The longest literal found in every match */
+  private String factor;
+
+  private RequiredLiteral(String exact, String prefix, String suffix,
+      String factor) {
+    this.exact = exact;
+    this.prefix = prefix;
+    this.suffix = suffix;
+    this.factor = factor;
+  }
+
+  /**
+   * The longest literal found that every match of a regex contains.
+   * @param n
+   *        The regex. Over bytes if it went through Utf8Encoder.
+   * @return the literal, empty if none was found.
+   */
+  public static String of(RegexNode n) {
+    return summary(n).factor;
+  }
+
+  private static RequiredLiteral exactly(String s) {
+    return new RequiredLiteral(s, s, s, s);
+  }
+
+  private static RequiredLiteral nothing() {
+    return new RequiredLiteral(null, "", "", "");
+  }
+
+  private static RequiredLiteral summary(RegexNode n) {
+    if (n instanceof Char) {
+      return exactly(String.valueOf(((Char) n).getCharacter()));
+    }
+    if (n instanceof CharSet) {
+      CharSet set = (CharSet) n;
+      return set.size() == 1 ? exactly(String.valueOf(set.getCharacters()
+          .rangeStart(0))) : nothing();
+    }
+    if (n instanceof Accept) {
+      return exactly("");
+    }
+    if (n instanceof Concat) {
+      RequiredLiteral a = exactly("");
+      for (RegexNode child : ((Concat) n).getChildren()) {
+        RequiredLiteral b = summary(child);
+        String joined = a.suffix + b.prefix;
+        a = new RequiredLiteral(a.exact != null && b.exact != null ? a.exact
+            + b.exact : null, a.exact != null ? a.exact + b.prefix
+            : a.prefix, b.exact != null ? a.suffix + b.exact : b.suffix,
+            longest(longest(a.factor, b.factor), joined));
+      }
+      return a;
+    }
+    if (n instanceof Union) {
+      RequiredLiteral u = null;
+      for (RegexNode child : ((Union) n).getChildren()) {
+        RequiredLiteral b = summary(child);
+        if (u == null) {
+          u = b;
+          continue;
+        }
+        String prefix = commonPrefix(u.prefix, b.prefix);
+        String suffix = commonSuffix(u.suffix, b.suffix);
+        u = new RequiredLiteral(u.exact != null && u.exact.equals(b.exact)
+            ? u.exact : null, prefix, suffix, longest(prefix, suffix));
+      }
+      return u == null ? nothing() : u;
+    }
+    if (n instanceof Plus) {
+      RequiredLiteral child = summary(((Plus) n).getChild());
+      return new RequiredLiteral(null, child.prefix, child.suffix,
+          child.factor);
+    }
+    return nothing();
+  }
+
+  private static String longest(String a, String b) {
+    return b.length() > a.length() ? b : a;
+  }
+
+  private static String commonPrefix(String a, String b) {
+    int i = 0;
+    while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    return a.substring(0, i);
+  }
+
+  private static String commonSuffix(String a, String b) {
+    int i = 0;
+    while (i < a.length() && i < b.length()
+        && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+      i++;
+    }
+    return a.substring(a.length() - i);
+  }
+}
@@ -0,0 +1,211 @@
+package Regex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import NFA.CharRanges;
+
+/**
+ * Language preserving rewrites of regex ASTs, applied bottom up:
+ * <ul>
+ * <li>nested concatenations and unions are flattened,</li>
+ * <li>the single character alternatives of a union merge into one CharSet,
+ * and repeated alternatives are dropped,</li>
+ * <li>stacked repetitions such as (x*)*, (x+)* or (x?)* collapse into one,</li>
+ * <li>alternatives starting with the same nodes are factored, so ab|ac
+ * becomes a(b|c).</li>
+ * </ul>
+ * Once the rules of a spec are joined in one Union, the last rewrite also
+ * shares the prefixes of different rules, such as those of keywords.
+ */
+
+public class Simplifier {
+
+  /**
+   * Simplifies a regex.
+   * @param n
+   * @return an equivalent regex, usually with fewer nodes.
+   */
+  public static RegexNode simplify(RegexNode n) {
+    if (n instanceof Concat) {
+      List<RegexNode> parts = new ArrayList<RegexNode>();
+      for (RegexNode child : ((Concat) n).getChildren()) {
+        RegexNode c = simplify(child);
+        if (c instanceof Concat) {
+          parts.addAll(((Concat) c).getChildren());
+        } else {
+          parts.add(c);
+        }
+      }
+      return concatenation(parts);
+    }
+    if (n instanceof Union) {
+      Set<RegexNode> alternatives = new LinkedHashSet<RegexNode>();
+      for (RegexNode child : ((Union) n).getChildren()) {
+        RegexNode c = simplify(child);
+        if (c instanceof Union) {
+          alternatives.addAll(((Union) c).getChildren());
+        } else {
+          alternatives.add(c);
+        }
+      }
+      List<RegexNode> merged = factor(mergeCharacters(alternatives));
+      return merged.size() == 1 ? merged.get(0) : new Union(merged);
+    }
+    if (n instanceof Star) {
+      RegexNode c = simplify(((Star) n).getChild());
+      if (c instanceof Star) {
+        return c;
+      }
+      if (c instanceof Plus) {
+        return new Star(((Plus) c).getChild());
+      }
+      if (c instanceof Optional) {
+        return new Star(((Optional) c).getChild());
+      }
+      return new Star(c);
+    }
+    if (n instanceof Plus) {
+      RegexNode c = simplify(((Plus) n).getChild());
+      if (c instanceof Star || c instanceof Plus) {
+        return c;
+      }
+      if (c instanceof Optional) {
+        return new Star(((Optional) c).getChild());
+      }
+      return new Plus(c);
+    }
+    if (n instanceof Optional) {
+      RegexNode c = simplify(((Optional) n).getChild());
+      if (c instanceof Star || c instanceof Optional) {
+        return c;
+      }
+      if (c instanceof Plus) {
+        return new Star(((Plus) c).getChild());
+      }
+      return new Optional(c);
+    }
+    if (n instanceof CharSet && ((CharSet) n).size() == 1) {
+      return new Char(((CharSet) n).getCharacters().rangeStart(0));
+    }
+    return n;
+  }
+
+  /**
+   * Merges the Char and CharSet alternatives into one node, where the first
+   * of them stood.
+   */
+  private static List<RegexNode> mergeCharacters(
+      Collection<RegexNode> alternatives) {
+    List<RegexNode> rv = new ArrayList<RegexNode>(alternatives.size());
+    CharRanges chars = CharRanges.EMPTY;
+    int at = -1, count = 0;
+    for (RegexNode alternative : alternatives) {
+      if (!alternative.isSingleCharacter()) {
+        rv.add(alternative);
+        continue;
+      }
+      if (at == -1) {
+        at = rv.size();
+        rv.add(alternative);
+      }
+      count++;
+      if (alternative instanceof Char) {
+        chars = chars.union(CharRanges.of(((Char) alternative).getCharacter()));
+      } else {
+        chars = chars.union(((CharSet) alternative).getCharacters());
+      }
+    }
+    if (count > 1) {
+      rv.set(at, chars.size() == 1 ? new Char(chars.rangeStart(0))
+          : new CharSet(chars));
+    }
+    return rv;
+  }
+
+  /**
+   * Factors the alternatives that start with the same node: their common
+   * prefix is kept once, followed by the union of what is left of each.
+   */
+  private static List<RegexNode> factor(List<RegexNode> alternatives) {
+    Map<RegexNode, List<List<RegexNode>>> byFirst = new LinkedHashMap<RegexNode, List<List<RegexNode>>>();
+    for (RegexNode alternative : alternatives) {
+      List<RegexNode> sequence = sequence(alternative);
+      List<List<RegexNode>> group = byFirst.get(sequence.get(0));
+      if (group == null) {
+        group = new ArrayList<List<RegexNode>>();
+        byFirst.put(sequence.get(0), group);
+      }
+      group.add(sequence);
+    }
+    if (byFirst.size() == alternatives.size()) {
+      return alternatives;
+    }
+    List<RegexNode> rv = new ArrayList<RegexNode>(byFirst.size());
+    for (List<List<RegexNode>> group : byFirst.values()) {
+      if (group.size() == 1) {
+        rv.add(concatenation(group.get(0)));
+        continue;
+      }
+      int prefix = commonPrefix(group);
+      List<RegexNode> rests = new ArrayList<RegexNode>(group.size());
+      boolean emptyRest = false;
+      for (List<RegexNode> sequence : group) {
+        if (sequence.size() == prefix) {
+          emptyRest = true;
+        } else {
+          rests.add(concatenation(sequence.subList(prefix, sequence.size())));
+        }
+      }
+      RegexNode rest = simplify(new Union(rests));
+      if (emptyRest) {
+        rest = simplify(new Optional(rest));
+      }
+      List<RegexNode> parts = new ArrayList<RegexNode>(group.get(0).subList(0,
+          prefix));
+      parts.add(rest);
+      rv.add(simplify(new Concat(parts)));
+    }
+    return rv;
+  }
+
+  /**
+   * The length of the longest prefix every sequence of a group starts with.
+   */
+  private static int commonPrefix(List<List<RegexNode>> group) {
+    List<RegexNode> first = group.get(0);
+    int prefix = first.size();
+    for (List<RegexNode> sequence : group) {
+      int i = 0;
+      while (i < prefix && i < sequence.size()
+          && sequence.get(i).equals(first.get(i))) {
+        i++;
+      }
+      prefix = i;
+    }
+    return prefix;
+  }
+
+  /**
+   * A node as the sequence of nodes it concatenates.
+   */
+  private static List<RegexNode> sequence(RegexNode n) {
+    if (n instanceof Concat) {
+      return ((Concat) n).getChildren();
+    }
+    return Collections.singletonList(n);
+  }
+
+  /**
+   * The concatenation of a non empty sequence of nodes.
+   */
+  private static RegexNode concatenation(List<RegexNode> parts) {
+    return parts.size() == 1 ? parts.get(0) : new Concat(parts);
+  }
+}
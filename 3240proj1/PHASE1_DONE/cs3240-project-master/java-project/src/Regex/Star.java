@@ -0,0 +1,38 @@
+package Regex;
+
+/**
+ * Matches its child zero or more times.
+ */
+
+public class Star extends RegexNode {
+  /** The repeated node */
+  private final RegexNode child;
+
+  /**
+   * Constructor method.
+   * @param child
+   */
+  public Star(RegexNode child) {
+    this.child = child;
+  }
+
+  /**
+   * The repeated node.
+   * @return
+   */
+  public RegexNode getChild() {
+    return child;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof Star && ((Star) o).child.equals(child);
+  }
+
+  public int hashCode() {
+    return child.hashCode() * 41;
+  }
+
+  public String toString() {
+    return child + "*";
+  }
+}
@@ -0,0 +1,186 @@
+package Regex;
+
+import java.util.Map;
+
+import Lexer.LexerBuilder;
+import NFA.CharRanges;
+import NFA.NFA;
+import NFA.NFAState;
+
+/**
+ * Builds an NFA out of a regex AST. A node is built onto a given state and
+ * only adds transitions out of it, never into it. When that state has no
+ * transitions yet, or the node's transitions do not clash with the ones it
+ * has, they are added to it directly; otherwise the node gets a state of its
+ * own behind an epsilon transition. Concatenations and alternatives thus
+ * mostly need no epsilon transitions at all. Accept nodes make the state
+ * they are built onto final.
+ */
+
+public class ThompsonConstruction {
+  /** The build the NFA states belong to */
+  private LexerBuilder builder;
+
+  /**
+   * Constructor method.
+   * @param builder
+   */
+  private ThompsonConstruction(LexerBuilder builder) {
+    this.builder = builder;
+  }
+
+  /**
+   * Builds the NFA of a regex. If the regex has no Accept nodes, its end
+   * state is the one accepting state.
+   * @param n
+   *        The regex.
+   * @param builder
+   *        The build the NFA belongs to.
+   * @return the NFA.
+   */
+  public static NFA toNFA(RegexNode n, LexerBuilder builder) {
+    ThompsonConstruction t = new ThompsonConstruction(builder);
+    NFAState start = new NFAState(builder);
+    NFAState end = t.build(n, start);
+    if (end == null) {
+      end = new NFAState(builder);
+    } else {
+      end.setFinal(true);
+    }
+    return new NFA(builder, start, end);
+  }
+
+  /**
+   * Builds a node onto a state that may already have transitions.
+   * @return the state reached once the node is matched, null after an
+   *         Accept node.
+   */
+  private NFAState buildFrom(RegexNode n, NFAState start) {
+    if (isFresh(start)) {
+      return build(n, start);
+    }
+    NFAState own = new NFAState(builder);
+    NFAState end = build(n, own);
+    if (own.isFinal() || clashes(start, own)) {
+      start.getEpsilonTransitions().add(own);
+    } else {
+      // Nothing leads to own, so its transitions can move to start.
+      start.getTransition().putAll(own.getTransition());
+      for (Map.Entry<NFAState, CharRanges> range : own.getRangeTransitions()
+          .entrySet()) {
+        start.addTransition(range.getValue(), range.getKey());
+      }
+      start.getEpsilonTransitions().addAll(own.getEpsilonTransitions());
+    }
+    return end;
+  }
+
+  /**
+   * Builds a node onto a fresh state.
+   */
+  private NFAState build(RegexNode n, NFAState start) {
+    if (n instanceof Char) {
+      NFAState end = new NFAState(builder);
+      start.getTransition().put(((Char) n).getCharacter(), end);
+      return end;
+    }
+    if (n instanceof CharSet) {
+      NFAState end = new NFAState(builder);
+      start.addTransition(((CharSet) n).getCharacters(), end);
+      return end;
+    }
+    if (n instanceof Concat) {
+      NFAState current = start;
+      for (RegexNode part : ((Concat) n).getChildren()) {
+        if (current == null) {
+          throw new IllegalArgumentException("Nodes after an Accept in " + n);
+        }
+        current = buildFrom(part, current);
+      }
+      return current;
+    }
+    if (n instanceof Union) {
+      NFAState end = null;
+      for (RegexNode alternative : ((Union) n).getChildren()) {
+        NFAState reached = buildFrom(alternative, start);
+        if (reached != null) {
+          if (end == null) {
+            end = new NFAState(builder);
+          }
+          reached.getEpsilonTransitions().add(end);
+        }
+      }
+      return end;
+    }
+    if (n instanceof Star) {
+      NFAState loop = new NFAState(builder);
+      start.getEpsilonTransitions().add(loop);
+      repeated(build(((Star) n).getChild(), loop), n).getEpsilonTransitions()
+          .add(loop);
+      return loop;
+    }
+    if (n instanceof Plus) {
+      NFAState loop = new NFAState(builder);
+      start.getEpsilonTransitions().add(loop);
+      NFAState end = repeated(build(((Plus) n).getChild(), loop), n);
+      end.getEpsilonTransitions().add(loop);
+      return end;
+    }
+    if (n instanceof Optional) {
+      NFAState end = repeated(build(((Optional) n).getChild(), start), n);
+      NFAState skip = new NFAState(builder);
+      start.getEpsilonTransitions().add(skip);
+      end.getEpsilonTransitions().add(skip);
+      return skip;
+    }
+    if (n instanceof Accept) {
+      start.setFinal(true);
+      start.setTokenTypeIfFinalState(((Accept) n).getToken());
+      start.setTokenPriority(((Accept) n).getPriority());
+      return null;
+    }
+    throw new IllegalArgumentException("Unknown regex node " + n);
+  }
+
+  /**
+   * Checks the child of a repetition does not accept, which would leave
+   * nothing to repeat.
+   */
+  private static NFAState repeated(NFAState end, RegexNode n) {
+    if (end == null) {
+      throw new IllegalArgumentException("Accept inside " + n);
+    }
+    return end;
+  }
+
+  /**
+   * Whether nothing was built onto a state yet.
+   */
+  private static boolean isFresh(NFAState s) {
+    return !s.isFinal() && s.getTransition().isEmpty()
+        && s.getRangeTransitions().isEmpty()
+        && s.getEpsilonTransitions().isEmpty();
+  }
+
+  /**
+   * Whether two states have transitions on a common character.
+   */
+  private static boolean clashes(NFAState a, NFAState b) {
+    CharRanges onA = labels(a);
+    return !onA.isEmpty() && onA.intersects(labels(b));
+  }
+
+  /**
+   * The characters a state has transitions on.
+   */
+  private static CharRanges labels(NFAState s) {
+    CharRanges labels = CharRanges.EMPTY;
+    for (CharRanges range : s.getRangeTransitions().values()) {
+      labels = labels.union(range);
+    }
+    for (Character c : s.getTransition().keySet()) {
+      labels = labels.union(CharRanges.of(c));
+    }
+    return labels;
+  }
+}
@@ -0,0 +1,69 @@
+package Regex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Matches any one of its alternatives.
+ */
+
+public class Union extends RegexNode {
+  /** The alternatives, in order */
+  private final List<RegexNode> children;
+
+  /** The hash code, 0 until first asked for */
+  private int hash;
+
+  /**
+   * Constructor method.
+   * @param children
+   *        The alternatives. Copied.
+   */
+  public Union(List<RegexNode> children) {
+    this.children = Collections.unmodifiableList(new ArrayList<RegexNode>(
+        children));
+  }
+
+  /**
+   * Constructor method for two alternatives.
+   * @param first
+   * @param second
+   */
+  public Union(RegexNode first, RegexNode second) {
+    List<RegexNode> both = new ArrayList<RegexNode>(2);
+    both.add(first);
+    both.add(second);
+    this.children = Collections.unmodifiableList(both);
+  }
+
+  /**
+   * The alternatives. Unmodifiable.
+   * @return
+   */
+  public List<RegexNode> getChildren() {
+    return children;
+  }
+
+  public boolean equals(Object o) {
+    return o instanceof Union && ((Union) o).children.equals(children);
+  }
+
+  public int hashCode() {
+    if (hash == 0) {
+      hash = children.hashCode() * 37 + 1;
+    }
+    return hash;
+  }
+
+  public String toString() {
+    StringBuilder s = new StringBuilder("(");
+    for (int i = 0; i < children.size(); i++) {
+      if (i > 0) {
+        s.append("|");
+      }
+      s.append(children.get(i));
+    }
+    return s.append(')').toString();
+  }
+}
@@ -0,0 +1,146 @@
+package Regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import NFA.CharRanges;
+
+/**
+ * Rewrites a regex over characters into the same regex over the bytes of
+ * their UTF-8 encoding, so that the DFA only ever reads bytes and its table
+ * keeps 256 columns. ASCII characters are their own byte. A range of other
+ * characters becomes a union of byte range sequences, split the way RE2 and
+ * Rust's regex do: first where the encoded length changes, then wherever the
+ * continuation bytes would not cover a full 0x80-0xBF range. Surrogates have
+ * no UTF-8 encoding and are dropped; supplementary characters cannot be
+ * written in a spec.
+ */
+
+public class Utf8Encoder {
+  /** The largest character encoded in 1, 2 and 3 bytes */
+  private static final int[] MAX_OF_LENGTH = { 0x7F, 0x7FF, 0xFFFF };
+
+  /** The surrogates, which UTF-8 does not encode */
+  private static final CharRanges SURROGATES = CharRanges.range('\ud800',
+      '\udfff');
+
+  /**
+   * Encodes a regex.
+   * @param n
+   * @return the same regex if it only uses ASCII, else its byte level form.
+   */
+  public static RegexNode encode(RegexNode n) {
+    if (n instanceof Char) {
+      char c = ((Char) n).getCharacter();
+      return c < 0x80 ? n : encode(CharRanges.of(c));
+    }
+    if (n instanceof CharSet) {
+      CharRanges chars = ((CharSet) n).getCharacters();
+      if (chars.isEmpty() || chars.rangeEnd(chars.rangeCount() - 1) < 0x80) {
+        return n;
+      }
+      return encode(chars);
+    }
+    if (n instanceof Concat) {
+      List<RegexNode> parts = new ArrayList<RegexNode>();
+      for (RegexNode child : ((Concat) n).getChildren()) {
+        parts.add(encode(child));
+      }
+      return new Concat(parts);
+    }
+    if (n instanceof Union) {
+      List<RegexNode> alternatives = new ArrayList<RegexNode>();
+      for (RegexNode child : ((Union) n).getChildren()) {
+        alternatives.add(encode(child));
+      }
+      return new Union(alternatives);
+    }
+    if (n instanceof Star) {
+      return new Star(encode(((Star) n).getChild()));
+    }
+    if (n instanceof Plus) {
+      return new Plus(encode(((Plus) n).getChild()));
+    }
+    if (n instanceof Optional) {
+      return new Optional(encode(((Optional) n).getChild()));
+    }
+    return n;
+  }
+
+  /**
+   * The byte level regex of a set of characters.
+   */
+  private static RegexNode encode(CharRanges chars) {
+    chars = chars.minus(SURROGATES);
+    List<RegexNode> alternatives = new ArrayList<RegexNode>();
+    for (int r = 0; r < chars.rangeCount(); r++) {
+      split(chars.rangeStart(r), chars.rangeEnd(r), alternatives);
+    }
+    if (alternatives.isEmpty()) {
+      return new CharSet(CharRanges.EMPTY);
+    }
+    return alternatives.size() == 1 ? alternatives.get(0) : new Union(
+        alternatives);
+  }
+
+  /**
+   * Adds the byte sequences of the characters from first to last.
+   */
+  private static void split(int first, int last, List<RegexNode> out) {
+    for (int length = 0; length < MAX_OF_LENGTH.length - 1; length++) {
+      int max = MAX_OF_LENGTH[length];
+      if (first <= max && max < last) {
+        split(first, max, out);
+        split(max + 1, last, out);
+        return;
+      }
+    }
+    if (last < 0x80) {
+      out.add(bytes(first, last));
+      return;
+    }
+    for (int i = 1; i < 3; i++) {
+      int m = (1 << (6 * i)) - 1;
+      if ((first & ~m) != (last & ~m)) {
+        if ((first & m) != 0) {
+          split(first, first | m, out);
+          split((first | m) + 1, last, out);
+          return;
+        }
+        if ((last & m) != m) {
+          split(first, (last & ~m) - 1, out);
+          split(last & ~m, last, out);
+          return;
+        }
+      }
+    }
+    byte[] low = utf8(first);
+    byte[] high = utf8(last);
+    List<RegexNode> sequence = new ArrayList<RegexNode>(low.length);
+    for (int i = 0; i < low.length; i++) {
+      sequence.add(bytes(low[i] & 0xFF, high[i] & 0xFF));
+    }
+    out.add(new Concat(sequence));
+  }
+
+  private static RegexNode bytes(int first, int last) {
+    if (first == last) {
+      return new Char((char) first);
+    }
+    return new CharSet(CharRanges.range((char) first, (char) last));
+  }
+
+  /**
+   * The UTF-8 bytes of a character outside the surrogates.
+   */
+  private static byte[] utf8(int c) {
+    if (c < 0x80) {
+      return new byte[] { (byte) c };
+    }
+    if (c < 0x800) {
+      return new byte[] { (byte) (0xC0 | (c >> 6)), (byte) (0x80 | (c & 0x3F)) };
+    }
+    return new byte[] { (byte) (0xE0 | (c >> 12)),
+        (byte) (0x80 | ((c >> 6) & 0x3F)), (byte) (0x80 | (c & 0x3F)) };
+  }
+}
@@ -1,6 +1,8 @@
 import java.io.PrintStream;
+import java.util.Arrays;
 
 import DFA.DFAState;
+import Lexer.FailureMemo;
 
 /**
  * This class handles the table walking. Given a 2D DFAState table, a start
@@ -12,7 +14,10 @@ public class TableWalker {
 
   /**
    * Walks the "table" on the "lineToTokenize" from "startState" and prints it
-   * out to p.
+   * out to p. Tokens are kept as bounds into the line rather than grown a
+   * character at a time, and the states walked past the last accepting one
+   * before a dead end are remembered, so that rewalking the same characters
+   * after backing up stops as soon as it reaches one of them.
    * @param startState
    *        The DFAState to start from
    * @param table
@@ -25,43 +30,80 @@ public class TableWalker {
   public static
       void
       printTokens(DFAState startState, DFAState[][] table, PrintStream p, String lineToTokenize) {
-    String currentToken = "", lastKnownGoodToken = "", lastKnownIdentifier = "";
+    // The current token starts at tokenStart; the last accepted one ends
+    // at lastKnownGoodEnd, -1 if there is none.
+    int tokenStart = 0, lastKnownGoodEnd = -1;
+    DFAState lastKnownGoodFinal = null;
     int lastKnownGoodState = 0;
     DFAState currentState = startState;
+    FailureMemo memo = new FailureMemo();
+    int[] path = new int[16];
     for (int i = 0; i < lineToTokenize.length(); i++) {
       char currentChar = lineToTokenize.charAt(i);
-      if (currentChar == ' '
-          && table[currentState.getIdentifier()][currentChar] == null) {
+      boolean failed = memo.contains(currentState.getIdentifier(), i);
+      if (!failed && currentChar == ' '
+          && next(table, currentState, currentChar) == null) {
         currentState = startState;
-        if (!lastKnownIdentifier.equals("") && !lastKnownGoodToken.equals("")) {
-          p.println(lastKnownIdentifier + " " + lastKnownGoodToken);
+        String lastKnownIdentifier = identifier(lastKnownGoodFinal);
+        if (!lastKnownIdentifier.equals("") && lastKnownGoodEnd >= 0) {
+          p.println(lastKnownIdentifier + " "
+              + lineToTokenize.substring(tokenStart, lastKnownGoodEnd));
         }
-        lastKnownIdentifier = "";
-        lastKnownGoodToken = "";
-        currentToken = "";
+        lastKnownGoodFinal = null;
+        lastKnownGoodEnd = -1;
+        tokenStart = i + 1;
         continue;
       }
-      DFAState nextState = table[currentState.getIdentifier()][currentChar];
-      currentToken += currentChar;
+      DFAState nextState = failed ? null : next(table, currentState,
+          currentChar);
+      if (i - tokenStart == path.length) {
+        path = Arrays.copyOf(path, path.length * 2);
+      }
+      path[i - tokenStart] = currentState.getIdentifier();
       if (nextState == null) {
-        p.println(lastKnownIdentifier + " " + lastKnownGoodToken);
-        lastKnownIdentifier = "";
-        lastKnownGoodToken = "";
-        currentToken = "";
+        p.println(identifier(lastKnownGoodFinal) + " "
+            + (lastKnownGoodEnd < 0 ? "" : lineToTokenize.substring(
+                tokenStart, lastKnownGoodEnd)));
+        // Nothing from here to i accepts before this dead end.
+        int from = lastKnownGoodEnd < 0 ? tokenStart : lastKnownGoodState + 1;
+        for (int k = from; k <= i; k++) {
+          memo.add(path[k - tokenStart], k);
+        }
+        lastKnownGoodFinal = null;
+        lastKnownGoodEnd = -1;
         i = lastKnownGoodState;
+        tokenStart = i + 1;
         currentState = startState;
         continue;
       } else if (nextState.isFinal()) {
         lastKnownGoodState = i;
-        lastKnownGoodToken = currentToken;
-        lastKnownIdentifier = nextState.getFinalToken().substring(1);
+        lastKnownGoodEnd = i + 1;
+        lastKnownGoodFinal = nextState;
       }
       currentState = nextState;
     }
     if (currentState.isFinal()) {
-      p.println(lastKnownIdentifier + " " + lastKnownGoodToken);
+      p.println(identifier(lastKnownGoodFinal) + " "
+          + (lastKnownGoodEnd < 0 ? "" : lineToTokenize.substring(tokenStart,
+              lastKnownGoodEnd)));
     } else {
-      System.err.println("ERROR: " + currentToken);
+      System.err.println("ERROR: " + lineToTokenize.substring(tokenStart));
     }
   }
+
+  /**
+   * The name printed for a token ending in a final state, "" for none.
+   */
+  private static String identifier(DFAState finalState) {
+    return finalState == null ? "" : finalState.getTokenName();
+  }
+
+  /**
+   * The next state in the table, null for characters past its columns
+   * rather than an ArrayIndexOutOfBoundsException.
+   */
+  private static DFAState next(DFAState[][] table, DFAState state, char c) {
+    DFAState[] row = table[state.getIdentifier()];
+    return c < row.length ? row[c] : null;
+  }
 }